@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import de.cyface.app.utils.EventMatching
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Benchmarks the matching of events to the locations of a track, like `Map.renderEvents`.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class EventMatchingBenchmark {
+
+    /**
+     * The number of locations of the track.
+     */
+    @Param("10000", "100000")
+    var locations = 0
+
+    /**
+     * The number of events to match, e.g. modality type changes.
+     */
+    @Param("500")
+    var events = 0
+
+    private lateinit var timestamps: LongArray
+
+    private lateinit var eventTimestamps: LongArray
+
+    @Setup
+    fun setUp() {
+        timestamps = Track.random(locations, 51.0, 13.0).timestamps
+        val random = Random(42)
+        val first = timestamps.first()
+        // Includes events after the last location
+        val range = timestamps.last() - first + 60_000L
+        eventTimestamps = LongArray(events) { first + random.nextLong(range) }
+    }
+
+    @Benchmark
+    fun nextLocationIndex(): Long {
+        var sum = 0L
+        for (timestamp in eventTimestamps) {
+            sum += EventMatching.nextLocationIndex(timestamps, timestamp)
+        }
+        return sum
+    }
+}
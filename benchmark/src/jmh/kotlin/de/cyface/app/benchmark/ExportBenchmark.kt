@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import de.cyface.app.utils.trips.FolderZipper
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.io.File
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Benchmarks the zipping of the exported folders by the `Exporter`.
+ *
+ * The folder contains a representative mix of the exported files, in sub folders by measurement:
+ * sensor files with synthetic, little endian sensor points, similar to the `Point3DFile`s, JPEG
+ * pictures, simulated by random bytes, and a database with repetitive rows.
+ *
+ * Compare the time of the [FolderZipper.Compression]s with the archive sizes reported by the
+ * [ArchiveCounters] next to it to weigh the time saved against the size cost.
+ *
+ * @author Armin Schnabel
+ * @version 1.2.0
+ * @since 4.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class ExportBenchmark {
+
+    /**
+     * The number of measurements in the exported folder.
+     */
+    @Param("10")
+    var measurements = 0
+
+    /**
+     * The number of sensor points per measurement.
+     */
+    @Param("20000")
+    var points = 0
+
+    /**
+     * The number of pictures per measurement.
+     */
+    @Param("20")
+    var pictures = 0
+
+    /**
+     * How the files are compressed.
+     */
+    @Param("DEFAULT", "ADAPTIVE")
+    lateinit var compression: FolderZipper.Compression
+
+    private lateinit var folder: File
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        folder = Files.createTempDirectory("export-benchmark").toFile()
+        val random = Random(42)
+        for (measurement in 1..measurements) {
+            val measurementFolder = File(folder, "$measurement").apply { mkdirs() }
+            val buffer = ByteBuffer.allocate(points * POINT_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+            var timestamp = 1_700_000_000_000L
+            repeat(points) {
+                timestamp += 10
+                buffer.putLong(timestamp)
+                buffer.putFloat(random.nextFloat() * 0.5f)
+                buffer.putFloat(random.nextFloat() * 0.5f)
+                buffer.putFloat(9.81f + random.nextFloat() * 0.5f)
+            }
+            File(measurementFolder, "$measurement.cyfa").writeBytes(buffer.array())
+            repeat(pictures) {
+                File(measurementFolder, "$it.jpg").writeBytes(random.nextBytes(PICTURE_BYTES))
+            }
+        }
+        File(folder, "measures").bufferedWriter().use { database ->
+            repeat(measurements * points / 10) {
+                database.write("$it|${1_700_000_000_000L + it * 1000L}|51.05|13.73|SAVED\n")
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        folder.deleteRecursively()
+    }
+
+    @Benchmark
+    fun zipFolder(counters: ArchiveCounters): Long {
+        val archive = CountingOutputStream()
+        val bytesIn = FolderZipper.zipFolder(folder, archive, compression = compression)
+        counters.archiveBytes += archive.count
+        counters.archives++
+        return bytesIn
+    }
+
+    /**
+     * Reports the size of the written archives as secondary results of [zipFolder], so that they
+     * are written to the results next to the timings.
+     *
+     * The counters are totals per iteration, the size of one archive is `archiveBytes / archives`.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    open class ArchiveCounters {
+        /**
+         * The bytes of all archives written in the iteration.
+         */
+        @JvmField
+        var archiveBytes = 0L
+
+        /**
+         * The number of archives written in the iteration.
+         */
+        @JvmField
+        var archives = 0L
+
+        @Setup(Level.Iteration)
+        fun reset() {
+            archiveBytes = 0L
+            archives = 0L
+        }
+    }
+
+    /**
+     * Counts the bytes written, to report the archive size.
+     */
+    private class CountingOutputStream : OutputStream() {
+        var count = 0L
+
+        override fun write(b: Int) {
+            count++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            count += len
+        }
+    }
+
+    companion object {
+        /**
+         * The size of a timestamp and three axes.
+         */
+        private const val POINT_BYTES = Long.SIZE_BYTES + 3 * Float.SIZE_BYTES
+
+        /**
+         * The size of a picture.
+         */
+        private const val PICTURE_BYTES = 256 * 1024
+    }
+}
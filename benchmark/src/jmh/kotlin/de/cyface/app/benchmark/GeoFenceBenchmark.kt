@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import de.cyface.app.utils.trips.GeoFence
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the geo fence evaluation of the `TripsFragment` over synthetic tracks.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class GeoFenceBenchmark {
+
+    /**
+     * The number of locations per track, 10.000 are about three hours.
+     */
+    @Param("10000")
+    var locations = 0
+
+    /**
+     * The number of tracks evaluated per invocation, like the measurements of an event.
+     */
+    @Param("10")
+    var tracks = 0
+
+    private val geoFence = GeoFence(51.395503, 12.220760, 150.0)
+
+    private lateinit var synthetic: List<Track>
+
+    @Setup
+    fun setUp() {
+        synthetic = (0 until tracks).map {
+            Track.random(locations, geoFence.centerLat, geoFence.centerLon, seed = it)
+        }
+    }
+
+    /**
+     * Counts the locations within the geo fence, like `TripsFragment.checkMeasurements`.
+     */
+    @Benchmark
+    fun countWithin(): Int {
+        var count = 0
+        for (track in synthetic) {
+            for (i in track.latitudes.indices) {
+                if (geoFence.isWithin(track.latitudes[i], track.longitudes[i])) count++
+            }
+        }
+        return count
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import de.cyface.app.utils.statistics.MeasurementStatistics
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Benchmarks the aggregation of the statistics shown by the `StatisticsFragment`.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class StatisticsBenchmark {
+
+    /**
+     * The number of finished measurements.
+     */
+    @Param("1000")
+    var measurements = 0
+
+    private lateinit var distances: DoubleArray
+
+    private lateinit var durations: LongArray
+
+    private lateinit var ascends: Array<Double?>
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        distances = DoubleArray(measurements) { random.nextDouble(30_000.0) }
+        durations = LongArray(measurements) { random.nextLong(7_200_000L) }
+        // Some measurements have no ascend, e.g. without pressure sensor
+        ascends = Array(measurements) { if (it % 10 == 0) null else random.nextDouble(500.0) }
+    }
+
+    @Benchmark
+    fun aggregate(blackhole: Blackhole) {
+        val statistics = MeasurementStatistics()
+        for (i in 0 until measurements) {
+            statistics.add(distances[i], durations[i], ascends[i])
+        }
+        blackhole.consume(statistics.averageDistanceKm())
+        blackhole.consume(statistics.averageDurationMillis())
+        blackhole.consume(statistics.averageAscend())
+        blackhole.consume(statistics.averageCo2Kg())
+    }
+}
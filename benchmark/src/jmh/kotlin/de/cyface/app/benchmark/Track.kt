@@ -0,0 +1,67 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import kotlin.random.Random
+
+/**
+ * A synthetic track, a random walk with a location per second.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property latitudes The latitudes of the locations.
+ * @property longitudes The longitudes of the locations.
+ * @property timestamps The timestamps of the locations in ascending order.
+ */
+class Track(
+    val latitudes: DoubleArray,
+    val longitudes: DoubleArray,
+    val timestamps: LongArray,
+) {
+    companion object {
+        /**
+         * Creates a track around a start location.
+         *
+         * @param size The number of locations.
+         * @param startLat The latitude of the first location.
+         * @param startLon The longitude of the first location.
+         * @param seed The seed of the random walk, so that all runs use the same track.
+         */
+        fun random(size: Int, startLat: Double, startLon: Double, seed: Int = 42): Track {
+            val random = Random(seed)
+            val latitudes = DoubleArray(size)
+            val longitudes = DoubleArray(size)
+            val timestamps = LongArray(size)
+            var lat = startLat
+            var lon = startLon
+            var timestamp = 1_700_000_000_000L
+            for (i in 0 until size) {
+                // About 5 m per step
+                lat += (random.nextDouble() - 0.5) * 0.0001
+                lon += (random.nextDouble() - 0.5) * 0.0001
+                timestamp += 1_000L
+                latitudes[i] = lat
+                longitudes[i] = lon
+                timestamps[i] = timestamp
+            }
+            return Track(latitudes, longitudes, timestamps)
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.benchmark
+
+import de.cyface.app.digural.upload.WebdavPaths
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+import java.time.ZoneId
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the path and date helpers of the `WebdavUploader`, which run several times per
+ * uploaded file.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class WebdavPathsBenchmark {
+
+    private val paths = WebdavPaths(
+        "https://cloud.example.com/remote.php/dav",
+        "user",
+        "00000000-0000-0000-0000-000000000000",
+        ZoneId.of("Europe/Berlin")
+    )
+
+    private var measurementId = 0L
+
+    private val timestamp = 1_700_000_000_000L
+
+    @Benchmark
+    fun dateDirectory(): String {
+        return paths.dateDirectory(timestamp)
+    }
+
+    /**
+     * The directories resolved per attachment upload.
+     */
+    @Benchmark
+    fun attachmentDirectories(blackhole: Blackhole) {
+        measurementId++
+        blackhole.consume(paths.imagesDirectory(measurementId, timestamp))
+        blackhole.consume(paths.imuDirectory(measurementId, timestamp))
+    }
+
+    @Benchmark
+    fun trailingSlash(): String {
+        return WebdavPaths.returnUrlWithTrailingSlash("https://cloud.example.com/remote.php/dav")
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.loadtest
+
+import android.os.Bundle
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import de.cyface.app.utils.loadtest.SyntheticDataset
+import de.cyface.persistence.DefaultPersistenceBehaviour
+import de.cyface.persistence.DefaultPersistenceLayer
+import de.cyface.persistence.model.MeasurementStatus
+import kotlinx.coroutines.runBlocking
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Fills the app's storage with a [SyntheticDataset] to load-test the app at production scale.
+ *
+ * This is a tool, not a test: it's skipped unless the `generate` argument is passed, e.g.:
+ *
+ * ```
+ * ./gradlew :ui:digural:connectedDebugAndroidTest \
+ *   -Pandroid.testInstrumentationRunnerArguments.class=de.cyface.app.digural.loadtest.SyntheticDatasetGenerator \
+ *   -Pandroid.testInstrumentationRunnerArguments.generate=true \
+ *   -Pandroid.testInstrumentationRunnerArguments.trips=1000 \
+ *   -Pandroid.testInstrumentationRunnerArguments.hours=20
+ * ```
+ *
+ * Supported arguments, see [SyntheticDataset.Parameters]: `trips`, `hours`, `locationHz`,
+ * `sensorHz`, `pictureMeters`, `pictureWidth`, `status` and `seed`.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@RunWith(AndroidJUnit4::class)
+class SyntheticDatasetGenerator {
+
+    @Test
+    fun generate() {
+        val arguments = InstrumentationRegistry.getArguments()
+        assumeTrue("Pass `generate=true` to generate a dataset", arguments.getString("generate") == "true")
+
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        val persistence = DefaultPersistenceLayer(context, DefaultPersistenceBehaviour())
+        val parameters = parameters(arguments)
+        val start = System.currentTimeMillis()
+        runBlocking {
+            SyntheticDataset(context, persistence).generate(parameters) { generated ->
+                Log.i(TAG, "Generated $generated/${parameters.trips} measurements")
+            }
+        }
+        Log.i(TAG, "Generated dataset in ${System.currentTimeMillis() - start} ms")
+    }
+
+    /**
+     * @return The parameters from the instrumentation [arguments], with defaults for the others.
+     */
+    private fun parameters(arguments: Bundle): SyntheticDataset.Parameters {
+        val defaults = SyntheticDataset.Parameters()
+        return SyntheticDataset.Parameters(
+            trips = arguments.getString("trips")?.toInt() ?: defaults.trips,
+            durationMillis = arguments.getString("hours")?.toDouble()?.let { (it * HOUR_MILLIS).toLong() }
+                ?: defaults.durationMillis,
+            locationRateHz = arguments.getString("locationHz")?.toInt() ?: defaults.locationRateHz,
+            sensorRateHz = arguments.getString("sensorHz")?.toInt() ?: defaults.sensorRateHz,
+            pictureDistanceMeters = arguments.getString("pictureMeters")?.toDouble()
+                ?: defaults.pictureDistanceMeters,
+            pictureWidth = arguments.getString("pictureWidth")?.toInt() ?: defaults.pictureWidth,
+            status = arguments.getString("status")?.let { MeasurementStatus.valueOf(it) }
+                ?: defaults.status,
+            seed = arguments.getString("seed")?.toInt() ?: defaults.seed,
+        )
+    }
+
+    companion object {
+        private const val TAG = "de.cyface.app.digural.loadtest"
+
+        private const val HOUR_MILLIS = 60 * 60 * 1000.0
+    }
+}
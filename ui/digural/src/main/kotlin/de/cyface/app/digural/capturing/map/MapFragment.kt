@@ -61,7 +61,7 @@ import kotlinx.coroutines.withContext
  * The [Fragment] which shows a map to the user.
  *
  * @author Armin Schnabel
- * @version 1.0.2
+ * @version 1.2.0
  * @since 3.2.0
  */
 class MapFragment : Fragment() {
@@ -133,6 +133,8 @@ class MapFragment : Fragment() {
             return@Runnable
         }
 
+        map!!.showCoverage(persistence)
+        map!!.followCapturing(capturingViewModel.capturing, capturingViewModel.location)
         map!!.renderMarkers(emptyList() /* TODO */)
         observeTracks()
 
@@ -35,7 +35,7 @@ import java.net.URL
  * If this changes, consider using the standard Android Architecture, see `MeasurementRepository`.
  *
  * @author Armin Schnabel
- * @version 2.0.0
+ * @version 2.1.0
  * @since 3.4.0
  */
 class CustomSettings private constructor(context: Context) {
@@ -111,4 +111,25 @@ class CustomSettings private constructor(context: Context) {
         .map { settings ->
             URL(settings.diguralUrl)
         }
-}
\ No newline at end of file
+
+    /**
+     * Saves the content hash of the installed anonymization model, see [ModelRegistry].
+     *
+     * @param value The hex encoded SHA-256 hash, empty if no model is installed.
+     */
+    suspend fun setAnonModelSha256(value: String) {
+        dataStore.updateData { currentSettings ->
+            currentSettings.toBuilder()
+                .setAnonModelSha256(value)
+                .build()
+        }
+    }
+
+    /**
+     * @return The content hash of the installed anonymization model, empty if none is installed.
+     */
+    val anonModelSha256Flow: Flow<String> = dataStore.data
+        .map { settings ->
+            settings.anonModelSha256
+        }
+}
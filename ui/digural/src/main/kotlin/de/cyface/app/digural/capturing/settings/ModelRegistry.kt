@@ -0,0 +1,210 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.capturing.settings
+
+import android.content.Context
+import android.net.Uri
+import android.provider.OpenableColumns
+import android.util.Log
+import de.cyface.app.digural.MainActivity.Companion.TAG
+import de.cyface.camera_service.Constants
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.DigestOutputStream
+import java.security.MessageDigest
+
+/**
+ * Imports anonymization models picked by the user and keeps track of the installed model by its
+ * content hash.
+ *
+ * Models can be several hundred MB large, so the picked file is only read once: it's hashed while
+ * it's copied into a temporary file, which then replaces the installed model atomically. This
+ * way a failed import never leaves a partially written model behind, and re-selecting the
+ * installed model does not replace it.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 4.3.0
+ * @property customSettings The settings to store the hash of the installed model in.
+ */
+class ModelRegistry(private val customSettings: CustomSettings) {
+
+    /**
+     * Imports a model file.
+     *
+     * The temporary copy exists next to the installed model until it replaces it, so the import
+     * is only started when the storage fits the picked model plus [MIN_FREE_BYTES].
+     *
+     * @param context The context to resolve the [uri] and the model path with.
+     * @param uri The content URI of the picked model file.
+     * @return The result of the import, which includes failures.
+     */
+    suspend fun import(context: Context, uri: Uri): ImportResult {
+        return withContext(Dispatchers.IO) {
+            val target = Constants.getAnonymizationModelFilePath(context)
+            val directory = target.absoluteFile.parentFile ?: target.absoluteFile
+            val availableBytes = directory.usableSpace
+            val requiredBytes = (modelSize(context, uri) ?: 0L) + MIN_FREE_BYTES
+            if (availableBytes < requiredBytes) {
+                Log.w(TAG, "Not enough storage to import model: $availableBytes < $requiredBytes")
+                return@withContext ImportResult.StorageFull(availableBytes)
+            }
+
+            // Same directory, so that the rename is atomic
+            val temp = File(directory, "${target.name}$TEMP_SUFFIX")
+            val digest = MessageDigest.getInstance("SHA-256")
+            val bytes = try {
+                context.contentResolver.openInputStream(uri)?.use { input ->
+                    FileOutputStream(temp).use { output ->
+                        val copied = input.copyTo(DigestOutputStream(output, digest))
+                        // Ensure the content is on disk before it replaces the installed model
+                        output.fd.sync()
+                        copied
+                    }
+                } ?: throw IOException("Failed to open model file: $uri")
+            } catch (e: IOException) {
+                return@withContext failed(temp, e)
+            } catch (e: SecurityException) {
+                // The read permission for the picked file was revoked
+                return@withContext failed(temp, e)
+            }
+            val sha256 = digest.digest().joinToString("") { "%02x".format(it) }
+
+            if (isInstalled(context, sha256)) {
+                temp.delete()
+                Log.d(TAG, "Model $sha256 is already installed")
+                return@withContext ImportResult.Unchanged(sha256)
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE)
+            } catch (e: IOException) {
+                return@withContext failed(temp, e)
+            }
+            customSettings.setAnonModelSha256(sha256)
+            Log.d(TAG, "Imported model: $bytes bytes, hash: $sha256")
+            ImportResult.Imported(sha256, bytes)
+        }
+    }
+
+    /**
+     * @param context The context to resolve the [uri] with.
+     * @param uri The content URI of the picked model file.
+     * @return The size of the model in bytes or `null` if the provider does not know it.
+     */
+    private fun modelSize(context: Context, uri: Uri): Long? {
+        return context.contentResolver.query(uri, arrayOf(OpenableColumns.SIZE), null, null, null)
+            ?.use { cursor ->
+                val index = cursor.getColumnIndex(OpenableColumns.SIZE)
+                if (cursor.moveToFirst() && index != -1 && !cursor.isNull(index)) {
+                    cursor.getLong(index)
+                } else {
+                    null
+                }
+            }
+    }
+
+    /**
+     * Deletes the temporary copy of a model which could not be imported.
+     *
+     * @param temp The temporary copy.
+     * @param exception The reason the import failed.
+     * @return The failed result.
+     */
+    private fun failed(temp: File, exception: Exception): ImportResult.Failed {
+        temp.delete()
+        Log.e(TAG, "Failed to import model", exception)
+        return ImportResult.Failed(exception)
+    }
+
+    /**
+     * @param context The context to resolve the model path with.
+     * @param sha256 The content hash of a model.
+     * @return `true` if the model with this hash is the installed model.
+     */
+    suspend fun isInstalled(context: Context, sha256: String): Boolean {
+        return sha256 == customSettings.anonModelSha256Flow.first() &&
+                Constants.getAnonymizationModelFilePath(context).exists()
+    }
+
+    /**
+     * Deletes the installed model and its hash.
+     *
+     * @param context The context to resolve the model path with.
+     */
+    suspend fun remove(context: Context) {
+        withContext(Dispatchers.IO) {
+            Constants.getAnonymizationModelFilePath(context).delete()
+            customSettings.setAnonModelSha256("")
+        }
+    }
+
+    /**
+     * The result of an [import].
+     */
+    sealed class ImportResult {
+        /**
+         * The model was imported and replaced the previously installed model.
+         *
+         * @property sha256 The hex encoded SHA-256 hash of the imported model.
+         * @property bytes The size of the model in bytes.
+         */
+        data class Imported(val sha256: String, val bytes: Long) : ImportResult()
+
+        /**
+         * The model is identical to the installed model, nothing was changed.
+         *
+         * @property sha256 The hex encoded SHA-256 hash of the installed model.
+         */
+        data class Unchanged(val sha256: String) : ImportResult()
+
+        /**
+         * The storage does not fit the model, nothing was changed.
+         *
+         * @property availableBytes The free storage in bytes.
+         */
+        data class StorageFull(val availableBytes: Long) : ImportResult()
+
+        /**
+         * The model could not be read or written, the installed model was left untouched.
+         *
+         * @property exception The reason.
+         */
+        data class Failed(val exception: Exception) : ImportResult()
+    }
+
+    companion object {
+        /**
+         * The suffix of the temporary file the model is copied to before it's installed.
+         */
+        private const val TEMP_SUFFIX = ".tmp"
+
+        /**
+         * The storage which needs to be left free after the model is copied, like for the model
+         * name file written in [SettingsViewModel.saveToFile].
+         */
+        private const val MIN_FREE_BYTES = 100L * 1024 * 1024
+    }
+}
@@ -21,7 +21,6 @@ package de.cyface.app.digural.capturing.settings
 import android.app.Activity
 import android.content.Context
 import android.net.Uri
-import android.os.ParcelFileDescriptor
 import android.provider.OpenableColumns
 import android.util.Log
 import androidx.activity.result.ActivityResult
@@ -42,11 +41,9 @@ import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileInputStream
 import java.io.FileOutputStream
 import java.io.IOException
 import java.net.URL
-import java.security.MessageDigest
 
 /**
  * Result of a file save operation with detailed error information.
@@ -74,7 +71,7 @@ sealed class SaveFileResult {
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 3.0.0
+ * @version 3.1.2
  * @since 3.4.0
  * @property appSettings The settings used by both, UIs and libraries.
  * @property cameraSettings The settings used by the camera library.
@@ -86,6 +83,11 @@ class SettingsViewModel(
     private val customSettings: CustomSettings
 ) : ViewModel() {
 
+    /**
+     * Imports the anonymization models picked by the user.
+     */
+    private val modelRegistry = ModelRegistry(customSettings)
+
     /** app settings **/
     private val _centerMap = MutableLiveData<Boolean>()
     private val _upload = MutableLiveData<Boolean>()
@@ -230,6 +232,10 @@ class SettingsViewModel(
 
     /**
      * Called when the user selects a new model file in the system file picker dialog.
+     *
+     * The model is imported by the [modelRegistry] in a single pass. Re-selecting the installed
+     * model, identified by its content hash, changes nothing. Failed imports are reported via
+     * [storageError].
      */
     suspend fun modelFilePicked(result: ActivityResult, context: Context) {
         // Check if result is ok
@@ -245,18 +251,17 @@ class SettingsViewModel(
             Log.d(TAG, "Saving model to: ${targetFile.absolutePath}")
 
             // Set the selected file as the selected model file.
-            withContext(Dispatchers.IO) {
-                context.contentResolver.openInputStream(uri)?.use { inputStream ->
-                    targetFile.outputStream().use { outputStream ->
-                        val bytesCopied = inputStream.copyTo(outputStream)
-
-                        // Calculate original size (if Content-Length is given)
-                        val originalFile = context.contentResolver.openFileDescriptor(uri, "r")
-                        val originalSize = originalFile?.statSize ?: -1
-                        val originalHash = originalFile?.sha256() ?: "-1"
-                        Log.d(TAG, "Model original size: $originalSize bytes, hash: $originalHash")
-                        Log.d(TAG, "Model copied size: ${targetFile.length()} bytes, hash: $bytesCopied")
-                    }
+            val copied = when (val imported = modelRegistry.import(context, uri)) {
+                is ModelRegistry.ImportResult.Imported -> true
+                // Already installed, but it may no longer be selected, so it's selected again
+                is ModelRegistry.ImportResult.Unchanged -> false
+                is ModelRegistry.ImportResult.StorageFull -> {
+                    _storageError.postValue(SaveFileResult.StorageFull(imported.availableBytes))
+                    return
+                }
+                is ModelRegistry.ImportResult.Failed -> {
+                    _storageError.postValue(SaveFileResult.OtherError(imported.exception))
+                    return
                 }
             }
 
@@ -269,8 +274,10 @@ class SettingsViewModel(
                 _storageError.postValue(null)
             } else {
                 // File write failed - clean up copied model file and update error state
-                targetFile.delete()
-                Log.w(TAG, "Cleaned up model file due to failed metadata write")
+                if (copied) {
+                    modelRegistry.remove(context)
+                    Log.w(TAG, "Cleaned up model file due to failed metadata write")
+                }
                 _storageError.postValue(result)
             }
         }
@@ -351,18 +358,5 @@ class SettingsViewModel(
             }
         }
     }
-
-    private fun ParcelFileDescriptor.sha256(): String {
-        val digest = MessageDigest.getInstance("SHA-256")
-        FileInputStream(this.fileDescriptor).use { input ->
-            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
-            var read = input.read(buffer)
-            while (read > 0) {
-                digest.update(buffer, 0, read)
-                read = input.read(buffer)
-            }
-        }
-        return digest.digest().joinToString("") { "%02x".format(it) }
-    }
 }
 
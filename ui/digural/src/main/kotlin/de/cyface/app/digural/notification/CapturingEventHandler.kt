@@ -36,8 +36,15 @@ import de.cyface.app.digural.utils.Constants.TAG
 import de.cyface.app.utils.SharedConstants.NOTIFICATION_CHANNEL_ID_RUNNING
 import de.cyface.app.utils.SharedConstants.NOTIFICATION_CHANNEL_ID_WARNING
 import de.cyface.app.utils.SharedConstants.SPACE_WARNING_NOTIFICATION_ID
+import de.cyface.app.utils.capturing.CapturingNotificationUpdater
 import de.cyface.datacapturing.EventHandlingStrategy
 import de.cyface.datacapturing.backend.DataCapturingBackgroundService
+import de.cyface.persistence.DefaultPersistenceBehaviour
+import de.cyface.persistence.DefaultPersistenceLayer
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
 
 /**
  * A [EventHandlingStrategy] to respond to specified events triggered by the
@@ -45,7 +52,7 @@ import de.cyface.datacapturing.backend.DataCapturingBackgroundService
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 3.0.3
+ * @version 3.2.1
  * @since 2.5.0
  */
 class CapturingEventHandler : EventHandlingStrategy {
@@ -112,35 +119,89 @@ class CapturingEventHandler : EventHandlingStrategy {
     }
 
     override fun buildCapturingNotification(context: DataCapturingBackgroundService): Notification {
-        val channelId: String = NOTIFICATION_CHANNEL_ID_RUNNING
-
-        // Open Activity when the notification is clicked
-        val onClickIntent = Intent(context, MainActivity::class.java)
-        val onClickPendingIntent: PendingIntent =
-            PendingIntent.getActivity(
-                context, 0, onClickIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
-            )
-        createNotificationChannelIfNotExists(
-            context, channelId, "Cyface",
-            context.getString(de.cyface.datacapturing.R.string.notification_channel_description_running),
-            NotificationManager.IMPORTANCE_LOW, false, Color.GREEN, false
-        )
-        val builder = NotificationCompat.Builder(context, channelId)
-            .setContentTitle(context.getText(de.cyface.datacapturing.R.string.capturing_active))
-            .setContentIntent(onClickPendingIntent).setWhen(System.currentTimeMillis())
-            .setOngoing(true)
-            .setAutoCancel(false)
-
-        // APIs < 21 crash when replacing a notification icon with a vector icon
-        // What works is: use a png to replace the icon on API < 21 or to reuse the same vector icon
-        // The most elegant solution seems to be to have PNGs for the icons and the vector xml in drawable-anydpi-v21,
-        // see https://stackoverflow.com/a/37334176/5815054
-        builder.setSmallIcon(R.drawable.ic_logo_white)
-        return builder.build()
+        launchStatistics(context.applicationContext)
+        return capturingNotificationBuilder(context).build()
     }
 
     companion object {
+        /**
+         * The scope the live statistics are posted in, see [launchStatistics].
+         *
+         * The handler is parceled into the capturing process, so the scope belongs to that
+         * process and outlives the single handler instances.
+         */
+        private val statisticsScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+        /**
+         * Loads the live statistics, created on the first [launchStatistics].
+         */
+        private var persistence: DefaultPersistenceLayer<*>? = null
+
+        /**
+         * Posts the live statistics in the capturing notification, see [launchStatistics].
+         */
+        private var statisticsJob: Job? = null
+
+        /**
+         * Shows the live statistics of the measurement in the capturing notification.
+         *
+         * This is called by the capturing service each time it (re)starts, in the capturing
+         * process. The app's capturing listeners are unregistered while it's in the background,
+         * so the statistics are loaded from the database there.
+         *
+         * @param context The context to load the statistics and post the notification with.
+         */
+        @Synchronized
+        private fun launchStatistics(context: Context) {
+            statisticsJob?.cancel()
+            val updater = CapturingNotificationUpdater(
+                context,
+                capturingNotificationBuilder(context),
+                showPictures = true
+            )
+            if (persistence == null) {
+                persistence = DefaultPersistenceLayer(context, DefaultPersistenceBehaviour())
+            }
+            statisticsJob = updater.launch(statisticsScope, persistence!!)
+        }
+
+        /**
+         * Creates the builder of the notification shown while capturing.
+         *
+         * This is also used to update the notification with live statistics.
+         *
+         * @param context The context to create the notification with.
+         * @return The builder.
+         */
+        fun capturingNotificationBuilder(context: Context): NotificationCompat.Builder {
+            val channelId: String = NOTIFICATION_CHANNEL_ID_RUNNING
+
+            // Open Activity when the notification is clicked
+            val onClickIntent = Intent(context, MainActivity::class.java)
+            val onClickPendingIntent: PendingIntent =
+                PendingIntent.getActivity(
+                    context, 0, onClickIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+                )
+            createNotificationChannelIfNotExists(
+                context, channelId, "Cyface",
+                context.getString(de.cyface.datacapturing.R.string.notification_channel_description_running),
+                NotificationManager.IMPORTANCE_LOW, false, Color.GREEN, false
+            )
+            val builder = NotificationCompat.Builder(context, channelId)
+                .setContentTitle(context.getText(de.cyface.datacapturing.R.string.capturing_active))
+                .setContentIntent(onClickPendingIntent).setWhen(System.currentTimeMillis())
+                .setOngoing(true)
+                .setAutoCancel(false)
+
+            // APIs < 21 crash when replacing a notification icon with a vector icon
+            // What works is: use a png to replace the icon on API < 21 or to reuse the same vector icon
+            // The most elegant solution seems to be to have PNGs for the icons and the vector xml in drawable-anydpi-v21,
+            // see https://stackoverflow.com/a/37334176/5815054
+            builder.setSmallIcon(R.drawable.ic_logo_white)
+            return builder
+        }
+
         /**
          * The `Parcelable` creator as required by the Android Parcelable specification.
          */
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import okio.Buffer
+import okio.ForwardingSink
+import okio.Sink
+
+/**
+ * A [Sink] which counts the bytes written to the [delegate].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal class CountingSink(delegate: Sink) : ForwardingSink(delegate) {
+
+    /**
+     * The number of bytes written so far.
+     */
+    var bytesWritten = 0L
+        private set
+
+    override fun write(source: Buffer, byteCount: Long) {
+        super.write(source, byteCount)
+        bytesWritten += byteCount
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import android.os.Debug
+import android.util.Log
+import de.cyface.app.digural.MainActivity.Companion.TAG
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.GzipSink
+import okio.Source
+import okio.buffer
+import okio.source
+import java.io.File
+
+/**
+ * Compresses files on the fly while they are uploaded.
+ *
+ * The sensor data (`measurement.ccyf`) and the text and JSON attachments compress several-fold,
+ * which matters when syncing over constrained mobile hotspots. Images are already compressed and
+ * are uploaded as is.
+ *
+ * Compressed files are uploaded with the [SUFFIX] appended to their name, so that the
+ * post-processing can tell them apart from uncompressed files.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 4.3.0
+ * @property level The gzip level from `1` (fastest) to `9` (smallest), `0` disables compression.
+ */
+class UploadCompression(private val level: Int) {
+
+    /**
+     * The uncompressed bytes of all files compressed by this instance.
+     */
+    private var sessionBytesIn = 0L
+
+    /**
+     * The compressed bytes of all files compressed by this instance.
+     */
+    private var sessionBytesOut = 0L
+
+    /**
+     * The CPU time spent on all files compressed by this instance, in nanoseconds.
+     */
+    private var sessionCpuNanos = 0L
+
+    init {
+        require(level in 0..MAX_LEVEL) { "Unsupported compression level: $level" }
+    }
+
+    /**
+     * @param fileName The name of the file to upload.
+     * @return `true` if the file is compressed before it's uploaded.
+     */
+    fun appliesTo(fileName: String): Boolean {
+        return level > 0 && COMPRESSIBLE_SUFFIXES.any { fileName.endsWith(it, ignoreCase = true) }
+    }
+
+    /**
+     * @param fileName The name of the file to upload.
+     * @return The name of the file on the server, with the [SUFFIX] if the file is compressed.
+     */
+    fun remoteName(fileName: String): String {
+        return if (appliesTo(fileName)) "$fileName$SUFFIX" else fileName
+    }
+
+    /**
+     * Creates a [RequestBody] which streams the gzip compressed [file].
+     *
+     * The compressed size is not known in advance, so the body is sent with chunked encoding.
+     *
+     * @param file The file to compress.
+     * @param source Opens the uncompressed content of the [file], e.g. to hash it while reading.
+     * @return The request body.
+     */
+    fun requestBody(file: File, source: () -> Source = { file.source() }): RequestBody =
+        CompressedFileBody(file, source)
+
+    /**
+     * Logs the compression ratio and CPU time of one file and of the whole session.
+     *
+     * @param file The compressed file.
+     * @param bytesOut The number of compressed bytes.
+     * @param cpuNanos The CPU time spent on reading, compressing and writing the file.
+     */
+    private fun report(file: File, bytesOut: Long, cpuNanos: Long) {
+        val bytesIn = file.length()
+        val session = synchronized(this) {
+            sessionBytesIn += bytesIn
+            sessionBytesOut += bytesOut
+            sessionCpuNanos += cpuNanos
+            "${ratio(sessionBytesIn, sessionBytesOut)}x, ${sessionCpuNanos / 1_000_000} ms CPU"
+        }
+        Log.d(
+            TAG,
+            "Compressed ${file.name}: $bytesIn B -> $bytesOut B (${ratio(bytesIn, bytesOut)}x) " +
+                    "in ${cpuNanos / 1_000_000} ms CPU, level $level (session: $session)"
+        )
+    }
+
+    /**
+     * @return The compression ratio, rounded to one decimal place.
+     */
+    private fun ratio(bytesIn: Long, bytesOut: Long): Double {
+        return if (bytesOut == 0L) 0.0 else Math.round(bytesIn * 10.0 / bytesOut) / 10.0
+    }
+
+    /**
+     * A [RequestBody] which compresses the [file] while writing it.
+     *
+     * The body can be written more than once, e.g. when OkHttp retries the request after a
+     * connection failure, as the file is re-read each time.
+     */
+    private inner class CompressedFileBody(
+        private val file: File,
+        private val source: () -> Source
+    ) : RequestBody() {
+        override fun contentType(): MediaType = CONTENT_TYPE
+
+        override fun contentLength(): Long = -1L
+
+        override fun writeTo(sink: BufferedSink) {
+            // Compression runs on the calling thread, so its CPU time is the thread's CPU time.
+            // Waiting for the network or the `UploadScheduler` throttle costs no CPU time.
+            val cpuStart = Debug.threadCpuTimeNanos()
+            val counting = CountingSink(sink)
+            val gzip = GzipSink(counting).apply { deflater.setLevel(level) }
+            // Closing writes the gzip trailer, like in OkHttp's own gzip request recipe
+            gzip.buffer().use { compressed -> source().use { compressed.writeAll(it) } }
+            report(file, counting.bytesWritten, Debug.threadCpuTimeNanos() - cpuStart)
+        }
+    }
+
+    companion object {
+        /**
+         * The suffix appended to the name of compressed files.
+         */
+        const val SUFFIX = ".gz"
+
+        /**
+         * The highest gzip level.
+         */
+        private const val MAX_LEVEL = 9
+
+        /**
+         * The suffixes of the files which compress well. JPEG images are already compressed.
+         */
+        @Suppress("SpellCheckingInspection")
+        private val COMPRESSIBLE_SUFFIXES = listOf(".ccyf", ".json", ".txt", ".log", ".csv")
+
+        /**
+         * The content type of compressed files.
+         */
+        private val CONTENT_TYPE = "application/gzip".toMediaType()
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import android.os.SystemClock
+import android.util.Log
+import de.cyface.app.digural.MainActivity.Companion.TAG
+import de.cyface.app.digural.upload.persistence.UploadMetric
+import de.cyface.app.digural.upload.persistence.UploadMetric.Outcome
+import de.cyface.app.digural.upload.persistence.UploadMetric.Phase
+import de.cyface.app.digural.upload.persistence.UploadMetricDao
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.buffer
+import java.io.IOException
+
+/**
+ * Records the size, latency, phase and outcome of each operation of a WebDAV sync.
+ *
+ * This allows to find out whether a slow sync is caused by the link, the server, the directory
+ * setup or the annotation merge. The entries are written to the [dao], which keeps the newest
+ * [MAX_ENTRIES], and a percentile summary per phase is logged via [logSummary].
+ *
+ * Operations belong to the same session until no operation happened for [SESSION_GAP_MILLIS].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property dao The store to write the entries to.
+ */
+class UploadMetrics(private val dao: UploadMetricDao) {
+
+    /**
+     * The phase of the requests sent by the current thread, see [phase].
+     */
+    private val currentPhase = ThreadLocal<Phase>()
+
+    /**
+     * The start time of the current session.
+     */
+    private var session = 0L
+
+    /**
+     * The uptime of the last operation, to detect the start of a new session.
+     */
+    private var lastOperationAt = 0L
+
+    /**
+     * An OkHttp interceptor which records each request in the [currentPhase].
+     *
+     * Register this as application interceptor so that retries and auth challenges are part of
+     * the measured latency of the operation.
+     */
+    val interceptor = Interceptor { chain ->
+        val request = chain.request()
+        val body = request.body?.let { CountingBody(it) }
+        val start = System.currentTimeMillis()
+        val response = try {
+            chain.proceed(
+                if (body == null) request
+                else request.newBuilder().method(request.method, body).build()
+            )
+        } catch (e: IOException) {
+            record(currentPhase(), request.method, body?.bytes ?: 0, start, Outcome.FAILURE, null)
+            throw e
+        }
+        val outcome = if (response.code < 400) Outcome.SUCCESS else Outcome.HTTP_ERROR
+        record(currentPhase(), request.method, body?.bytes ?: 0, start, outcome, response.code)
+        response
+    }
+
+    /**
+     * Assigns the requests sent by [block] to a [phase].
+     *
+     * @param phase The phase of the requests.
+     * @param block The code which sends the requests.
+     * @return The result of [block].
+     */
+    fun <T> phase(phase: Phase, block: () -> T): T {
+        val previous = currentPhase.get()
+        currentPhase.set(phase)
+        try {
+            return block()
+        } finally {
+            currentPhase.set(previous)
+        }
+    }
+
+    /**
+     * Records a local operation which does not send requests, e.g. the annotation merge.
+     *
+     * @param phase The phase of the operation.
+     * @param block The operation.
+     * @return The result of [block].
+     */
+    fun <T> measure(phase: Phase, block: () -> T): T {
+        val start = System.currentTimeMillis()
+        val result = try {
+            block()
+        } catch (@Suppress("TooGenericExceptionCaught") e: Exception) {
+            record(phase, phase.name, 0, start, Outcome.FAILURE, null)
+            throw e
+        }
+        record(phase, phase.name, 0, start, Outcome.SUCCESS, null)
+        return result
+    }
+
+    /**
+     * Logs the number of operations, the bytes sent and the latency percentiles of the current
+     * session, per phase.
+     */
+    fun logSummary() {
+        val session = synchronized(this) { session }
+        if (session == 0L) return
+
+        dao.loadAllBySession(session).groupBy { it.phase }.forEach { (phase, metrics) ->
+            val latencies = metrics.map { it.latencyMillis }.sorted()
+            val failures = metrics.count { it.outcome != Outcome.SUCCESS }
+            Log.i(
+                TAG,
+                "Upload metrics $phase: ${metrics.size} ops ($failures failed), " +
+                        "${metrics.sumOf { it.bytes }} B, latency p50 ${percentile(latencies, 50)} " +
+                        "ms, p90 ${percentile(latencies, 90)} ms, p99 ${percentile(latencies, 99)} ms"
+            )
+        }
+    }
+
+    private fun currentPhase() = currentPhase.get() ?: Phase.OTHER
+
+    /**
+     * Writes an entry to the [dao].
+     *
+     * The metrics must never fail the upload, so errors writing them are only logged.
+     */
+    @Suppress("LongParameterList")
+    private fun record(
+        phase: Phase,
+        method: String,
+        bytes: Long,
+        start: Long,
+        outcome: Outcome,
+        statusCode: Int?
+    ) {
+        val latency = System.currentTimeMillis() - start
+        try {
+            val session = session()
+            dao.insert(
+                UploadMetric(
+                    session = session,
+                    timestamp = start,
+                    phase = phase,
+                    method = method,
+                    bytes = bytes,
+                    latencyMillis = latency,
+                    outcome = outcome,
+                    statusCode = statusCode,
+                )
+            )
+        } catch (@Suppress("TooGenericExceptionCaught") e: RuntimeException) {
+            Log.w(TAG, "Failed to record upload metric", e)
+        }
+    }
+
+    /**
+     * Returns the current session and starts a new one after a gap of [SESSION_GAP_MILLIS].
+     *
+     * When a new session starts, the oldest entries are dropped to keep the store rolling.
+     */
+    private fun session(): Long {
+        val now = SystemClock.uptimeMillis()
+        val newSession = synchronized(this) {
+            val isNew = session == 0L || now - lastOperationAt > SESSION_GAP_MILLIS
+            if (isNew) session = System.currentTimeMillis()
+            lastOperationAt = now
+            isNew
+        }
+        if (newSession) {
+            dao.deleteAllButNewest(MAX_ENTRIES)
+        }
+        return session
+    }
+
+    /**
+     * A [RequestBody] which counts the bytes written.
+     */
+    private class CountingBody(private val body: RequestBody) : RequestBody() {
+        /**
+         * The number of bytes written by the last [writeTo].
+         */
+        @Volatile
+        var bytes = 0L
+            private set
+
+        override fun contentType(): MediaType? = body.contentType()
+
+        override fun contentLength(): Long = body.contentLength()
+
+        override fun isOneShot(): Boolean = body.isOneShot()
+
+        override fun writeTo(sink: BufferedSink) {
+            val counting = CountingSink(sink)
+            // Closing the connection's sink is fine, OkHttp ignores the second close afterwards.
+            counting.buffer().use { body.writeTo(it) }
+            bytes = counting.bytesWritten
+        }
+    }
+
+    companion object {
+        /**
+         * The time without operations after which a new session starts.
+         */
+        private const val SESSION_GAP_MILLIS = 5 * 60 * 1_000L
+
+        /**
+         * The number of entries kept in the store.
+         */
+        private const val MAX_ENTRIES = 50_000
+
+        /**
+         * @param sorted The values sorted ascending.
+         * @param percentile The percentile from `1` to `100`.
+         * @return The value of the percentile by the nearest-rank method.
+         */
+        private fun percentile(sorted: List<Long>, percentile: Int): Long {
+            if (sorted.isEmpty()) return 0
+            val rank = Math.ceil(percentile / 100.0 * sorted.size).toInt()
+            return sorted[(rank - 1).coerceIn(0, sorted.lastIndex)]
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import android.os.SystemClock
+import android.util.Log
+import de.cyface.app.digural.MainActivity.Companion.TAG
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSink
+import okio.Throttler
+import okio.buffer
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Orders the WebDAV uploads by [Priority] and limits the bandwidth they may use.
+ *
+ * The `SyncAdapter` uploads attachments in parallel. Without a scheduler these uploads compete
+ * blindly with each other and with the DiGuRaL trigger requests sent on the same Wi-Fi while
+ * capturing. This class:
+ *
+ * - lets an upload only start when no upload of a higher [Priority] is running or waiting, so
+ *   that metadata and sensor files of a measurement finish before the bulk images start,
+ * - throttles all request bodies with a token bucket ([Throttler]), which is tightened to
+ *   [capturingBytesPerSecond] while a measurement is captured, leaving room for the trigger
+ *   requests, and
+ * - reports the achieved throughput per upload and per sync session.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 4.3.0
+ * @property idleBytesPerSecond The rate limit while no measurement is captured, `0` for unlimited.
+ * @property capturingBytesPerSecond The rate limit while a measurement is captured.
+ * @property isCapturing Returns `true` if a measurement is currently captured.
+ */
+class UploadScheduler(
+    private val idleBytesPerSecond: Long = 0L,
+    private val capturingBytesPerSecond: Long = DEFAULT_CAPTURING_BYTES_PER_SECOND,
+    private val isCapturing: () -> Boolean,
+) {
+
+    /**
+     * The token bucket shared by all uploads of this scheduler.
+     */
+    private val throttler = Throttler()
+
+    /**
+     * Guards [waiting] and [running].
+     */
+    private val lock = ReentrantLock()
+
+    /**
+     * Signalled whenever an upload finished so that lower-priority uploads can re-check.
+     */
+    private val finished = lock.newCondition()
+
+    /**
+     * Number of uploads waiting to start, indexed by [Priority.ordinal].
+     */
+    private val waiting = IntArray(Priority.entries.size)
+
+    /**
+     * Number of running uploads, indexed by [Priority.ordinal].
+     */
+    private val running = IntArray(Priority.entries.size)
+
+    /**
+     * The current rate limit in bytes per second, `0` for unlimited.
+     */
+    @Volatile
+    private var bytesPerSecond = -1L
+
+    /**
+     * The uptime in milliseconds at which [bytesPerSecond] was last updated.
+     */
+    @Volatile
+    private var rateCheckedAt = 0L
+
+    /**
+     * The bytes sent since this scheduler was created.
+     */
+    private var sessionBytes = 0L
+
+    /**
+     * The time spent sending [sessionBytes], in nanoseconds.
+     */
+    private var sessionNanos = 0L
+
+    /**
+     * Runs [upload] as soon as no upload with a higher [priority] is running or waiting.
+     *
+     * @param priority The priority of the upload.
+     * @param upload The upload to execute.
+     * @return The result of [upload].
+     */
+    fun <T> schedule(priority: Priority, upload: () -> T): T {
+        lock.withLock {
+            waiting[priority.ordinal]++
+            try {
+                while (higherPriorityPending(priority)) {
+                    finished.await()
+                }
+            } finally {
+                waiting[priority.ordinal]--
+            }
+            running[priority.ordinal]++
+        }
+        try {
+            updateRateLimit()
+            return upload()
+        } finally {
+            lock.withLock {
+                running[priority.ordinal]--
+                finished.signalAll()
+            }
+        }
+    }
+
+    /**
+     * An OkHttp interceptor which throttles and measures all request bodies.
+     *
+     * Register this as network interceptor so that only bytes which are actually sent are counted.
+     */
+    val interceptor = Interceptor { chain ->
+        val request = chain.request()
+        val body = request.body
+        if (body == null || body.contentLength() == 0L) {
+            chain.proceed(request)
+        } else {
+            chain.proceed(request.newBuilder().method(request.method, throttle(body)).build())
+        }
+    }
+
+    /**
+     * @param body The request body to send.
+     * @return A body which writes the [body] through the [throttler] and reports the throughput.
+     */
+    internal fun throttle(body: RequestBody): RequestBody = ThrottledBody(body)
+
+    /**
+     * @return `true` if an upload with a higher priority than [priority] is running or waiting.
+     */
+    private fun higherPriorityPending(priority: Priority): Boolean {
+        for (i in 0 until priority.ordinal) {
+            if (running[i] > 0 || waiting[i] > 0) return true
+        }
+        return false
+    }
+
+    /**
+     * Tightens or relaxes the token bucket depending on whether a measurement is captured.
+     *
+     * This is called when an upload starts and for each chunk written, so that running uploads
+     * are throttled as soon as capturing starts. The capturing state is only checked every
+     * [RATE_CHECK_INTERVAL_MILLIS] as the check requires a database query.
+     */
+    private fun updateRateLimit() {
+        val now = SystemClock.uptimeMillis()
+        if (bytesPerSecond >= 0 && now - rateCheckedAt < RATE_CHECK_INTERVAL_MILLIS) return
+        rateCheckedAt = now
+
+        val rate = if (isCapturing()) capturingBytesPerSecond else idleBytesPerSecond
+        if (rate != bytesPerSecond) {
+            Log.d(TAG, "Upload rate limit: ${if (rate == 0L) "unlimited" else "$rate B/s"}")
+            // Bursts up to one second of data, written in chunks small enough to keep it smooth.
+            throttler.bytesPerSecond(rate, WAIT_BYTE_COUNT, maxOf(rate, WAIT_BYTE_COUNT))
+            bytesPerSecond = rate
+        }
+    }
+
+    /**
+     * Logs the achieved throughput of one upload and of the whole session.
+     *
+     * @param bytes The number of bytes sent.
+     * @param nanos The time it took to send [bytes].
+     */
+    private fun report(bytes: Long, nanos: Long) {
+        val total = synchronized(this) {
+            sessionBytes += bytes
+            sessionNanos += nanos
+            throughput(sessionBytes, sessionNanos)
+        }
+        Log.d(TAG, "Uploaded $bytes B at ${throughput(bytes, nanos)} B/s (session: $total B/s)")
+    }
+
+    /**
+     * @return The throughput in bytes per second.
+     */
+    private fun throughput(bytes: Long, nanos: Long): Long {
+        return if (nanos <= 0) 0 else bytes * 1_000_000_000L / nanos
+    }
+
+    /**
+     * A [RequestBody] which writes the wrapped [body] through the [throttler] and reports the
+     * achieved throughput. The rate limit is re-checked for each chunk, see [updateRateLimit].
+     */
+    private inner class ThrottledBody(private val body: RequestBody) : RequestBody() {
+        override fun contentType(): MediaType? = body.contentType()
+
+        override fun contentLength(): Long = body.contentLength()
+
+        override fun isOneShot(): Boolean = body.isOneShot()
+
+        override fun writeTo(sink: BufferedSink) {
+            val start = System.nanoTime()
+            val throttled = object : ForwardingSink(throttler.sink(sink)) {
+                override fun write(source: Buffer, byteCount: Long) {
+                    updateRateLimit()
+                    super.write(source, byteCount)
+                }
+            }
+            val counting = CountingSink(throttled)
+            // Closing the connection's sink is fine, OkHttp ignores the second close afterwards.
+            // Counted, as bodies with unknown length, e.g. compressed files, report `-1`.
+            counting.buffer().use { body.writeTo(it) }
+            report(counting.bytesWritten, System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * The priorities of the uploads, highest first.
+     */
+    enum class Priority {
+        /**
+         * Small files which describe a measurement, e.g. `metadata.json` and the sensor data.
+         */
+        MEASUREMENT,
+
+        /**
+         * Attachments which are not images, e.g. log and annotation files.
+         */
+        ATTACHMENT,
+
+        /**
+         * Images, which make up the bulk of the uploaded data.
+         */
+        IMAGE,
+    }
+
+    companion object {
+        /**
+         * The default rate limit while capturing: 256 KiB/s, which keeps the Wi-Fi responsive for
+         * the DiGuRaL trigger requests.
+         */
+        const val DEFAULT_CAPTURING_BYTES_PER_SECOND = 256L * 1024
+
+        /**
+         * The number of bytes the [Throttler] releases at once.
+         */
+        private const val WAIT_BYTE_COUNT = 8L * 1024
+
+        /**
+         * The interval in which the capturing state is re-checked.
+         */
+        private const val RATE_CHECK_INTERVAL_MILLIS = 5_000L
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import java.time.Instant
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
+
+/**
+ * Builds the paths of the upload directories on the WebDAV server, used by the [WebdavUploader].
+ *
+ * The directory structure is:
+ * `/files/<login>/digural-upload/<YYYY>_<MM>_<DD>/<deviceId>_<measurementId>/{sensor/imu,imgs}`
+ *
+ * This class only depends on the Java standard library, so that it can be benchmarked on a plain
+ * JVM, see the `benchmark` module.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property apiEndpoint An API endpoint running a Webdav data collector service.
+ * @property login The user the files are uploaded for.
+ * @property deviceId The id of the device which captured the measurements.
+ * @property zone The time zone in which the date directory of a measurement is determined.
+ */
+class WebdavPaths(
+    private val apiEndpoint: String,
+    private val login: String,
+    private val deviceId: String,
+    private val zone: ZoneId = ZoneId.systemDefault(),
+) {
+
+    /**
+     * The directory of all uploads of the [login], as the endpoint does not change.
+     */
+    private val uploadRoot = returnUrlWithTrailingSlash(apiEndpoint) + "files/$login/digural-upload/"
+
+    /**
+     * @param measurementId The id of the measurement.
+     * @param timestamp The time of the first location of the measurement in milliseconds.
+     * @return The directory of the IMU data of the measurement.
+     */
+    fun imuDirectory(measurementId: Long, timestamp: Long): String {
+        return sensorDirectory(measurementId, timestamp) + "/imu"
+    }
+
+    /**
+     * @param measurementId The id of the measurement.
+     * @param timestamp The time of the first location of the measurement in milliseconds.
+     * @return The directory of the sensor data of the measurement.
+     */
+    fun sensorDirectory(measurementId: Long, timestamp: Long): String {
+        return deviceMeasurementDirectory(measurementId, timestamp) + "/sensor"
+    }
+
+    /**
+     * @param measurementId The id of the measurement.
+     * @param timestamp The time of the first location of the measurement in milliseconds.
+     * @return The directory of the images of the measurement.
+     */
+    fun imagesDirectory(measurementId: Long, timestamp: Long): String {
+        @Suppress("SpellCheckingInspection")
+        return deviceMeasurementDirectory(measurementId, timestamp) + "/imgs"
+    }
+
+    /**
+     * @param measurementId The id of the measurement.
+     * @param timestamp The time of the first location of the measurement in milliseconds.
+     * @return The directory of the measurement.
+     */
+    fun deviceMeasurementDirectory(measurementId: Long, timestamp: Long): String {
+        return dateDirectory(timestamp) + "/${deviceId}_$measurementId"
+    }
+
+    /**
+     * @param timestamp The time of the first location of the measurement in milliseconds.
+     * @return The directory of the day the measurement was captured on.
+     */
+    fun dateDirectory(timestamp: Long): String {
+        val date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate().format(DATE_FORMAT)
+        // The same user is used on all devices, so no user id is stored in the path.
+        return uploadRoot + date
+    }
+
+    companion object {
+        /**
+         * The format of the date directories, shared as [DateTimeFormatter] is immutable.
+         */
+        private val DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd")
+
+        /**
+         * Adds a trailing slash to the server URL or leaves an existing trailing slash untouched.
+         *
+         * @param url The url to format.
+         * @return The server URL with a trailing slash.
+         */
+        fun returnUrlWithTrailingSlash(url: String): String {
+            return if (url.endsWith("/")) {
+                url
+            } else {
+                "$url/"
+            }
+        }
+    }
+}
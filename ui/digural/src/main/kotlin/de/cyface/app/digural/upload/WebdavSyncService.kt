@@ -21,10 +21,13 @@ package de.cyface.app.digural.upload
 import android.app.Service
 import android.content.Intent
 import android.os.IBinder
+import de.cyface.app.digural.BuildConfig
 import de.cyface.app.digural.auth.WebdavAuth
 import de.cyface.app.digural.auth.WebdavAuthenticator
+import de.cyface.app.digural.upload.persistence.UploadDatabase
 import de.cyface.persistence.DefaultPersistenceBehaviour
 import de.cyface.persistence.DefaultPersistenceLayer
+import de.cyface.persistence.model.MeasurementStatus
 import de.cyface.synchronization.SyncAdapter
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.runBlocking
@@ -38,7 +41,7 @@ import kotlinx.coroutines.runBlocking
  * This is a custom implementation of the [de.cyface.synchronization.CyfaceSyncService].
  *
  * @author Armin Schnabel
- * @version 1.0.1
+ * @version 1.1.0
  * @since 3.8.0
  */
 class WebdavSyncService : Service() {
@@ -53,6 +56,11 @@ class WebdavSyncService : Service() {
                 // `onBind()` is called directly after `onCreate()` and requires `syncAdapter` (sync)
                 val collectorApi = runBlocking { collectorApi() }
 
+                // Throttles uploads while capturing to keep the Wi-Fi free for DiGuRaL triggers
+                val scheduler = UploadScheduler(isCapturing = {
+                    runBlocking { persistence.hasMeasurement(MeasurementStatus.OPEN) }
+                })
+
                 val account = auth.getAccount()
                 syncAdapter = SyncAdapter(
                     applicationContext,
@@ -66,6 +74,9 @@ class WebdavSyncService : Service() {
                         persistence.attachmentDao,
                         persistence.measurementRepository,
                         applicationContext,
+                        scheduler,
+                        UploadCompression(BuildConfig.uploadCompressionLevel),
+                        UploadMetrics(UploadDatabase.getInstance(this).uploadMetricDao()),
                     ),
                     MAX_MEASUREMENT_UPLOAD_BYTES,
                 )
@@ -20,17 +20,22 @@ package de.cyface.app.digural.upload
 
 import android.content.Context
 import android.util.Log
+import com.thegrizzlylabs.sardineandroid.DavResource
 import com.thegrizzlylabs.sardineandroid.Sardine
 import com.thegrizzlylabs.sardineandroid.impl.OkHttpSardine
 import com.thegrizzlylabs.sardineandroid.impl.SardineException
 import de.cyface.app.digural.MainActivity.Companion.TAG
-import okhttp3.OkHttpClient
-import java.util.concurrent.TimeUnit
+import de.cyface.app.digural.upload.persistence.FileHash
+import de.cyface.app.digural.upload.persistence.RemoteDirectory
+import de.cyface.app.digural.upload.persistence.UploadDatabase
+import de.cyface.app.digural.upload.persistence.UploadMetric.Phase
+import de.cyface.app.digural.upload.persistence.UploadedFile
 import de.cyface.camera_service.foreground.AnnotationsWriter
 import de.cyface.camera_service.foreground.NoAnnotationsFound
 import de.cyface.model.Json
 import de.cyface.model.Json.JsonObject
 import de.cyface.persistence.dao.AttachmentDao
+import de.cyface.persistence.model.AttachmentStatus
 import de.cyface.persistence.repository.MeasurementRepository
 import de.cyface.synchronization.NoLocationData
 import de.cyface.synchronization.SyncAdapter.Companion.fileNamePrefix
@@ -57,17 +62,25 @@ import de.cyface.uploader.model.Measurement
 import de.cyface.uploader.model.Uploadable
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.runBlocking
+import okhttp3.Credentials
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.asRequestBody
+import okio.HashingSource
+import okio.Source
+import okio.source
 import java.io.File
 import java.io.IOException
 import java.io.InterruptedIOException
 import java.net.MalformedURLException
 import java.net.SocketTimeoutException
 import java.net.URL
-import java.time.Instant
-import java.time.ZoneId
-import java.time.format.DateTimeFormatter
+import java.security.MessageDigest
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 import javax.net.ssl.SSLException
+import javax.xml.namespace.QName
 
 /**
  * Implementation of the [Uploader].
@@ -76,6 +89,9 @@ import javax.net.ssl.SSLException
  *
  * @author Armin Schnabel
  * @property apiEndpoint An API endpoint running a Webdav data collector service, like `https://some.url/api/v3`
+ * @property scheduler Orders the uploads by priority and limits their bandwidth.
+ * @property compression Compresses the sensor data and text attachments during upload.
+ * @property metrics Records the size, latency, phase and outcome of the sync operations.
  */
 class WebdavUploader(
     private val apiEndpoint: String,
@@ -85,6 +101,9 @@ class WebdavUploader(
     private val attachmentDao: AttachmentDao?,
     private val measurementRepository: MeasurementRepository?,
     private val context: Context,
+    private val scheduler: UploadScheduler,
+    private val compression: UploadCompression,
+    private val metrics: UploadMetrics,
 ) : Uploader {
 
     /**
@@ -109,16 +128,28 @@ class WebdavUploader(
      *
      * HTTP/2 is not currently usable against scadsai's Nextcloud (server ALPN advertises
      * only `http/1.1`). Left as-is; OkHttp will auto-upgrade if the server ever enables h2.
+     *
+     * The [scheduler]'s network interceptor throttles all request bodies. The `writeTimeout`
+     * only fires when the body stops making progress, which the throttle does not cause.
      */
     private val httpClient = OkHttpClient.Builder()
         .connectTimeout(30, TimeUnit.SECONDS)
         .readTimeout(60, TimeUnit.SECONDS)
         .writeTimeout(120, TimeUnit.SECONDS)
         .retryOnConnectionFailure(true)
+        .addInterceptor(metrics.interceptor)
+        .addNetworkInterceptor(scheduler.interceptor)
         .build()
 
     private val sardine = OkHttpSardine(httpClient)
 
+    private val paths = WebdavPaths(apiEndpoint, login, deviceId)
+
+    /**
+     * The preemptive `Authorization` header for the uploads, which are sent without [sardine].
+     */
+    private val credentials = Credentials.basic(login, password)
+
     /**
      * Serializes the `ensureDirectoriesExist` setup across parallel attachment uploads.
      * Without this lock, N parallel threads on a brand-new measurement all see the target
@@ -133,6 +164,18 @@ class WebdavUploader(
     /** `measurementId`s for which the measurement directory chain has been verified/created. */
     private val measurementDirsReady = ConcurrentHashMap.newKeySet<Long>()
 
+    /** `measurementId`s for which the `annotations.json` merge is done or not required. */
+    private val annotationsMerged = ConcurrentHashMap.newKeySet<Long>()
+
+    /** The files on the server per upload directory, see [remoteListing]. */
+    private val remoteListings = ConcurrentHashMap<String, Map<String, DavResource>>()
+
+    private val fileHashDao = UploadDatabase.getInstance(context).fileHashDao()
+
+    private val uploadedFileDao = UploadDatabase.getInstance(context).uploadedFileDao()
+
+    private val remoteDirectoryDao = UploadDatabase.getInstance(context).remoteDirectoryDao()
+
     init {
         require(apiEndpoint.isNotEmpty())
         require(deviceId.isNotEmpty())
@@ -156,17 +199,7 @@ class WebdavUploader(
             return Result.UPLOAD_SKIPPED
         }
         // Create here to support resume and as capturing.stop.finished is unreliable [LEIP-327]
-        runBlocking(Dispatchers.IO) {
-            try {
-                AnnotationsWriter(
-                    measurementId = uploadable.measurementId(),
-                    attachmentDao = attachmentDao!!,
-                    measurementRepository = measurementRepository!!,
-                ).mergeJsonAndWriteToFile(context)
-            } catch (e: NoAnnotationsFound) {
-                Log.w(TAG, "Skip merging annotations.json, no annotations found", e)
-            }
-        }
+        mergeAnnotationsIfRequired(uploadable.measurementId())
 
         val endpoint = URL(imuDirectory(uploadable))
         val result = uploadFile(uploadable, file, MEASUREMENT_FILE_FILENAME, endpoint)
@@ -176,6 +209,49 @@ class WebdavUploader(
         return result
     }
 
+    /**
+     * Merges the per-image detections into the `annotations.json` of a measurement, at most once.
+     *
+     * The merge re-reads all detections of the measurement, so its cost grows with the number of
+     * images. As the measurement upload is repeated on each retry and resume, the merge is
+     * memoized: in-process via [annotationsMerged] and across processes via the `SYNCED` state of
+     * the `annotations.json` attachment. Once that file reached the server there is nothing left
+     * to merge, even when the sync service was recreated in between.
+     *
+     * @param measurementId The id of the measurement to merge the annotations for.
+     */
+    private fun mergeAnnotationsIfRequired(measurementId: Long) {
+        if (measurementId in annotationsMerged) return
+
+        runBlocking(Dispatchers.IO) {
+            val attachments = attachmentDao!!.loadAllByMeasurementId(measurementId)
+            val annotationsSynced = attachments.any {
+                it.status == AttachmentStatus.SYNCED &&
+                        it.path.fileName.toString() == ANNOTATIONS_FILE_NAME
+            }
+            if (annotationsSynced) {
+                Log.d(TAG, "Skip merging $ANNOTATIONS_FILE_NAME, already synced: $measurementId")
+                annotationsMerged.add(measurementId)
+                return@runBlocking
+            }
+
+            try {
+                metrics.measure(Phase.ANNOTATION_MERGE) {
+                    AnnotationsWriter(
+                        measurementId = measurementId,
+                        attachmentDao = attachmentDao,
+                        measurementRepository = measurementRepository!!,
+                    ).mergeJsonAndWriteToFile(context)
+                }
+                annotationsMerged.add(measurementId)
+            } catch (e: NoAnnotationsFound) {
+                Log.w(TAG, "Skip merging $ANNOTATIONS_FILE_NAME, no annotations found", e)
+                // Nothing to merge on the next attempt either, as the measurement is finished
+                annotationsMerged.add(measurementId)
+            }
+        }
+    }
+
     override fun uploadAttachment(
         jwtToken: String,
         uploadable: Attachment,
@@ -217,42 +293,46 @@ class WebdavUploader(
 
     override fun onUploadFinished(uploadable: Uploadable) {
         val completionFilePath = "${deviceMeasurementDirectory(uploadable)}/upload-completed"
-        if (!sardine.exists(completionFilePath)) {
-            sardine.put(completionFilePath, ByteArray(0))
+        metrics.phase(Phase.COMPLETION_MARKER) {
+            if (!sardine.exists(completionFilePath)) {
+                sardine.put(completionFilePath, ByteArray(0))
+            }
         }
         Log.d(TAG, "created: $completionFilePath")
+        metrics.logSummary()
     }
 
     private fun imuDirectory(uploadable: Uploadable): String {
-        return sensorDirectory(uploadable) + "/imu"
+        return paths.imuDirectory(uploadable.measurementId(), timestamp(uploadable))
     }
 
     private fun sensorDirectory(uploadable: Uploadable): String {
-        return deviceMeasurementDirectory(uploadable) + "/sensor"
+        return paths.sensorDirectory(uploadable.measurementId(), timestamp(uploadable))
     }
 
     private fun imagesDirectory(uploadable: Uploadable): String {
-        @Suppress("SpellCheckingInspection")
-        return deviceMeasurementDirectory(uploadable) + "/imgs"
+        return paths.imagesDirectory(uploadable.measurementId(), timestamp(uploadable))
     }
 
     private fun deviceMeasurementDirectory(uploadable: Uploadable): String {
-        return dateDirectory(uploadable) + "/${deviceId}_${uploadable.measurementId()}"
+        return paths.deviceMeasurementDirectory(uploadable.measurementId(), timestamp(uploadable))
     }
 
     private fun dateDirectory(uploadable: Uploadable): String {
+        return paths.dateDirectory(timestamp(uploadable))
+    }
+
+    /**
+     * @return The timestamp which determines the date directory of the [uploadable].
+     * @throws NoLocationData if the measurement has no location data.
+     */
+    private fun timestamp(uploadable: Uploadable): Long {
         val timestamp = uploadable.timestamp()
         if (timestamp === null) {
             Log.i(TAG, "Skip attachment upload w/o location for measurement: $uploadable")
             throw NoLocationData("Skip upload as upload dir required date from missing location data")
         }
-        val date = Instant.ofEpochMilli(timestamp)
-            .atZone(ZoneId.systemDefault())
-            .toLocalDate()
-            .format(DateTimeFormatter.ofPattern("yyyy_MM_dd"))
-
-        // The same user is used on all devices, so no user id is stored in the path.
-        return returnUrlWithTrailingSlash(apiEndpoint) + "files/${login}/digural-upload/$date"
+        return timestamp
     }
 
     @Throws(UploadFailed::class)
@@ -281,12 +361,60 @@ class WebdavUploader(
 
 
             val isMeasurementUpload = fileName == MEASUREMENT_FILE_FILENAME
-            ensureDirectoriesExist(isMeasurementUpload, uploadable)
+            scheduler.schedule(uploadPriority(isMeasurementUpload, fileName)) {
+                upload(uploadable, file, fileName, endpoint, isMeasurementUpload)
+            }
+            de.cyface.uploader.Result.UPLOAD_SUCCESSFUL
+        } catch (@Suppress("TooGenericExceptionCaught") e: Exception) {
+            if (e is SardineException && (e.statusCode == 404 || e.statusCode == 409)) {
+                invalidateDirectories(uploadable)
+            }
+            handleUploadException(e)
+        }
+    }
+
+    /**
+     * Determines the [UploadScheduler.Priority] of an upload.
+     *
+     * @param isMeasurementUpload `true` if the measurement file and its metadata are uploaded.
+     * @param fileName The name of the file to upload.
+     * @return The priority to schedule the upload with.
+     */
+    private fun uploadPriority(
+        isMeasurementUpload: Boolean,
+        fileName: String
+    ): UploadScheduler.Priority {
+        return when {
+            isMeasurementUpload -> UploadScheduler.Priority.MEASUREMENT
+            IMAGE_FILE_SUFFIXES.any { fileName.endsWith(it, ignoreCase = true) } ->
+                UploadScheduler.Priority.IMAGE
+            else -> UploadScheduler.Priority.ATTACHMENT
+        }
+    }
 
-            // File uploads
-            val uploadDir = endpoint.toExternalForm()
-            if (isMeasurementUpload) {
-                // Meta file
+    /**
+     * Creates the required directories and uploads the file.
+     *
+     * @param uploadable The measurement or attachment to upload.
+     * @param file The file to upload.
+     * @param fileName The name of the file.
+     * @param endpoint The directory to upload the file to.
+     * @param isMeasurementUpload `true` if the measurement file and its metadata are uploaded.
+     */
+    private fun upload(
+        uploadable: Uploadable,
+        file: File,
+        fileName: String,
+        endpoint: URL,
+        isMeasurementUpload: Boolean,
+    ) {
+        metrics.phase(Phase.DIRECTORY_SETUP) { ensureDirectoriesExist(isMeasurementUpload, uploadable) }
+
+        // File uploads
+        val uploadDir = endpoint.toExternalForm()
+        if (isMeasurementUpload) {
+            // Meta file
+            metrics.phase(Phase.METADATA) {
                 val metaDataUri = "$uploadDir/metadata.json"
                 if (!sardine.exists(metaDataUri)) {
                     Log.d(TAG, "Upload meta data to $metaDataUri ...")
@@ -297,52 +425,70 @@ class WebdavUploader(
                     }
                     sardine.put(metaDataUri, metaDataJson.build().stringValue.toByteArray())
                 }
+            }
 
-                // Measurement file
-                val measurementUri = "$uploadDir/$fileName"
+            // Measurement file
+            metrics.phase(Phase.MEASUREMENT) {
+                val measurementUri = "$uploadDir/${compression.remoteName(fileName)}"
                 if (!sardine.exists(measurementUri)) {
                     Log.d(TAG, "Upload measurement: $fileName ...")
-                    sardine.put(measurementUri, file, "application/octet-stream")
+                    put(measurementUri, file, fileName)
+                }
+            }
+        } else {
+            // Attachment file
+            //
+            // Regarding `data.json` file: [LEIP-283]
+            // All required information is already contained in other uploaded log files.
+            // We anyhow do not have all information available which is required in the
+            // `data.json`, e.g. `yaw/pitch/roll` or geometry of the image (this info is not
+            // easily available during upload as the upload happens in multiple parts and the
+            // geometry of the image are only in the image EXIF header, but during measurement
+            // upload we only have the geometry of the track available. Thus, this would require
+            // significant refactoring.
+            // Thus, the whole `data.json` file should be created during post-processing.
+            //
+            // Regarding `${recId}_{l,m,r,p}.txt` files: [LEIP-282]
+            // We currently create an `annotations.json` file in the COCO format which contains
+            // all annotations of all images instead of one YOLO `txt` file per image.
+            // - advantage: significant less upload request to next cloud (~50%)
+            // - we can create the `txt` files per image in post-processing like other meta files
+            // - all required information is available in the COCO `json file:
+            //   rectId.txt = attachment-id → images.id
+            //   recognized object → COCO-class-Id → convert to Digural class ID
+            //   recognized bounding box → not normalized, but image width/height is available
+            //   confidence-score → in COCO-JSON per object for each image
+            //   image name → [timestamp].jpg (not required in the txt format as of now)
+            // - as the `txt` files are created in post-processing, all log files can also be
+            //   uploaded into `img` or another directory.
+
+            val diguralFileName = fileName.removePrefix(
+                fileNamePrefix(uploadable.deviceId(), uploadable.measurementId())
+            )
+            val remoteName = compression.remoteName(diguralFileName)
+            val attachmentUri = "$uploadDir/$remoteName"
+            // No pre-upload exists() check: a redundant HEAD per attachment doubles
+            // round-trips in the hot path. Per-attachment idempotency is tracked in
+            // AttachmentDao (SAVED -> SYNCED). Files which reached the server before the
+            // sync was interrupted are found in the directory listing instead, which costs
+            // one PROPFIND per measurement.
+            metrics.phase(Phase.ATTACHMENT) {
+                // The hash is only needed here to compare with a listed file, otherwise it's
+                // computed by the upload, see [put].
+                if (isOnServer(uploadDir, remoteName, attachmentUri) { contentHash(file) }) {
+                    Log.i(TAG, "Attachment already on server, skipping upload: $diguralFileName")
+                    return@phase
                 }
-            } else {
-                // Attachment file
-                //
-                // Regarding `data.json` file: [LEIP-283]
-                // All required information is already contained in other uploaded log files.
-                // We anyhow do not have all information available which is required in the
-                // `data.json`, e.g. `yaw/pitch/roll` or geometry of the image (this info is not
-                // easily available during upload as the upload happens in multiple parts and the
-                // geometry of the image are only in the image EXIF header, but during measurement
-                // upload we only have the geometry of the track available. Thus, this would require
-                // significant refactoring.
-                // Thus, the whole `data.json` file should be created during post-processing.
-                //
-                // Regarding `${recId}_{l,m,r,p}.txt` files: [LEIP-282]
-                // We currently create an `annotations.json` file in the COCO format which contains
-                // all annotations of all images instead of one YOLO `txt` file per image.
-                // - advantage: significant less upload request to next cloud (~50%)
-                // - we can create the `txt` files per image in post-processing like other meta files
-                // - all required information is available in the COCO `json file:
-                //   rectId.txt = attachment-id → images.id
-                //   recognized object → COCO-class-Id → convert to Digural class ID
-                //   recognized bounding box → not normalized, but image width/height is available
-                //   confidence-score → in COCO-JSON per object for each image
-                //   image name → [timestamp].jpg (not required in the txt format as of now)
-                // - as the `txt` files are created in post-processing, all log files can also be
-                //   uploaded into `img` or another directory.
-
-                val diguralFileName = fileName.removePrefix(
-                    fileNamePrefix(uploadable.deviceId(), uploadable.measurementId())
-                )
-                val attachmentUri = "$uploadDir/$diguralFileName"
-                // No pre-upload exists() check: a redundant HEAD per attachment doubles
-                // round-trips in the hot path. Per-attachment idempotency is tracked in
-                // AttachmentDao (SAVED -> SYNCED). Overwrite via PUT does not seem to be
-                // allowed on the Digural WebDAV, so on 403 we check existence and treat as
-                // successful to avoid an ever-growing list of retries on each sync cycle.
+                // Overwrite via PUT does not seem to be allowed on the Digural WebDAV, so on 403
+                // we check existence and treat as successful to avoid an ever-growing list of
+                // retries on each sync cycle.
                 Log.d(TAG, "Upload attachment: $diguralFileName ...")
                 try {
-                    sardine.put(attachmentUri, file, "application/octet-stream")
+                    val size = file.length()
+                    val lastModified = file.lastModified()
+                    val upload = put(attachmentUri, file, fileName)
+                    fileHashDao.insert(FileHash(file.absolutePath, size, lastModified, upload.sha256))
+                    uploadedFileDao.insert(UploadedFile(attachmentUri, upload.sha256, upload.etag))
                 } catch (e: SardineException) {
                     if (e.statusCode == 403 && sardine.exists(attachmentUri)) {
                         Log.i(TAG, "Attachment already exists on server, marking as synced: $diguralFileName")
@@ -351,9 +497,140 @@ class WebdavUploader(
                     }
                 }
             }
-            de.cyface.uploader.Result.UPLOAD_SUCCESSFUL
-        } catch (@Suppress("TooGenericExceptionCaught") e: Exception) {
-            handleUploadException(e)
+        }
+    }
+
+    /**
+     * Uploads a file, compressed if the [compression] applies to it.
+     *
+     * The file is streamed through [httpClient] directly instead of [sardine], as [Sardine]
+     * neither accepts bodies of unknown length, which compressed files are, nor returns the
+     * response headers.
+     *
+     * Uncompressed files are sent with their SHA-256 hash in the `OC-Checksum` header, which
+     * Nextcloud stores and lists, so that [isOnServer] also finds them when the local upload
+     * records are lost, e.g. after the app data was cleared. As the header is sent before the
+     * content, the hash is computed in advance unless it's cached. The hash of compressed files is
+     * computed while the file is streamed, as the server only knows the compressed content.
+     *
+     * @param uri The URI to upload the file to.
+     * @param file The file to upload.
+     * @param fileName The name of the file, which decides whether it's compressed.
+     * @return The `ETag` and the content hash of the uploaded file.
+     * @throws SardineException if the server did not accept the file.
+     */
+    private fun put(uri: String, file: File, fileName: String): Upload {
+        val request = Request.Builder()
+            .url(uri)
+            .header("Authorization", credentials)
+        val sha256: () -> String
+        val body = if (compression.appliesTo(fileName)) {
+            val hash = StreamedHash(file)
+            sha256 = { hash.sha256 }
+            compression.requestBody(file) { hash.source() }
+        } else {
+            val contentHash = contentHash(file)
+            sha256 = { contentHash }
+            request.header("OC-Checksum", "SHA256:$contentHash")
+            file.asRequestBody(OCTET_STREAM)
+        }
+        httpClient.newCall(request.put(body).build()).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw SardineException("Unexpected response", response.code, response.message)
+            }
+            return Upload(response.header("ETag"), sha256())
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file's content if it was already computed.
+     *
+     * @param file The file to look up.
+     * @return The hex encoded hash or `null` if the file was changed or never hashed.
+     */
+    private fun cachedHash(file: File): String? {
+        val stored = fileHashDao.load(file.absolutePath) ?: return null
+        val unchanged = stored.size == file.length() && stored.lastModified == file.lastModified()
+        return if (unchanged) stored.sha256 else null
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file's content.
+     *
+     * The hash is only computed once per file content and then loaded from the [fileHashDao].
+     *
+     * @param file The file to hash.
+     * @return The hex encoded hash.
+     */
+    private fun contentHash(file: File): String {
+        cachedHash(file)?.let { return it }
+        val path = file.absolutePath
+        val size = file.length()
+        val lastModified = file.lastModified()
+
+        val digest = MessageDigest.getInstance("SHA-256")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            var read = input.read(buffer)
+            while (read != -1) {
+                digest.update(buffer, 0, read)
+                read = input.read(buffer)
+            }
+        }
+        val sha256 = digest.digest().joinToString("") { "%02x".format(it) }
+        fileHashDao.insert(FileHash(path, size, lastModified, sha256))
+        return sha256
+    }
+
+    /**
+     * Checks if a file with the same content was already uploaded, without transferring it.
+     *
+     * A file counts as identical when the server lists it with the `ETag` returned for our own
+     * upload of the same content, or with the same content checksum (Nextcloud).
+     *
+     * @param directory The directory the file is uploaded to.
+     * @param remoteName The name of the file on the server.
+     * @param uri The URI the file is uploaded to.
+     * @param contentHash Returns the content hash of the local file, which is only called when
+     * the server lists a file with the same name.
+     * @return `true` if the file does not need to be uploaded.
+     */
+    private fun isOnServer(
+        directory: String,
+        remoteName: String,
+        uri: String,
+        contentHash: () -> String
+    ): Boolean {
+        val remote = remoteListing(directory)[remoteName] ?: return false
+        val sha256 = contentHash()
+
+        val uploaded = uploadedFileDao.load(uri)
+        if (uploaded?.etag != null && uploaded.sha256 == sha256 &&
+            normalizeEtag(uploaded.etag) == remote.etag?.let { normalizeEtag(it) }
+        ) {
+            return true
+        }
+        val checksums = remote.customProps[CHECKSUMS_PROPERTY.localPart] ?: return false
+        return checksums.contains("SHA256:$sha256", ignoreCase = true)
+    }
+
+    /**
+     * Lists the files in an upload directory, at most once per directory and uploader.
+     *
+     * Files uploaded after the listing are marked as synced and not uploaded again, so the
+     * listing does not need to be refreshed.
+     *
+     * @param directory The directory to list.
+     * @return The files by name, empty if the directory does not exist.
+     */
+    private fun remoteListing(directory: String): Map<String, DavResource> {
+        return remoteListings.getOrPut(directory) {
+            try {
+                sardine.list(directory, 1, setOf(CHECKSUMS_PROPERTY)).associateBy { it.name }
+            } catch (e: SardineException) {
+                if (e.statusCode != 404) throw e
+                emptyMap()
+            }
         }
     }
 
@@ -366,6 +643,10 @@ class WebdavUploader(
      * failing the upload. We serialize on [directorySetupLock] and cache per-measurement
      * "directories ready" state so only the first attachment of a measurement pays the
      * setup cost.
+     *
+     * The state is also persisted via the [remoteDirectoryDao], as the sync service can be
+     * recreated at any time, so that re-syncs of a measurement skip the setup entirely. See
+     * [invalidateDirectories] for when this state is dropped.
      */
     private fun ensureDirectoriesExist(isMeasurementUpload: Boolean, uploadable: Uploadable) {
         val measurementId = uploadable.measurementId()
@@ -378,6 +659,12 @@ class WebdavUploader(
             val isAttachmentUpload = !isMeasurementUpload
             val imagesDir = imagesDirectory(uploadable)
             val imuDir = imuDirectory(uploadable)
+            val targetDir = if (isMeasurementUpload) imuDir else imagesDir
+            if (remoteDirectoryDao.exists(targetDir)) {
+                cache.add(measurementId)
+                return
+            }
+
             if (isAttachmentUpload && !sardine.exists(imagesDir)) {
                 // Attachment Upload
                 ensureDeviceMeasurementDirectoryExists(uploadable)
@@ -391,10 +678,30 @@ class WebdavUploader(
                 sardine.createDirectory(imuDir)
             }
 
+            remoteDirectoryDao.insert(RemoteDirectory(targetDir))
             cache.add(measurementId)
         }
     }
 
+    /**
+     * Drops the cached state of the upload directories of a measurement.
+     *
+     * Called when an upload fails with `404` or `409`, which WebDAV returns when the target
+     * directory is missing, e.g. after it was removed on the server. The next attempt then
+     * checks and creates the directories again.
+     *
+     * @param uploadable The measurement or attachment which failed to upload.
+     */
+    private fun invalidateDirectories(uploadable: Uploadable) {
+        Log.w(TAG, "Upload directory missing, invalidating cache: ${uploadable.measurementId()}")
+        synchronized(directorySetupLock) {
+            measurementDirsReady.remove(uploadable.measurementId())
+            attachmentDirsReady.remove(uploadable.measurementId())
+            remoteDirectoryDao.deleteAll(listOf(imuDirectory(uploadable), imagesDirectory(uploadable)))
+        }
+        remoteListings.remove(imagesDirectory(uploadable))
+    }
+
     /**
      * Function to check and create measurement directory if it doesn't exist.
      *
@@ -505,22 +812,65 @@ class WebdavUploader(
         }
     }
 
+    /**
+     * The result of an upload by [put].
+     *
+     * @property etag The `ETag` of the uploaded file, if the server returned one.
+     * @property sha256 The hex encoded SHA-256 hash of the uploaded file content.
+     */
+    private data class Upload(val etag: String?, val sha256: String)
+
+    /**
+     * Computes the SHA-256 hash of a file while it's read for the upload.
+     *
+     * Used for compressed uploads, whose content hash is not sent to the server.
+     *
+     * OkHttp can write a request body more than once, e.g. on a retry, so each [source] hashes
+     * from the start and [sha256] is the hash of the last complete read.
+     *
+     * @property file The file to read.
+     */
+    private class StreamedHash(private val file: File) {
+        @Volatile
+        private var last: HashingSource? = null
+
+        fun source(): Source = HashingSource.sha256(file.source()).also { last = it }
+
+        val sha256: String get() = checkNotNull(last) { "File was not read: $file" }.hash.hex()
+    }
+
     companion object {
         @Suppress("SpellCheckingInspection")
         private const val MEASUREMENT_FILE_FILENAME = "measurement.ccyf"
 
+        /**
+         * The name of the COCO annotations file created by the [AnnotationsWriter].
+         */
+        private const val ANNOTATIONS_FILE_NAME = "annotations.json"
+
+        private val OCTET_STREAM = "application/octet-stream".toMediaType()
+
+        /**
+         * The Nextcloud property which lists the checksums sent with the `OC-Checksum` header.
+         */
+        private val CHECKSUMS_PROPERTY = QName("http://owncloud.org/ns", "checksums", "oc")
+
+        /**
+         * Removes the quotes and weak validator prefix, which servers don't return consistently.
+         */
+        private fun normalizeEtag(etag: String) = etag.removePrefix("W/").trim('"')
+
+        /**
+         * The suffixes of attachments which are uploaded with [UploadScheduler.Priority.IMAGE].
+         */
+        private val IMAGE_FILE_SUFFIXES = listOf(".jpg", ".jpeg", ".dng", ".mp4")
+
         /**
          * Adds a trailing slash to the server URL or leaves an existing trailing slash untouched.
          *
          * @param url The url to format.
          * @return The server URL with a trailing slash.
          */
-        fun returnUrlWithTrailingSlash(url: String): String {
-            return if (url.endsWith("/")) {
-                url
-            } else {
-                "$url/"
-            }
-        }
+        fun returnUrlWithTrailingSlash(url: String) = WebdavPaths.returnUrlWithTrailingSlash(url)
     }
 }
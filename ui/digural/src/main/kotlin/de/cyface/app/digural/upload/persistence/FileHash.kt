@@ -0,0 +1,45 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * The content hash of a local file.
+ *
+ * The hash is computed once and reused as long as the file's size and modification time are
+ * unchanged, so that retries and re-syncs don't need to re-read the file.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property path The absolute path of the file.
+ * @property size The size of the file in bytes when the hash was computed.
+ * @property lastModified The modification time of the file when the hash was computed.
+ * @property sha256 The hex encoded SHA-256 hash of the file's content.
+ */
+@Entity(tableName = "file_hash")
+data class FileHash(
+    @PrimaryKey val path: String,
+    val size: Long,
+    @ColumnInfo(name = "last_modified") val lastModified: Long,
+    val sha256: String,
+)
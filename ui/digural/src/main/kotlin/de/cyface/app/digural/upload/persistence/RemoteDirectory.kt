@@ -0,0 +1,36 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * A directory which is known to exist on the WebDAV server.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property uri The URI of the directory. It contains the API endpoint and the login, so the
+ * entries of different servers or accounts do not mix.
+ */
+@Entity(tableName = "remote_directory")
+data class RemoteDirectory(
+    @PrimaryKey val uri: String,
+)
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import android.content.Context
+import androidx.room.Database
+import androidx.room.Room
+import androidx.room.RoomDatabase
+
+/**
+ * The database which stores the state of the WebDAV uploads which is not part of the
+ * measurement database, e.g. the content hashes of the uploaded files, and the upload metrics.
+ *
+ * The file is stored in the app's database folder and thus exported by the `Exporter`.
+ *
+ * @author Armin Schnabel
+ * @version 1.2.1
+ * @since 4.3.0
+ */
+@Database(
+    entities = [FileHash::class, UploadedFile::class, RemoteDirectory::class, UploadMetric::class],
+    version = 1,
+    exportSchema = false,
+)
+abstract class UploadDatabase : RoomDatabase() {
+    abstract fun fileHashDao(): FileHashDao
+
+    abstract fun uploadedFileDao(): UploadedFileDao
+
+    abstract fun remoteDirectoryDao(): RemoteDirectoryDao
+
+    abstract fun uploadMetricDao(): UploadMetricDao
+
+    companion object {
+        /**
+         * The name of the database file.
+         */
+        private const val DATABASE_NAME = "upload"
+
+        @Volatile
+        private var instance: UploadDatabase? = null
+
+        /**
+         * @param context The context to open the database with.
+         * @return The singleton instance of the database in this process.
+         */
+        fun getInstance(context: Context): UploadDatabase {
+            return instance ?: synchronized(this) {
+                instance ?: Room.databaseBuilder(
+                    context.applicationContext,
+                    UploadDatabase::class.java,
+                    DATABASE_NAME
+                )
+                    // The sync runs in its own process
+                    .enableMultiInstanceInvalidation()
+                    .build()
+                    .also { instance = it }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One operation of a WebDAV sync, usually an HTTP request, and how it performed.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property id The auto-generated identifier of the entry.
+ * @property session The start time of the sync session the operation belongs to.
+ * @property timestamp The time the operation started.
+ * @property phase The part of the upload the operation belongs to.
+ * @property method The HTTP method, e.g. `PUT`, or the name of a local operation.
+ * @property bytes The number of request body bytes sent.
+ * @property latencyMillis The time from the start of the operation to the response.
+ * @property outcome Whether the operation succeeded.
+ * @property statusCode The HTTP status code, `null` if no response was received.
+ */
+@Entity(tableName = "upload_metric", indices = [Index("session")])
+data class UploadMetric(
+    @PrimaryKey(autoGenerate = true) val id: Long = 0,
+    val session: Long,
+    val timestamp: Long,
+    val phase: Phase,
+    val method: String,
+    val bytes: Long,
+    @ColumnInfo(name = "latency_millis") val latencyMillis: Long,
+    val outcome: Outcome,
+    @ColumnInfo(name = "status_code") val statusCode: Int?,
+) {
+    /**
+     * The parts of an upload.
+     */
+    enum class Phase {
+        /** Checking and creating the upload directories. */
+        DIRECTORY_SETUP,
+
+        /** Merging the per-image detections into the `annotations.json`. No HTTP request. */
+        ANNOTATION_MERGE,
+
+        /** Uploading the `metadata.json`. */
+        METADATA,
+
+        /** Uploading the sensor data. */
+        MEASUREMENT,
+
+        /** Listing and uploading attachments. */
+        ATTACHMENT,
+
+        /** Creating the `upload-completed` marker. */
+        COMPLETION_MARKER,
+
+        /** Requests which are not assigned to a phase. */
+        OTHER,
+    }
+
+    /**
+     * The outcomes of an operation.
+     */
+    enum class Outcome {
+        /** The operation succeeded, for requests: a 2xx or 3xx response. */
+        SUCCESS,
+
+        /** The server responded with an error code. */
+        HTTP_ERROR,
+
+        /** The operation failed without a response, e.g. due to a network error. */
+        FAILURE,
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+
+/**
+ * Data access object for [UploadMetric]s.
+ *
+ * The methods are blocking, as they are only called from the sync thread.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@Dao
+interface UploadMetricDao {
+    @Insert
+    fun insert(metric: UploadMetric)
+
+    @Query("SELECT * FROM upload_metric WHERE session = :session")
+    fun loadAllBySession(session: Long): List<UploadMetric>
+
+    /**
+     * Deletes all but the newest entries.
+     *
+     * @param keep The number of entries to keep.
+     */
+    @Query("DELETE FROM upload_metric WHERE id <= (SELECT MAX(id) FROM upload_metric) - :keep")
+    fun deleteAllButNewest(keep: Int)
+}
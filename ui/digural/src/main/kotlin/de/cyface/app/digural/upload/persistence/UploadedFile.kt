@@ -0,0 +1,39 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload.persistence
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * A file which was successfully uploaded to the WebDAV server.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property uri The URI the file was uploaded to.
+ * @property sha256 The hex encoded SHA-256 hash of the local file's content.
+ * @property etag The `ETag` the server returned for the upload, if any.
+ */
+@Entity(tableName = "uploaded_file")
+data class UploadedFile(
+    @PrimaryKey val uri: String,
+    val sha256: String,
+    val etag: String?,
+)
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.capturing
+
+import android.app.Application
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule
+import androidx.test.core.app.ApplicationProvider
+import de.cyface.app.digural.notification.CapturingEventHandler
+import de.cyface.app.utils.capturing.CapturingNotificationUpdater
+import de.cyface.app.utils.capturing.CapturingStatistics
+import de.cyface.persistence.model.ParcelableGeoLocation
+import de.cyface.persistence.model.Track
+import de.cyface.persistence.repository.EventRepository
+import de.cyface.persistence.repository.MeasurementRepository
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito.mock
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.shadows.ShadowSystemClock
+import java.lang.management.ManagementFactory
+import java.time.Duration
+import kotlin.random.Random
+
+/**
+ * Guards the code which runs once per location or picture while capturing against allocation
+ * regressions.
+ *
+ * A stream of [LOCATION_COUNT] locations is replayed through each path and the bytes allocated by
+ * the test thread are compared with a budget per event. The paths are warmed up first, so that
+ * class loading and lazy initialization are not counted, and are measured [RUNS] times. The run
+ * with the fewest allocations is compared, as e.g. JIT compilation or the Robolectric loopers can
+ * allocate in a single run.
+ *
+ * Only the allocated bytes are measured, as counting objects requires an instrumentation agent.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.3
+ * @since 4.3.0
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = Application::class) // Without the app's initialization, e.g. Sentry
+class CapturingAllocationTest {
+
+    /**
+     * Executes `LiveData.postValue` synchronously, like on the main thread.
+     */
+    @get:Rule
+    val instantTaskExecutorRule = InstantTaskExecutorRule()
+
+    /**
+     * An Object Of the Class Under Test.
+     */
+    private lateinit var oocut: CapturingViewModel
+
+    /**
+     * The replayed locations, a random walk with one location per second.
+     */
+    private lateinit var locations: List<ParcelableGeoLocation>
+
+    @Before
+    fun setUp() {
+        oocut = CapturingViewModel(
+            mock(MeasurementRepository::class.java),
+            mock(EventRepository::class.java),
+            false
+        )
+        val random = Random(42)
+        var lat = 51.05
+        var lon = 13.73
+        var timestamp = 1_700_000_000_000L
+        locations = List(LOCATION_COUNT) {
+            lat += (random.nextDouble() - 0.5) * 0.0001
+            lon += (random.nextDouble() - 0.5) * 0.0001
+            timestamp += 1_000L
+            ParcelableGeoLocation(timestamp, lat, lon, 120.0, 5.0, 4.0, 8.0)
+        }
+    }
+
+    /**
+     * Tests the allocations of [CapturingViewModel.setLocation].
+     */
+    @Test
+    fun testSetLocation() {
+        val bytes = bytesPerEvent(locations) { oocut.setLocation(it) }
+        assertBudget("setLocation", bytes, SET_LOCATION_BUDGET_BYTES)
+    }
+
+    /**
+     * Tests the allocations of [CapturingViewModel.addToTrack], which stores each location.
+     */
+    @Test
+    fun testAddToTrack() {
+        oocut.setMeasurementId(1L)
+        val bytes = bytesPerEvent(
+            locations,
+            // Starts each run with a new track, so that every run grows it from the same size
+            beforeRun = { oocut.setTracks(mutableListOf(Track())) }
+        ) { oocut.addToTrack(it) }
+        assertBudget("addToTrack", bytes, ADD_TO_TRACK_BUDGET_BYTES)
+    }
+
+    /**
+     * Tests the allocations of the statistics which are updated with each notification update,
+     * see [CapturingNotificationUpdater.launch].
+     */
+    @Test
+    fun testStatistics() {
+        val statistics = CapturingStatistics()
+        statistics.seed(0.0, 0L, 0)
+        val perUpdate = bytesPerEvent(locations) {
+            statistics.update(statistics.distanceMeters + 10.0, statistics.pictures + 1)
+            statistics.durationMillis
+        }
+        assertBudget("statistics.update", perUpdate, STATISTICS_BUDGET_BYTES)
+    }
+
+    /**
+     * Tests the allocations of formatting and posting the live statistics in the notification.
+     *
+     * This runs at most every [CapturingNotificationUpdater.MIN_INTERVAL_MILLIS], so the clock is
+     * advanced by that interval before each update.
+     */
+    @Test
+    fun testNotificationUpdate() {
+        val context = ApplicationProvider.getApplicationContext<Application>()
+        val builder = CapturingEventHandler.capturingNotificationBuilder(context)
+        val updater = CapturingNotificationUpdater(context, builder, true)
+        val statistics = CapturingStatistics()
+        statistics.seed(0.0, 0L, 0)
+        updater.start()
+        val interval = Duration.ofMillis(CapturingNotificationUpdater.MIN_INTERVAL_MILLIS)
+        val updates = locations.take(NOTIFICATION_UPDATE_COUNT)
+        val bytes = bytesPerEvent(updates) {
+            statistics.update(statistics.distanceMeters + 10.0, statistics.pictures + 1)
+            ShadowSystemClock.advanceBy(interval)
+            updater.update(statistics, NOTIFICATION_ID)
+        }
+        assertBudget("notification update", bytes, NOTIFICATION_UPDATE_BUDGET_BYTES)
+    }
+
+    /**
+     * Replays the [events] through the [path], once to warm up and [RUNS] times measured.
+     *
+     * @param events The events to replay.
+     * @param beforeRun Resets the state before each run.
+     * @param path The code path to measure.
+     * @return The bytes allocated per event in each measured run.
+     */
+    private fun <T> bytesPerEvent(
+        events: List<T>,
+        beforeRun: () -> Unit = {},
+        path: (T) -> Unit
+    ): List<Long> {
+        beforeRun()
+        events.forEach(path)
+
+        return List(RUNS) {
+            beforeRun()
+            val start = allocatedBytes()
+            for (event in events) {
+                path(event)
+            }
+            (allocatedBytes() - start) / events.size
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the current thread since it started.
+     */
+    private fun allocatedBytes(): Long {
+        val bean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    /**
+     * Asserts that the run with the fewest allocations is within the [budget].
+     *
+     * @param name The name of the path for the report.
+     * @param runs The bytes allocated per event in each run.
+     * @param budget The maximal bytes allocated per event.
+     */
+    private fun assertBudget(name: String, runs: List<Long>, budget: Long) {
+        val bytes = runs.min()
+        assertTrue(
+            "$name allocates $bytes B per event (runs: $runs), the budget is $budget B",
+            bytes <= budget
+        )
+    }
+
+    companion object {
+        /**
+         * The number of replayed locations, about 8 hours of capturing.
+         */
+        private const val LOCATION_COUNT = 30_000
+
+        /**
+         * The number of measured runs per path.
+         */
+        private const val RUNS = 5
+
+        /**
+         * The number of replayed notification updates, about 8 hours of capturing.
+         */
+        private const val NOTIFICATION_UPDATE_COUNT = 6_000
+
+        /**
+         * The id the capturing service posted its notification with.
+         */
+        private const val NOTIFICATION_ID = 1
+
+        /**
+         * `setLocation` only publishes the location. The `LiveData` dispatch allocates an
+         * iterator over the observers.
+         */
+        private const val SET_LOCATION_BUDGET_BYTES = 256L
+
+        /**
+         * `addToTrack` stores a `GeoLocation` per location, with boxed optional values, plus the
+         * amortized list growth and the `LiveData` dispatch.
+         */
+        private const val ADD_TO_TRACK_BUDGET_BYTES = 512L
+
+        /**
+         * The statistics are updated in place.
+         */
+        private const val STATISTICS_BUDGET_BYTES = 32L
+
+        /**
+         * Formatting the text and building the notification.
+         */
+        private const val NOTIFICATION_UPDATE_BUDGET_BYTES = 24L * 1024
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import android.app.Application
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.shadows.ShadowSystemClock
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+/**
+ * Tests the priority gate and the rate limit switch of the [UploadScheduler].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = Application::class) // Without the app's initialization, e.g. Sentry
+class UploadSchedulerTest {
+
+    /**
+     * Tests that an image upload only starts after the running measurement upload finished.
+     */
+    @Test
+    fun testPriorityGate() {
+        val oocut = UploadScheduler(isCapturing = { false })
+        val measurementStarted = CountDownLatch(1)
+        val releaseMeasurement = CountDownLatch(1)
+        val imageStarted = CountDownLatch(1)
+
+        val measurement = thread {
+            oocut.schedule(UploadScheduler.Priority.MEASUREMENT) {
+                measurementStarted.countDown()
+                releaseMeasurement.await()
+            }
+        }
+        assertTrue(measurementStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        val image = thread {
+            oocut.schedule(UploadScheduler.Priority.IMAGE) { imageStarted.countDown() }
+        }
+
+        assertFalse(
+            "Image upload started while a measurement upload is running",
+            imageStarted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)
+        )
+        releaseMeasurement.countDown()
+        assertTrue(imageStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        measurement.join()
+        image.join()
+    }
+
+    /**
+     * Tests that an upload which is already running is throttled when capturing starts.
+     */
+    @Test
+    fun testThrottleSwitchDuringUpload() {
+        var capturing = false
+        val oocut = UploadScheduler(
+            idleBytesPerSecond = 0L,
+            capturingBytesPerSecond = CAPTURING_BYTES_PER_SECOND,
+            isCapturing = { capturing }
+        )
+        val body = object : RequestBody() {
+            override fun contentType(): MediaType? = null
+
+            override fun writeTo(sink: BufferedSink) {
+                sink.write(ByteArray(CAPTURING_BYTES_PER_SECOND.toInt()))
+                sink.flush()
+                // Capturing starts after the rate check interval while the upload is running
+                capturing = true
+                ShadowSystemClock.advanceBy(Duration.ofSeconds(RATE_CHECK_SECONDS))
+                sink.write(ByteArray(3 * CAPTURING_BYTES_PER_SECOND.toInt()))
+            }
+        }
+
+        val start = System.nanoTime()
+        oocut.schedule(UploadScheduler.Priority.IMAGE) { oocut.throttle(body).writeTo(Buffer()) }
+        val millis = (System.nanoTime() - start) / 1_000_000
+
+        // One second is sent as burst, the other two seconds are throttled
+        assertTrue("Upload took only $millis ms", millis >= MIN_THROTTLED_MILLIS)
+    }
+
+    /**
+     * Tests that uploads are not throttled while no measurement is captured.
+     */
+    @Test
+    fun testUnlimitedWhileIdle() {
+        val oocut = UploadScheduler(
+            capturingBytesPerSecond = CAPTURING_BYTES_PER_SECOND,
+            isCapturing = { false }
+        )
+        val body = object : RequestBody() {
+            override fun contentType(): MediaType? = null
+
+            override fun writeTo(sink: BufferedSink) {
+                sink.write(ByteArray(3 * CAPTURING_BYTES_PER_SECOND.toInt()))
+            }
+        }
+
+        val start = System.nanoTime()
+        oocut.schedule(UploadScheduler.Priority.IMAGE) { oocut.throttle(body).writeTo(Buffer()) }
+        val millis = (System.nanoTime() - start) / 1_000_000
+
+        assertTrue("Upload took $millis ms", millis < MIN_THROTTLED_MILLIS)
+    }
+
+    companion object {
+        private const val TIMEOUT_SECONDS = 5L
+        private const val WAIT_MILLIS = 200L
+        private const val CAPTURING_BYTES_PER_SECOND = 64L * 1024
+
+        /**
+         * More than the interval in which the scheduler re-checks the capturing state.
+         */
+        private const val RATE_CHECK_SECONDS = 6L
+
+        /**
+         * Two seconds of throttled data, with some tolerance for the timer.
+         */
+        private const val MIN_THROTTLED_MILLIS = 1_500L
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.digural.upload
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.time.ZoneId
+
+/**
+ * Tests the upload paths built by the [WebdavPaths].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class WebdavPathsTest {
+
+    private val oocut = WebdavPaths(ENDPOINT, LOGIN, DEVICE_ID, ZoneId.of("Europe/Berlin"))
+
+    /**
+     * Tests the directories of a measurement.
+     */
+    @Test
+    fun testDirectories() {
+        val root = "https://example.com/remote.php/dav/files/user/digural-upload/2024_03_01"
+        val measurement = "$root/${DEVICE_ID}_$MEASUREMENT_ID"
+
+        assertEquals(root, oocut.dateDirectory(TIMESTAMP))
+        assertEquals(measurement, oocut.deviceMeasurementDirectory(MEASUREMENT_ID, TIMESTAMP))
+        assertEquals("$measurement/sensor", oocut.sensorDirectory(MEASUREMENT_ID, TIMESTAMP))
+        assertEquals("$measurement/sensor/imu", oocut.imuDirectory(MEASUREMENT_ID, TIMESTAMP))
+        assertEquals("$measurement/imgs", oocut.imagesDirectory(MEASUREMENT_ID, TIMESTAMP))
+    }
+
+    /**
+     * Tests that the date directory is the day in the configured time zone, not in UTC.
+     */
+    @Test
+    fun testDateDirectoryTimeZone() {
+        // 2024-02-29T23:30:00Z is already March 1st in Berlin
+        val timestamp = 1_709_249_400_000L
+        val utc = WebdavPaths(ENDPOINT, LOGIN, DEVICE_ID, ZoneId.of("UTC"))
+
+        assertEquals("2024_03_01", oocut.dateDirectory(timestamp).substringAfterLast('/'))
+        assertEquals("2024_02_29", utc.dateDirectory(timestamp).substringAfterLast('/'))
+    }
+
+    /**
+     * Tests that an endpoint with a trailing slash leads to the same paths.
+     */
+    @Test
+    fun testTrailingSlash() {
+        val withSlash = WebdavPaths("$ENDPOINT/", LOGIN, DEVICE_ID, ZoneId.of("Europe/Berlin"))
+
+        assertEquals(oocut.dateDirectory(TIMESTAMP), withSlash.dateDirectory(TIMESTAMP))
+        assertEquals("$ENDPOINT/", WebdavPaths.returnUrlWithTrailingSlash(ENDPOINT))
+        assertEquals("$ENDPOINT/", WebdavPaths.returnUrlWithTrailingSlash("$ENDPOINT/"))
+    }
+
+    companion object {
+        private const val ENDPOINT = "https://example.com/remote.php/dav"
+        private const val LOGIN = "user"
+        private const val DEVICE_ID = "78370516-4f7e-11ed-bdc3-0242ac120002"
+        private const val MEASUREMENT_ID = 3L
+
+        /**
+         * 2024-03-01T10:00:00Z
+         */
+        private const val TIMESTAMP = 1_709_287_200_000L
+    }
+}
@@ -56,8 +56,10 @@ import de.cyface.app.r4r.utils.Constants.AUTHORITY
 import de.cyface.app.r4r.utils.Constants.SUPPORT_EMAIL
 import de.cyface.app.r4r.utils.Constants.TAG
 import de.cyface.app.utils.ServiceProvider
+import de.cyface.app.utils.auth.TokenProvider
 import de.cyface.app.utils.capturing.settings.UiConfig
 import de.cyface.app.utils.capturing.settings.UiSettings
+import de.cyface.app.utils.trips.incentives.Incentives
 import de.cyface.datacapturing.CyfaceDataCapturingService
 import de.cyface.datacapturing.DataCapturingListener
 import de.cyface.datacapturing.model.CapturedData
@@ -98,7 +100,7 @@ import kotlin.system.exitProcess
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 5.0.0
+ * @version 5.0.1
  * @since 1.0.0
  */
 class MainActivity : AppCompatActivity(), ServiceProvider/*, CameraServiceProvider*/ {
@@ -489,6 +491,9 @@ class MainActivity : AppCompatActivity(), ServiceProvider/*, CameraServiceProvid
     @MainThread
     private fun signOut(removeAccount: Boolean = false) {
         auth.signOut()
+        // The cached token and voucher counts must not be used for the next user
+        TokenProvider.of(auth).invalidate()
+        Incentives.clear(cacheDir)
 
         // E.g. `MainActivity.onStart()` calls `signOut()` when the user is already signed out
         // so there is no account to be removed.
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.loadtest
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.location.Location
+import android.util.Log
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.MessageLite
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.trips.Point3DEnvelope
+import de.cyface.app.utils.trips.Point3DFileReader
+import de.cyface.persistence.DefaultPersistenceLayer
+import de.cyface.persistence.model.Attachment
+import de.cyface.persistence.model.AttachmentStatus
+import de.cyface.persistence.model.Event
+import de.cyface.persistence.model.EventType
+import de.cyface.persistence.model.GeoLocation
+import de.cyface.persistence.model.Measurement
+import de.cyface.persistence.model.MeasurementStatus
+import de.cyface.persistence.model.Modality
+import de.cyface.protos.model.Accelerations
+import de.cyface.protos.model.Directions
+import de.cyface.protos.model.File.FileType
+import de.cyface.protos.model.Rotations
+import de.cyface.utils.StorageHelper
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import kotlin.coroutines.coroutineContext
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+import kotlin.random.Random
+
+/**
+ * Generates synthetic measurements at production scale, e.g. to load-test the trips list, the
+ * statistics, the export, the deletion and the upload.
+ *
+ * The data is written in the formats the app reads:
+ * - the measurements, locations, events and attachments via the [DefaultPersistenceLayer],
+ * - the sensor data as [de.cyface.persistence.serialization.Point3DFile]s, i.e. a sequence of
+ *   length-delimited, offset/diff-encoded batches, see [Point3DFileReader],
+ * - the pictures as JPEG files in a folder per measurement, like the camera service.
+ *
+ * The same [Parameters] always generate the same data, so measurements on it are comparable.
+ *
+ * This class is only part of debug builds, as it's only used by the load test instrumentation.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 4.3.0
+ * @property context The context to find the storage locations with.
+ * @property persistence The persistence layer to write the measurements to.
+ */
+class SyntheticDataset(
+    private val context: Context,
+    private val persistence: DefaultPersistenceLayer<*>,
+) {
+
+    /**
+     * Generates the measurements.
+     *
+     * @param parameters The size and shape of the dataset.
+     * @param progress Called after each measurement with the number of generated measurements.
+     * @return The ids of the generated measurements.
+     */
+    suspend fun generate(
+        parameters: Parameters,
+        progress: (Int) -> Unit = {}
+    ): List<Long> = withContext(Dispatchers.IO) {
+        val picture = picture(parameters)
+        val now = System.currentTimeMillis()
+        (0 until parameters.trips).map { trip ->
+            // One trip per day, ending before now
+            val start = now - (parameters.trips - trip) * DAY_MILLIS
+            val id = generateTrip(parameters, Random(parameters.seed + trip), start, picture)
+            progress(trip + 1)
+            id
+        }.also {
+            Log.i(TAG, "Generated ${it.size} synthetic measurements: $parameters")
+        }
+    }
+
+    /**
+     * Generates one measurement.
+     *
+     * @return The id of the measurement.
+     */
+    private suspend fun generateTrip(
+        parameters: Parameters,
+        random: Random,
+        start: Long,
+        picture: ByteArray
+    ): Long {
+        val repository = persistence.measurementRepository!!
+        val id = repository.insert(measurement(0L, parameters, start, 0.0, 0L))
+        val end = start + parameters.durationMillis
+
+        persistence.eventRepository!!.insert(
+            Event(start, EventType.LIFECYCLE_START, null, id)
+        )
+        persistence.eventRepository!!.insert(
+            Event(start, EventType.MODALITY_TYPE_CHANGE, parameters.modality.databaseIdentifier, id)
+        )
+
+        val track = writeLocations(parameters, random, id, start)
+        var filesSize = 0L
+        Point3DEnvelope.Type.entries.forEach { type ->
+            filesSize += writeSensorData(parameters, random, id, start, type)
+        }
+        writePictures(parameters, id, track, picture)
+
+        persistence.eventRepository!!.insert(Event(end, EventType.LIFECYCLE_STOP, null, id))
+        repository.update(measurement(id, parameters, start, track.distanceMeters, filesSize))
+        return id
+    }
+
+    /**
+     * @return The measurement with the [id], `0` to create a new one.
+     */
+    private fun measurement(
+        id: Long,
+        parameters: Parameters,
+        start: Long,
+        distanceMeters: Double,
+        filesSize: Long
+    ) = Measurement(
+        id,
+        parameters.status,
+        parameters.modality,
+        DefaultPersistenceLayer.PERSISTENCE_FILE_FORMAT_VERSION,
+        distanceMeters,
+        start,
+        filesSize
+    )
+
+    /**
+     * Writes a random walk, in batches of [LOCATION_BATCH_SIZE].
+     *
+     * @return The track, to place the pictures along.
+     */
+    private suspend fun writeLocations(
+        parameters: Parameters,
+        random: Random,
+        measurementId: Long,
+        start: Long
+    ): SyntheticTrack {
+        val dao = persistence.locationDao!!
+        val count = (parameters.durationMillis * parameters.locationRateHz / 1000).toInt()
+        val intervalMillis = (1000 / parameters.locationRateHz).toLong()
+        val track = SyntheticTrack(count)
+        val batch = ArrayList<GeoLocation>(LOCATION_BATCH_SIZE)
+        val distance = FloatArray(1)
+        var lat = parameters.centerLat + (random.nextDouble() - 0.5) * 0.1
+        var lon = parameters.centerLon + (random.nextDouble() - 0.5) * 0.1
+        var heading = random.nextDouble(2 * Math.PI)
+        var altitude = 100.0 + random.nextDouble(100.0)
+        for (i in 0 until count) {
+            coroutineContext.ensureActive()
+            val timestamp = start + i * intervalMillis
+            if (i > 0) {
+                // Cycling speed with smooth turns
+                heading += (random.nextDouble() - 0.5) * 0.3
+                val step = SPEED_METERS_PER_SECOND * intervalMillis / 1000.0
+                val previousLat = lat
+                val previousLon = lon
+                lat += step * cos(heading) / METERS_PER_DEGREE
+                lon += step * sin(heading) / (METERS_PER_DEGREE * cos(Math.toRadians(lat)))
+                altitude += (random.nextDouble() - 0.5) * 0.5
+                Location.distanceBetween(previousLat, previousLon, lat, lon, distance)
+                track.distanceMeters += distance[0]
+            }
+            track.add(timestamp, lat, lon)
+            batch.add(
+                GeoLocation(
+                    0L, timestamp, lat, lon, altitude, SPEED_METERS_PER_SECOND,
+                    5.0 + random.nextDouble(10.0), 10.0 + random.nextDouble(10.0), measurementId
+                )
+            )
+            if (batch.size == LOCATION_BATCH_SIZE || i == count - 1) {
+                dao.insertAll(*batch.toTypedArray())
+                batch.clear()
+            }
+        }
+        return track
+    }
+
+    /**
+     * Writes the sensor data of one [type] in batches of one second.
+     *
+     * @return The size of the written file in bytes.
+     */
+    private suspend fun writeSensorData(
+        parameters: Parameters,
+        random: Random,
+        measurementId: Long,
+        start: Long,
+        type: Point3DEnvelope.Type
+    ): Long {
+        if (parameters.sensorRateHz <= 0) return 0L
+        val file = Point3DFileReader.file(context, measurementId, type)
+        file.parentFile!!.mkdirs()
+        val perBatch = parameters.sensorRateHz
+        val batches = parameters.durationMillis / 1000
+        // The values are stored in thousandths of their unit
+        val base = when (type) {
+            Point3DEnvelope.Type.ACCELERATIONS -> intArrayOf(0, 0, 9_810)
+            Point3DEnvelope.Type.ROTATIONS -> intArrayOf(0, 0, 0)
+            Point3DEnvelope.Type.DIRECTIONS -> intArrayOf(20_000, -5_000, -40_000)
+        }
+        val noise = if (type == Point3DEnvelope.Type.ACCELERATIONS) 2_000 else 200
+        val intervalMillis = 1000L / perBatch
+        val timestamps = LongArray(perBatch)
+        val axes = Array(3) { IntArray(perBatch) }
+
+        FileOutputStream(file).use { stream ->
+            val output = CodedOutputStream.newInstance(stream, OUTPUT_BUFFER_BYTES)
+            for (b in 0 until batches) {
+                coroutineContext.ensureActive()
+                for (i in 0 until perBatch) {
+                    timestamps[i] = start + b * 1000L + i * intervalMillis
+                    for (axis in 0..2) {
+                        axes[axis][i] = base[axis] + random.nextInt(-noise, noise)
+                    }
+                }
+                output.writeMessage(1, batch(type, timestamps, axes))
+            }
+            output.flush()
+        }
+        return file.length()
+    }
+
+    /**
+     * Creates one offset/diff-encoded batch: the first value is absolute, the others are
+     * differences to their predecessor.
+     */
+    private fun batch(
+        type: Point3DEnvelope.Type,
+        timestamps: LongArray,
+        axes: Array<IntArray>
+    ): MessageLite {
+        val t = timestamps.mapIndexed { i, v -> if (i == 0) v else v - timestamps[i - 1] }
+        val (x, y, z) = axes.map { values ->
+            values.mapIndexed { i, v -> if (i == 0) v else v - values[i - 1] }
+        }
+        return when (type) {
+            Point3DEnvelope.Type.ACCELERATIONS -> Accelerations.newBuilder()
+                .addAllTimestamp(t).addAllX(x).addAllY(y).addAllZ(z).build()
+            Point3DEnvelope.Type.ROTATIONS -> Rotations.newBuilder()
+                .addAllTimestamp(t).addAllX(x).addAllY(y).addAllZ(z).build()
+            Point3DEnvelope.Type.DIRECTIONS -> Directions.newBuilder()
+                .addAllTimestamp(t).addAllX(x).addAllY(y).addAllZ(z).build()
+        }
+    }
+
+    /**
+     * Writes the pictures along the [track], every [Parameters.pictureDistanceMeters], and
+     * registers them as attachments.
+     */
+    private suspend fun writePictures(
+        parameters: Parameters,
+        measurementId: Long,
+        track: SyntheticTrack,
+        picture: ByteArray
+    ) {
+        if (parameters.pictureDistanceMeters <= 0.0 || track.size == 0) return
+        val storage = File(StorageHelper.getStoragePathWithFallback(context))
+        // Found by the deletion like the folders of the camera service, see `MenuProvider`
+        val folder = File(storage, "synthetic_$measurementId").apply { mkdirs() }
+        val dao = persistence.attachmentDao!!
+        val stepMeters = SPEED_METERS_PER_SECOND / parameters.locationRateHz
+        val every = maxOf(1, (parameters.pictureDistanceMeters / stepMeters).roundToInt())
+        for (i in 0 until track.size step every) {
+            coroutineContext.ensureActive()
+            val timestamp = track.timestamps[i]
+            val file = File(folder, "$timestamp.jpg")
+            file.writeBytes(picture)
+            dao.insert(
+                Attachment(
+                    0L, timestamp, AttachmentStatus.SAVED, FileType.JPG,
+                    PICTURE_FILE_FORMAT_VERSION, file.length(), file.toPath(),
+                    track.latitudes[i], track.longitudes[i], timestamp, measurementId
+                )
+            )
+        }
+    }
+
+    /**
+     * Creates the JPEG written for all pictures. It shows noise, which keeps the file as large as
+     * a photo taken by the camera service.
+     */
+    private fun picture(parameters: Parameters): ByteArray {
+        val random = Random(parameters.seed)
+        val width = parameters.pictureWidth
+        val height = width * 3 / 4
+        val pixels = IntArray(width * height) { 0xFF000000.toInt() or random.nextInt(0xFFFFFF) }
+        val bitmap = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888)
+        return ByteArrayOutputStream().use {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, it)
+            bitmap.recycle()
+            it.toByteArray()
+        }
+    }
+
+    /**
+     * The size and shape of a synthetic dataset.
+     *
+     * @property trips The number of measurements.
+     * @property durationMillis The duration of each measurement.
+     * @property locationRateHz The number of locations per second.
+     * @property sensorRateHz The number of samples per second of each sensor, `0` for none.
+     * @property pictureDistanceMeters The distance between two pictures, `0` for none.
+     * @property pictureWidth The width of the pictures in pixels, which determines their size.
+     * @property status The status of the measurements, e.g. to test the upload.
+     * @property modality The modality of the measurements.
+     * @property centerLat The latitude of the area the measurements start in.
+     * @property centerLon The longitude of the area the measurements start in.
+     * @property seed The seed of the generated values.
+     */
+    data class Parameters(
+        val trips: Int = 100,
+        val durationMillis: Long = 60 * 60 * 1000L,
+        val locationRateHz: Int = 1,
+        val sensorRateHz: Int = 100,
+        val pictureDistanceMeters: Double = 0.0,
+        val pictureWidth: Int = 1920,
+        val status: MeasurementStatus = MeasurementStatus.FINISHED,
+        val modality: Modality = Modality.BICYCLE,
+        val centerLat: Double = 51.05,
+        val centerLon: Double = 13.73,
+        val seed: Int = 42,
+    ) {
+        init {
+            require(trips >= 0) { "Unsupported trip count: $trips" }
+            require(durationMillis >= 1000L) { "Unsupported duration: $durationMillis" }
+            require(locationRateHz in 1..1000) { "Unsupported location rate: $locationRateHz" }
+            require(sensorRateHz in 0..1000) { "Unsupported sensor rate: $sensorRateHz" }
+        }
+    }
+
+    /**
+     * The generated locations of a measurement, to place the pictures along.
+     */
+    private class SyntheticTrack(val size: Int) {
+        val timestamps = LongArray(size)
+        val latitudes = DoubleArray(size)
+        val longitudes = DoubleArray(size)
+        var distanceMeters = 0.0
+        private var added = 0
+
+        fun add(timestamp: Long, lat: Double, lon: Double) {
+            timestamps[added] = timestamp
+            latitudes[added] = lat
+            longitudes[added] = lon
+            added++
+        }
+    }
+
+    companion object {
+        private const val DAY_MILLIS = 24 * 60 * 60 * 1000L
+
+        /**
+         * The number of locations inserted in one transaction.
+         */
+        private const val LOCATION_BATCH_SIZE = 1_000
+
+        private const val OUTPUT_BUFFER_BYTES = 64 * 1024
+
+        /**
+         * The speed of the synthetic measurements, which is about 18 km/h.
+         */
+        private const val SPEED_METERS_PER_SECOND = 5.0
+
+        private const val METERS_PER_DEGREE = 111_320.0
+
+        private const val JPEG_QUALITY = 90
+
+        /**
+         * The file format version of JPEG attachments.
+         */
+        private const val PICTURE_FILE_FORMAT_VERSION: Short = 1
+    }
+}
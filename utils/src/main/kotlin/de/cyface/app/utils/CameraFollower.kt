@@ -0,0 +1,205 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import android.os.SystemClock
+import android.util.Log
+import com.google.android.gms.maps.CameraUpdateFactory
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import de.cyface.app.utils.SharedConstants.TAG
+
+/**
+ * Keeps the user's position in view without moving the camera on every location fix.
+ *
+ * Each camera update re-renders the whole map, so the camera is only moved when the position
+ * leaves the inner part of the viewport, at most once per [minIntervalMillis], and never while
+ * the user moves the map or a previous animation is still running.
+ *
+ * The owner of the map needs to call [onCameraIdle] from its `OnCameraIdleListener`, as a map
+ * only supports one such listener.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 4.3.0
+ * @property googleMap The map to move the camera of.
+ * @property minIntervalMillis The minimal time between two camera updates.
+ * @property marginFraction The part of the viewport width and height at each border in which
+ * the position triggers a camera update.
+ * @property pauseMillis The time the camera is not moved after the user moved the map.
+ */
+internal class CameraFollower(
+    private val googleMap: GoogleMap,
+    private val minIntervalMillis: Long = DEFAULT_MIN_INTERVAL_MILLIS,
+    private val marginFraction: Double = DEFAULT_MARGIN_FRACTION,
+    private val pauseMillis: Long = DEFAULT_PAUSE_MILLIS,
+) {
+
+    /**
+     * The uptime of the last camera update triggered by this class.
+     */
+    private var movedAt = 0L
+
+    /**
+     * The uptime at which the user last moved the map.
+     */
+    private var interactedAt = 0L
+
+    /**
+     * `true` from the start of a gesture until the camera is idle, as a gesture and the fling
+     * after it can take longer than the [pauseMillis].
+     */
+    private var gesturing = false
+
+    /**
+     * `true` while a camera animation triggered by this class is running.
+     */
+    private var animating = false
+
+    /**
+     * The number of positions received, for [logSummary].
+     */
+    private var positions = 0
+
+    /**
+     * The number of camera updates triggered, for [logSummary].
+     */
+    private var moves = 0
+
+    init {
+        googleMap.setOnCameraMoveStartedListener { reason ->
+            if (reason == GoogleMap.OnCameraMoveStartedListener.REASON_GESTURE) {
+                gesturing = true
+                interactedAt = SystemClock.uptimeMillis()
+            }
+        }
+    }
+
+    /**
+     * Called when the camera stopped moving, which ends a gesture of the user.
+     */
+    fun onCameraIdle() {
+        if (gesturing) {
+            gesturing = false
+            // The pause starts when the user stopped moving the map
+            interactedAt = SystemClock.uptimeMillis()
+        }
+    }
+
+    /**
+     * Moves the camera to the [position] if required.
+     *
+     * @param position The current position of the user.
+     */
+    fun onPosition(position: LatLng) {
+        positions++
+        val now = SystemClock.uptimeMillis()
+        if (animating || gesturing) return
+        if (interactedAt > 0 && now - interactedAt < pauseMillis) return
+        if (movedAt > 0 && now - movedAt < minIntervalMillis) return
+        val visible = googleMap.projection.visibleRegion.latLngBounds
+        if (isInInnerViewport(visible, marginFraction, position)) return
+
+        movedAt = now
+        moves++
+        animating = true
+        googleMap.animateCamera(
+            CameraUpdateFactory.newLatLng(position),
+            ANIMATION_MILLIS,
+            object : GoogleMap.CancelableCallback {
+                override fun onFinish() {
+                    animating = false
+                }
+
+                override fun onCancel() {
+                    animating = false
+                }
+            })
+    }
+
+    /**
+     * Logs how many of the received positions moved the camera.
+     */
+    fun logSummary() {
+        if (positions == 0) return
+        Log.d(TAG, "CameraFollower: $moves camera updates for $positions positions")
+    }
+
+    companion object {
+        /**
+         * The default minimal time between two camera updates.
+         */
+        const val DEFAULT_MIN_INTERVAL_MILLIS = 3_000L
+
+        /**
+         * The default part of the viewport at each border which triggers a camera update.
+         */
+        const val DEFAULT_MARGIN_FRACTION = 0.25
+
+        /**
+         * The default time the camera is not moved after the user moved the map.
+         */
+        const val DEFAULT_PAUSE_MILLIS = 10_000L
+
+        /**
+         * The duration of the camera animation.
+         */
+        private const val ANIMATION_MILLIS = 500
+
+        /**
+         * Checks if a position is in the visible region without the [marginFraction] at each
+         * border.
+         *
+         * This does not create a [LatLngBounds] for the inner region, as the visible region may
+         * cross the antimeridian, where the longitudes are not ordered.
+         *
+         * @param visible The visible region.
+         * @param marginFraction The part of the width and height at each border to exclude.
+         * @param position The position to check.
+         * @return `true` if the position is in the inner region.
+         */
+        fun isInInnerViewport(
+            visible: LatLngBounds,
+            marginFraction: Double,
+            position: LatLng
+        ): Boolean {
+            val latitudeMargin =
+                (visible.northeast.latitude - visible.southwest.latitude) * marginFraction
+            if (position.latitude < visible.southwest.latitude + latitudeMargin ||
+                position.latitude > visible.northeast.latitude - latitudeMargin
+            ) {
+                return false
+            }
+            // Longitudes eastwards from the west border, which also works across the antimeridian
+            val longitudeSpan = eastwards(visible.southwest.longitude, visible.northeast.longitude)
+            val longitude = eastwards(visible.southwest.longitude, position.longitude)
+            val longitudeMargin = longitudeSpan * marginFraction
+            return longitude >= longitudeMargin && longitude <= longitudeSpan - longitudeMargin
+        }
+
+        /**
+         * @return The degrees from [from] eastwards to [to], from `0` to `360`.
+         */
+        private fun eastwards(from: Double, to: Double): Double {
+            val degrees = to - from
+            return if (degrees < 0) degrees + 360.0 else degrees
+        }
+    }
+}
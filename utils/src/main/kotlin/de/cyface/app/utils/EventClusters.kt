@@ -0,0 +1,164 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.Marker
+import com.google.android.gms.maps.model.MarkerOptions
+import kotlin.math.floor
+
+/**
+ * Groups the `Event` markers which are close to each other on the screen into clusters.
+ *
+ * The events are assigned to a grid of [CELL_SIZE] in map pixels at the current zoom level, all
+ * events in one cell form a cluster. Only the visible clusters are added as [Marker] to the map,
+ * and markers of clusters with the same events are kept when the camera moves, and moved when
+ * their events were.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.2
+ * @since 4.3.0
+ * @property googleMap The map to add the markers to.
+ * @property clusterTitle Returns the title of a cluster with the given number of events.
+ */
+internal class EventClusters(
+    private val googleMap: GoogleMap,
+    private val clusterTitle: (Int) -> String
+) {
+
+    /**
+     * The events to show by their id.
+     */
+    private val events = LinkedHashMap<Long, EventMarker>()
+
+    /**
+     * The markers currently on the map by the ids of the events they represent.
+     */
+    private val markers = HashMap<List<Long>, Marker>()
+
+    /**
+     * Replaces the events to show and updates the markers.
+     */
+    fun set(events: Collection<EventMarker>) {
+        this.events.clear()
+        events.forEach { this.events[it.id] = it }
+        refresh()
+    }
+
+    /**
+     * Removes one event and updates the markers.
+     */
+    fun remove(eventId: Long) {
+        if (events.remove(eventId) != null) refresh()
+    }
+
+    /**
+     * Forgets all events and markers, e.g. after the map was cleared.
+     */
+    fun clear() {
+        events.clear()
+        markers.clear()
+    }
+
+    /**
+     * Updates the clusters to the current camera position, e.g. when the camera stopped moving.
+     */
+    fun refresh() {
+        val visible = googleMap.projection.visibleRegion.latLngBounds
+        val worldSize = WebMercator.worldSize(googleMap.cameraPosition.zoom.toDouble())
+        val clusters = cluster(events.values.filter { visible.contains(it.position) }, worldSize)
+            .associateBy { cluster -> cluster.map { it.id } }
+
+        val iterator = markers.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key !in clusters) {
+                entry.value.remove()
+                iterator.remove()
+            }
+        }
+        clusters.forEach { (ids, cluster) ->
+            val options = options(cluster)
+            val marker = markers[ids]
+            if (marker == null) {
+                googleMap.addMarker(options)?.let { markers[ids] = it }
+            } else {
+                // An event with the same id may have been replaced at another position
+                if (marker.position != options.position) marker.position = options.position
+                if (marker.title != options.title) marker.title = options.title
+            }
+        }
+    }
+
+    /**
+     * @return The options of the marker representing the [cluster].
+     */
+    private fun options(cluster: List<EventMarker>): MarkerOptions {
+        if (cluster.size == 1) {
+            return MarkerOptions().position(cluster[0].position).title(cluster[0].title)
+        }
+        return MarkerOptions().position(center(cluster)).title(clusterTitle(cluster.size))
+    }
+
+    companion object {
+        /**
+         * The width and height of the cells events are clustered in, in map pixels (dp).
+         */
+        private const val CELL_SIZE = 48.0
+
+        /**
+         * Groups the events which are in the same cell of the grid.
+         *
+         * @param events The events to group.
+         * @param worldSize The size of the world in map pixels at the current zoom level.
+         * @return The clusters, each with its events in the order of [events].
+         */
+        fun cluster(events: Collection<EventMarker>, worldSize: Double): Collection<List<EventMarker>> {
+            val cells = LinkedHashMap<Long, MutableList<EventMarker>>()
+            events.forEach {
+                val x = floor(WebMercator.x(it.position.longitude, worldSize) / CELL_SIZE).toLong()
+                val y = floor(WebMercator.y(it.position.latitude, worldSize) / CELL_SIZE).toLong()
+                cells.getOrPut(x shl 32 or y) { mutableListOf() }.add(it)
+            }
+            return cells.values
+        }
+
+        /**
+         * @return The mean position of the events of a cluster.
+         */
+        fun center(cluster: List<EventMarker>): LatLng {
+            val latitude = cluster.sumOf { it.position.latitude } / cluster.size
+            val longitude = cluster.sumOf { it.position.longitude } / cluster.size
+            return LatLng(latitude, longitude)
+        }
+    }
+}
+
+/**
+ * An `Event` which is shown on the map.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property id The id of the event.
+ * @property position The position of the event on the track.
+ * @property title The title of the marker.
+ */
+internal data class EventMarker(val id: Long, val position: LatLng, val title: String)
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+/**
+ * Matches events to the locations of a track.
+ *
+ * This object only depends on the Kotlin standard library, so that it can be benchmarked on a
+ * plain JVM, see the `benchmark` module.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal object EventMatching {
+    /**
+     * Finds the first location captured at or after [timestamp] by binary search.
+     *
+     * @param timestamps The timestamps of the locations in ascending order.
+     * @param timestamp The timestamp to search for.
+     * @return The index of the location, or `timestamps.size` if all locations are older.
+     */
+    fun nextLocationIndex(timestamps: LongArray, timestamp: Long): Int {
+        var low = 0
+        var high = timestamps.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (timestamps[middle] < timestamp) low = middle + 1 else high = middle
+        }
+        return low
+    }
+}
@@ -30,6 +30,7 @@ import android.widget.Toast
 import androidx.activity.result.ActivityResultLauncher
 import androidx.core.app.ActivityCompat
 import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.LiveData
 import androidx.lifecycle.lifecycleScope
 import com.google.android.gms.location.FusedLocationProviderClient
 import com.google.android.gms.location.LocationCallback
@@ -39,30 +40,41 @@ import com.google.android.gms.location.LocationServices
 import com.google.android.gms.location.Priority
 import com.google.android.gms.maps.CameraUpdateFactory
 import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.LocationSource
 import com.google.android.gms.maps.MapView
 import com.google.android.gms.maps.OnMapReadyCallback
 import com.google.android.gms.maps.model.CameraPosition
 import com.google.android.gms.maps.model.LatLng
-import com.google.android.gms.maps.model.LatLngBounds
-import com.google.android.gms.maps.model.Marker
 import com.google.android.gms.maps.model.MarkerOptions
 import com.google.android.gms.maps.model.PolylineOptions
+import com.google.android.gms.maps.model.TileOverlay
+import com.google.android.gms.maps.model.TileOverlayOptions
 import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.coverage.CoverageRasterizer
+import de.cyface.app.utils.coverage.CoverageTileProvider
+import de.cyface.persistence.DefaultPersistenceLayer
 import de.cyface.persistence.model.Event
 import de.cyface.persistence.model.GeoLocation
+import de.cyface.persistence.model.MeasurementStatus
 import de.cyface.persistence.model.Modality
+import de.cyface.persistence.model.ParcelableGeoLocation
 import de.cyface.persistence.model.Track
+import de.cyface.persistence.strategy.DefaultLocationCleaning
 import de.cyface.utils.settings.AppSettings
 import io.sentry.Sentry
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
 import java.lang.ref.WeakReference
 
 /**
  * The Map class handles everything around the GoogleMap view.
  *
  * @author Armin Schnabel
- * @version 4.1.2
+ * @version 4.6.2
  * @since 1.0.0
  * @property view The `MapView` element of the `GoogleMap`.
  * @property onMapReadyRunnable The `Runnable` triggered when the `GoogleMap` is loaded and ready.
@@ -97,6 +109,40 @@ class Map(
      */
     private lateinit var locationCallback: LocationCallback
 
+    /**
+     * `true` if the fused location updates are subscribed.
+     */
+    private var fusedUpdatesRequested = false
+
+    /**
+     * `true` if [followCapturing] was called.
+     */
+    private var followingCapturing = false
+
+    /**
+     * `true` while a measurement is captured, in which case its locations are shown.
+     */
+    private var capturingActive = false
+
+    /**
+     * The listener of the map's location layer, while the layer is shown.
+     */
+    private var myLocationListener: LocationSource.OnLocationChangedListener? = null
+
+    /**
+     * Feeds the map's location layer with the locations this class receives, so that the map does
+     * not subscribe to locations on its own.
+     */
+    private val locationSource = object : LocationSource {
+        override fun activate(listener: LocationSource.OnLocationChangedListener) {
+            myLocationListener = listener
+        }
+
+        override fun deactivate() {
+            myLocationListener = null
+        }
+    }
+
     /**
      * The newest available position.
      */
@@ -113,10 +159,36 @@ class Map(
     private val onMapReadyRunnable: Runnable
 
     /**
-     * All currently shown `Event` `Marker`s with a reference between both required to find the Marker of a
-     * Event.
+     * The clusters of the shown `Event`s, available when the map is ready.
+     */
+    private var eventClusters: EventClusters? = null
+
+    /**
+     * Moves the camera with the user's position, available when the map is ready.
+     */
+    private var cameraFollower: CameraFollower? = null
+
+    /**
+     * The positions of the `Event`s on the track by event id, by measurement id.
+     *
+     * Only positions which cannot change when more locations are captured are cached.
+     */
+    private val eventPositions = HashMap<Long, HashMap<Long, LatLng>>()
+
+    /**
+     * The latest render request, which is cancelled when a newer request arrives.
+     */
+    private var renderJob: Job? = null
+
+    /**
+     * The provider of the coverage layer, or `null` if the coverage is not shown.
+     */
+    private var coverageTileProvider: CoverageTileProvider? = null
+
+    /**
+     * The overlay showing the coverage of all captured trips, if shown.
      */
-    private val eventMarker = HashMap<Long, Marker?>()
+    private var coverageOverlay: TileOverlay? = null
 
     init {
         view.onCreate(savedInstanceState)
@@ -135,19 +207,18 @@ class Map(
 
     /**
      * Subscribes to location updates to show the location on the map.
+     *
+     * While a measurement is captured, the locations of the capturing service are shown instead,
+     * see [followCapturing], so that no second location consumer is registered.
      */
     private fun requestLocationUpdates() {
         val activity = view.context as Activity
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(activity)
-        val locationRequest =
-            LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 5_000).build()
-        locationCallback = object : LocationCallback() {
-            override fun onLocationResult(locationResult: LocationResult) {
-                lifecycleOwner.lifecycleScope.launch {
-                    // The GMap location does not work on emulator, see bug report: https://issuetracker.google.com/issues/242438611
-                    val centerMap = appSettings.centerMapFlow.first()
-                    if (locationResult.locations.size > 0 && centerMap && !ignoreAutoZoom) {
-                        moveToLocation(true, locationResult.locations[locationResult.locations.size - 1])
+        if (!this::locationCallback.isInitialized) {
+            locationCallback = object : LocationCallback() {
+                override fun onLocationResult(locationResult: LocationResult) {
+                    if (locationResult.locations.size > 0) {
+                        onNewLocation(locationResult.locations[locationResult.locations.size - 1])
                     }
                 }
             }
@@ -162,7 +233,13 @@ class Map(
         ) {
             Log.d(TAG, "requestLocationUpdates: Skip requestLocationUpdates (missing permissions)")
         } else {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, null)
+            if (!capturingActive && !fusedUpdatesRequested) {
+                // Only to show the position while idle, so GNSS is not required
+                val locationRequest =
+                    LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, 5_000).build()
+                fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, null)
+                fusedUpdatesRequested = true
+            }
             if (googleMap != null) {
                 googleMap!!.isMyLocationEnabled = true
             }
@@ -184,16 +261,83 @@ class Map(
         ) {
             return
         }
-        if (this::fusedLocationClient.isInitialized) {
-            fusedLocationClient.removeLocationUpdates(locationCallback)
-        }
+        stopFusedLocationUpdates()
         if (googleMap != null) {
             googleMap!!.isMyLocationEnabled = false
         }
     }
 
+    /**
+     * Unsubscribes from the location updates of the [fusedLocationClient], if subscribed.
+     */
+    private fun stopFusedLocationUpdates() {
+        if (fusedUpdatesRequested) {
+            fusedLocationClient.removeLocationUpdates(locationCallback)
+            fusedUpdatesRequested = false
+        }
+    }
+
+    /**
+     * Shows the locations of the capturing service while a measurement is captured.
+     *
+     * The own location subscription of the map is only used while no measurement is captured,
+     * so that only one consumer keeps the location hardware busy.
+     *
+     * @param status The status of the current measurement, `null` if there is none.
+     * @param locations The locations captured for the current measurement.
+     */
+    fun followCapturing(
+        status: LiveData<MeasurementStatus?>,
+        locations: LiveData<ParcelableGeoLocation?>
+    ) {
+        if (followingCapturing) return
+        followingCapturing = true
+        status.observe(lifecycleOwner) {
+            val active = it == MeasurementStatus.OPEN
+            if (active == capturingActive) return@observe
+            capturingActive = active
+            Log.d(TAG, "followCapturing: ${if (active) "using capturing" else "using fused"} locations")
+            if (googleMap == null) return@observe // `onMapReady` subscribes as required
+            if (active) stopFusedLocationUpdates() else requestLocationUpdates()
+        }
+        locations.observe(lifecycleOwner) {
+            if (capturingActive && it != null) {
+                onNewLocation(Location(CAPTURING_PROVIDER).apply {
+                    latitude = it.lat
+                    longitude = it.lon
+                    time = it.timestamp
+                    it.accuracy?.let { accuracy -> this.accuracy = accuracy.toFloat() }
+                })
+            }
+        }
+    }
+
+    /**
+     * Shows a new position of the user and centers the map, if enabled.
+     */
+    private fun onNewLocation(location: Location) {
+        myLocationListener?.onLocationChanged(location)
+        lifecycleOwner.lifecycleScope.launch {
+            // The GMap location does not work on emulator, see bug report: https://issuetracker.google.com/issues/242438611
+            val centerMap = appSettings.centerMapFlow.first()
+            if (centerMap && !ignoreAutoZoom) {
+                follow(location)
+            }
+        }
+    }
+
     override fun onMapReady(googleMap: GoogleMap) {
         this.googleMap = googleMap
+        googleMap.setLocationSource(locationSource)
+        eventClusters = EventClusters(googleMap) { count ->
+            applicationContext.getString(R.string.modality_type_changes, count)
+        }
+        cameraFollower = CameraFollower(googleMap)
+        // A map only supports one idle listener
+        googleMap.setOnCameraIdleListener {
+            eventClusters!!.refresh()
+            cameraFollower!!.onCameraIdle()
+        }
         onMapReady()
     }
 
@@ -222,6 +366,42 @@ class Map(
         }
     }
 
+    /**
+     * Shows a coverage layer with all captured trips below the current trip.
+     *
+     * The tiles already rendered are shown immediately. Trips which are not yet part of the tiles
+     * are rendered in the background, also when a trip is finished while the map is shown.
+     *
+     * @param persistence The persistence layer to load the finished measurements from.
+     */
+    fun showCoverage(persistence: DefaultPersistenceLayer<*>) {
+        if (coverageTileProvider != null) return
+        val directory = File(applicationContext.filesDir, CoverageRasterizer.FOLDER_NAME)
+        coverageTileProvider = CoverageTileProvider(directory)
+        addCoverageOverlay()
+
+        val rasterizer = CoverageRasterizer(directory)
+        lifecycleOwner.lifecycleScope.launch {
+            persistence.measurementRepository!!.observeAllCompleted().collect { measurements ->
+                val changed = rasterizer.update(measurements.map { it.id }) {
+                    persistence.loadTracks(it, DefaultLocationCleaning())
+                }
+                if (changed) coverageOverlay?.clearTileCache()
+            }
+        }
+    }
+
+    /**
+     * Adds the coverage layer to the map, which is required after the map was cleared.
+     */
+    private fun addCoverageOverlay() {
+        val provider = coverageTileProvider ?: return
+        coverageOverlay = googleMap!!.addTileOverlay(
+            // Below the polylines of the current trip
+            TileOverlayOptions().tileProvider(provider).zIndex(-1f).fadeIn(false)
+        )
+    }
+
     fun renderMarkers(markers: List<MarkerOptions>) {
         markers.forEach { googleMap!!.addMarker(it) }
     }
@@ -229,6 +409,9 @@ class Map(
     /**
      * Renders the provided {@param tracks} and {@param events} onto this classes map.
      *
+     * The geometry is prepared in the background and applied to the map afterwards. A request
+     * which is still being prepared is cancelled when this is called again.
+     *
      * @param tracks a list of [Track]s which can be rendered to a map
      * @param events a list of [Event]s which can be rendered to a map
      * @param moveCameraToBounds `True` if the camera of the map should be moved to the track boundaries
@@ -239,117 +422,121 @@ class Map(
         moveCameraToBounds: Boolean,
         markers: List<MarkerOptions>
     ) {
-        googleMap!!.clear()
-        renderMarkers(markers)
+        // A newer snapshot of the tracks supersedes the one which is still being prepared
+        renderJob?.cancel()
+        renderJob = lifecycleOwner.lifecycleScope.launch {
+            val geometry = withContext(Dispatchers.Default) { TrackGeometry.from(tracks) }
+            apply(geometry, events, moveCameraToBounds, markers)
+        }
+    }
 
-        // Calculate geo boundaries
-        val builder = LatLngBounds.Builder()
-        var positions = 0
-
-        // Iterate through the sub tracks and their points
-        val allLocations = mutableListOf<GeoLocation?>()
-        for ((geoLocations) in tracks) {
-            val subTrack = PolylineOptions()
-            for (location in geoLocations) {
-                allLocations.add(location)
-                val position = LatLng(location!!.lat, location.lon)
-                subTrack.add(position)
-                builder.include(position)
-                positions++
-            }
+    /**
+     * Replaces the map content with the prepared [geometry].
+     *
+     * This runs on the main thread and only adds the prepared objects to the map.
+     */
+    private fun apply(
+        geometry: TrackGeometry,
+        events: List<Event>,
+        moveCameraToBounds: Boolean,
+        markers: List<MarkerOptions>
+    ) {
+        val googleMap = googleMap ?: return
+        googleMap.clear()
+        eventClusters?.clear()
+        addCoverageOverlay()
+        renderMarkers(markers)
 
-            // Add sub-tracks to map
-            if (subTrack.points.size > 1) {
-                googleMap!!.addPolyline(subTrack)
-            }
-        }
-        renderEvents(allLocations, events)
-        if (moveCameraToBounds && positions <= 1) {
+        // Add sub-tracks to map
+        geometry.polylines.forEach { googleMap.addPolyline(PolylineOptions().addAll(it)) }
+        renderEvents(geometry.locations, geometry.timestamps, events)
+        if (moveCameraToBounds && geometry.positions <= 1) {
             Toast.makeText(
                 applicationContext,
                 R.string.toast_no_locations_found,
                 Toast.LENGTH_SHORT
             ).show()
         }
-        if (moveCameraToBounds && positions > 0) {
+        if (moveCameraToBounds && geometry.bounds != null) {
             // Move map view to track boundaries
-            val bounds = builder.build()
-            val cameraUpdate = CameraUpdateFactory.newLatLngBounds(bounds, 40)
-            googleMap!!.moveCamera(cameraUpdate)
+            val cameraUpdate = CameraUpdateFactory.newLatLngBounds(geometry.bounds, 40)
+            googleMap.moveCamera(cameraUpdate)
         }
     }
 
+    /**
+     * Shows the [events] at their position on the track, clustered when they are close together.
+     *
+     * @param locations The locations of the track, ordered by time.
+     * @param timestamps The timestamps of the [locations].
+     * @param events The events to show.
+     */
     private fun renderEvents(
-        allLocations: List<GeoLocation?>,
+        locations: List<GeoLocation>,
+        timestamps: LongArray,
         events: List<Event>
     ) {
-        // Iterate through the events and select GeoLocations for each event to be rendered on the map
-        val locationIterator = allLocations.iterator()
-        var previousLocation: GeoLocation? = null
-        var nextLocation: GeoLocation? = null
-        for ((id, timestamp, _, value) in events) {
-            var markerOptions: MarkerOptions? = null
-            val modalityKey = applicationContext.getString(R.string.modality_type)
-            val modality =
-                getTranslation(WeakReference(applicationContext), Modality.valueOf(value!!))
-            val markerTitle = "$modalityKey : $modality"
-
-            // Check if last Event's nextLocation can be used for this Event
-            if (nextLocation != null && nextLocation.timestamp >= timestamp) {
-                markerOptions = MarkerOptions()
-                    .position(LatLng(nextLocation.lat, nextLocation.lon)).title(markerTitle)
-            } else {
-                // Iterate until Event's nextLocation is reached
-                while (locationIterator.hasNext()) {
-                    val location = locationIterator.next()
-                    if (location!!.timestamp < timestamp) {
-                        previousLocation = location
-                        continue
-                    }
-
-                    // Event's nextLocation reached
-                    nextLocation = location
-                    markerOptions = MarkerOptions()
-                        .position(LatLng(nextLocation.lat, nextLocation.lon)).title(markerTitle)
-                    break // from location loop
-                }
-            }
-
-            // Add Event to map
-            if (markerOptions != null) {
-                val marker = googleMap!!.addMarker(markerOptions)
-                eventMarker[id] = marker
-                continue  // with next event
-            }
-
-            // No nextLocation for Event found
-            require(!locationIterator.hasNext())
-
-            // Use previousLocation to show last
-            if (previousLocation != null) {
-                markerOptions = MarkerOptions()
-                    .position(LatLng(previousLocation.lat, previousLocation.lon)).title(markerTitle)
-                val marker = googleMap!!.addMarker(markerOptions)
-                eventMarker[id] = marker
-                continue  // with next event
+        val modalityKey = applicationContext.getString(R.string.modality_type)
+        eventPositions.keys.retainAll(events.map { it.measurementId }.toSet())
+
+        val markers = events.mapNotNull { event ->
+            val position = eventPosition(event, locations, timestamps)
+            if (position == null) {
+                Log.d(
+                    TAG,
+                    "renderMeasurement(): Ignoring event as there are no GeoLocations to choose a position."
+                )
+                return@mapNotNull null
             }
-            Log.d(
-                TAG,
-                "renderMeasurement(): Ignoring event as there are no GeoLocations to choose a position."
+            val modality = getTranslation(
+                WeakReference(applicationContext),
+                Modality.valueOf(event.value!!)
             )
+            EventMarker(event.id, position, "$modalityKey : $modality")
+        }
+        eventClusters?.set(markers)
+    }
+
+    /**
+     * Returns the position of the first location captured at or after the [event], or of the last
+     * location if the event happened after the last location.
+     *
+     * @param event The event to find the position for.
+     * @param locations The locations of the track, ordered by time.
+     * @param timestamps The timestamps of the [locations].
+     * @return The position or `null` if there are no locations.
+     */
+    private fun eventPosition(
+        event: Event,
+        locations: List<GeoLocation>,
+        timestamps: LongArray
+    ): LatLng? {
+        val cache = eventPositions.getOrPut(event.measurementId) { HashMap() }
+        cache[event.id]?.let { return it }
+        if (locations.isEmpty()) return null
+
+        val index = EventMatching.nextLocationIndex(timestamps, event.timestamp)
+        if (index == locations.size) {
+            // Not cached, as a location captured later may be closer to the event
+            val last = locations.last()
+            return LatLng(last.lat, last.lon)
         }
+        val position = LatLng(locations[index].lat, locations[index].lon)
+        cache[event.id] = position
+        return position
     }
 
     @Suppress("unused")
     fun removeEventMarker(eventId: Long) {
-        val marker = eventMarker[eventId]
-        marker?.remove()
-        eventMarker.remove(eventId) // from cache
+        eventClusters?.remove(eventId)
+        eventPositions.values.forEach { it.remove(eventId) } // from cache
     }
 
     fun clearMap() {
+        renderJob?.cancel()
         googleMap!!.clear()
-        eventMarker.clear()
+        eventClusters?.clear()
+        addCoverageOverlay()
     }
 
     /**
@@ -387,6 +574,16 @@ class Map(
         }
     }
 
+    /**
+     * Keeps the [location] in view, without moving the camera on every location update.
+     */
+    private fun follow(location: Location) {
+        currentLocation = LatLng(location.latitude, location.longitude)
+        // Not reported, as this is called on each location update, see `moveToLocation`
+        val follower = cameraFollower ?: return
+        follower.onPosition(currentLocation!!)
+    }
+
     /**
      * Moves the GoogleMap camera to the last location.
      *
@@ -440,6 +637,7 @@ class Map(
 
     fun onPause() {
         stopLocationUpdates()
+        cameraFollower?.logSummary()
     }
 
     fun onDestroy() {
@@ -452,7 +650,7 @@ class Map(
         lifecycleOwner.lifecycleScope.launch {
             val centerMap = appSettings.centerMapFlow.first()
             if (centerMap && !ignoreAutoZoom) {
-                moveToLocation(true, location)
+                follow(location)
             }
         }
     }
@@ -546,5 +744,10 @@ class Map(
          * be replaced or removed.
          */
         //const val TEMPORARY_EVENT_MARKER_ID = -1L
+
+        /**
+         * The provider name of the locations received from the capturing service.
+         */
+        private const val CAPTURING_PROVIDER = "capturing"
     }
 }
@@ -23,7 +23,7 @@ package de.cyface.app.utils
  * which would only be needed to access those constants.
  *
  * @author Armin Schnabel
- * @version 1.2.0
+ * @version 1.4.1
  * @since 3.2.0
  */
 object SharedConstants {
@@ -60,6 +60,11 @@ object SharedConstants {
      */
     const val NOTIFICATION_CHANNEL_ID_RUNNING = "cyface_running"
 
+    /**
+     * Identifies the [android.app.NotificationChannel] which shows the progress of exports.
+     */
+    const val NOTIFICATION_CHANNEL_ID_EXPORT = "cyface_export"
+
     /*
      * Notifications ids - keep them in one place to avoid duplicate id usage
      */
@@ -79,4 +84,14 @@ object SharedConstants {
      * using apps.
      */
     const val PICTURE_CAPTURING_DECREASED_NOTIFICATION_ID = 4
+
+    /**
+     * Identifies the foreground [android.app.Notification] which shows the progress of an export.
+     */
+    const val EXPORT_PROGRESS_NOTIFICATION_ID = 5
+
+    /**
+     * Identifies the [android.app.Notification] which shows the result of an export.
+     */
+    const val EXPORT_RESULT_NOTIFICATION_ID = 6
 }
\ No newline at end of file
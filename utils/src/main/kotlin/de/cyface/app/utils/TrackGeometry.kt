@@ -0,0 +1,149 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import de.cyface.persistence.model.GeoLocation
+import de.cyface.persistence.model.Track
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlin.math.cos
+
+/**
+ * The ready-to-draw geometry of the tracks of a measurement.
+ *
+ * It's created off the main thread by [from], so that the main thread only adds the polylines.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property polylines The simplified points of each sub-track with more than one point.
+ * @property bounds The bounds of all locations or `null` if there are none.
+ * @property positions The number of locations before the simplification.
+ * @property locations All locations, ordered by time, to position events on the track.
+ * @property timestamps The timestamps of the [locations].
+ */
+internal class TrackGeometry(
+    val polylines: List<List<LatLng>>,
+    val bounds: LatLngBounds?,
+    val positions: Int,
+    val locations: List<GeoLocation>,
+    val timestamps: LongArray,
+) {
+    companion object {
+        /**
+         * The maximal distance of a removed point from the simplified line. This is below the
+         * width of the polyline at the highest zoom levels, so the simplification is not visible.
+         */
+        private const val TOLERANCE_METERS = 1.0
+
+        /**
+         * The meters per degree of latitude.
+         */
+        private const val METERS_PER_DEGREE = 111_320.0
+
+        /**
+         * Converts the [tracks] into their geometry.
+         *
+         * This checks for cancellation regularly, so that a newer request can replace it.
+         */
+        suspend fun from(tracks: List<Track>): TrackGeometry {
+            val builder = LatLngBounds.Builder()
+            val polylines = mutableListOf<List<LatLng>>()
+            val locations = mutableListOf<GeoLocation>()
+            for ((geoLocations) in tracks) {
+                currentCoroutineContext().ensureActive()
+                val points = ArrayList<LatLng>(geoLocations.size)
+                geoLocations.filterNotNull().forEach { location ->
+                    locations.add(location)
+                    val position = LatLng(location.lat, location.lon)
+                    points.add(position)
+                    builder.include(position)
+                }
+                if (points.size > 1) {
+                    polylines.add(simplify(points))
+                }
+            }
+            return TrackGeometry(
+                polylines,
+                if (locations.isEmpty()) null else builder.build(),
+                locations.size,
+                locations,
+                LongArray(locations.size) { locations[it].timestamp }
+            )
+        }
+
+        /**
+         * Removes the points which do not change the shape of the line by more than
+         * [TOLERANCE_METERS] using the Douglas-Peucker algorithm.
+         *
+         * The points are projected to a local plane, which is precise enough for the length of a
+         * track.
+         */
+        suspend fun simplify(points: List<LatLng>): List<LatLng> {
+            if (points.size < 3) return points
+            val metersPerDegreeLon = METERS_PER_DEGREE * cos(Math.toRadians(points[0].latitude))
+            val x = DoubleArray(points.size) { points[it].longitude * metersPerDegreeLon }
+            val y = DoubleArray(points.size) { points[it].latitude * METERS_PER_DEGREE }
+            val keep = BooleanArray(points.size)
+            keep[0] = true
+            keep[points.lastIndex] = true
+
+            // Iterative, as long tracks would exceed the stack depth
+            val stack = ArrayDeque<Long>()
+            stack.addLast(0L shl 32 or points.lastIndex.toLong())
+            while (stack.isNotEmpty()) {
+                currentCoroutineContext().ensureActive()
+                val range = stack.removeLast()
+                val first = (range shr 32).toInt()
+                val last = range.toInt()
+                var maxDistance = 0.0
+                var farthest = -1
+                for (i in first + 1 until last) {
+                    val distance = distanceSquared(x, y, i, first, last)
+                    if (distance > maxDistance) {
+                        maxDistance = distance
+                        farthest = i
+                    }
+                }
+                if (farthest != -1 && maxDistance > TOLERANCE_METERS * TOLERANCE_METERS) {
+                    keep[farthest] = true
+                    stack.addLast(first.toLong() shl 32 or farthest.toLong())
+                    stack.addLast(farthest.toLong() shl 32 or last.toLong())
+                }
+            }
+            return points.filterIndexed { index, _ -> keep[index] }
+        }
+
+        /**
+         * @return The squared distance of point [i] from the segment between [first] and [last].
+         */
+        private fun distanceSquared(x: DoubleArray, y: DoubleArray, i: Int, first: Int, last: Int): Double {
+            val dx = x[last] - x[first]
+            val dy = y[last] - y[first]
+            val lengthSquared = dx * dx + dy * dy
+            val t = if (lengthSquared == 0.0) 0.0
+            else (((x[i] - x[first]) * dx + (y[i] - y[first]) * dy) / lengthSquared).coerceIn(0.0, 1.0)
+            val px = x[first] + t * dx - x[i]
+            val py = y[first] + t * dy - y[i]
+            return px * px + py * py
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import kotlin.math.PI
+import kotlin.math.ln
+import kotlin.math.sin
+
+/**
+ * The Web Mercator projection used by Google Maps, to work with map pixels off the main thread.
+ *
+ * At zoom level `z` the world is `256 * 2^z` pixels wide and high, with the origin in the
+ * north-west.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal object WebMercator {
+
+    /**
+     * The width and height of a map tile in pixels.
+     */
+    const val TILE_SIZE = 256
+
+    /**
+     * The latitude limit of the projection, about 85 degrees.
+     */
+    private const val MAX_SIN_LATITUDE = 0.9999
+
+    /**
+     * @param zoom The zoom level, which may be fractional.
+     * @return The width and height of the world in pixels.
+     */
+    fun worldSize(zoom: Double): Double = TILE_SIZE * Math.pow(2.0, zoom)
+
+    /**
+     * @return The horizontal pixel coordinate of [longitude].
+     */
+    fun x(longitude: Double, worldSize: Double): Double {
+        return (longitude + 180.0) / 360.0 * worldSize
+    }
+
+    /**
+     * @return The vertical pixel coordinate of [latitude].
+     */
+    fun y(latitude: Double, worldSize: Double): Double {
+        val sinLatitude =
+            sin(Math.toRadians(latitude)).coerceIn(-MAX_SIN_LATITUDE, MAX_SIN_LATITUDE)
+        return (0.5 - ln((1 + sinLatitude) / (1 - sinLatitude)) / (4 * PI)) * worldSize
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.auth
+
+import android.os.SystemClock
+import android.util.Base64
+import android.util.Log
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.synchronization.Auth
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import net.openid.appauth.AuthorizationException
+import org.json.JSONException
+import org.json.JSONObject
+import java.util.WeakHashMap
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Provides access tokens to the API clients of this process.
+ *
+ * The token is cached until [EXPIRY_MARGIN_MILLIS] before it expires. Concurrent requests which
+ * need a new token share one in-flight request to [Auth.performActionWithFreshTokens], so that
+ * parallel API calls do not refresh the token against the identity provider in parallel.
+ *
+ * The shared request runs in the [scope] of the provider, so that a cancelled caller does not
+ * fail the requests waiting for the same token.
+ *
+ * Use [of] to get the instance shared by all clients of an [Auth].
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 4.3.0
+ * @property auth The authenticator to get the tokens from.
+ */
+class TokenProvider private constructor(private val auth: Auth) {
+
+    /**
+     * Guards [cached], [inFlight] and [metrics].
+     */
+    private val lock = Any()
+
+    /**
+     * The last token received and its expiry, or `null` if there is none.
+     */
+    private var cached: CachedToken? = null
+
+    /**
+     * The request for a new token which is currently running, or `null` if there is none.
+     */
+    private var inFlight: CompletableDeferred<String>? = null
+
+    /**
+     * The counters of this provider.
+     */
+    private var metrics = Metrics()
+
+    /**
+     * Incremented by [invalidate], so that a token requested before is not cached afterwards.
+     */
+    private var generation = 0
+
+    /**
+     * The scope the shared token requests run in, independent of the callers.
+     */
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    /**
+     * Returns a valid access token, from the cache or from a shared token request.
+     *
+     * @return The access token.
+     * @throws AuthorizationException if there is an error refreshing the access token.
+     */
+    suspend fun accessToken(): String {
+        val request = synchronized(lock) {
+            val token = cached
+            if (token != null && token.expiresAt - System.currentTimeMillis() > EXPIRY_MARGIN_MILLIS) {
+                metrics = metrics.copy(cacheHits = metrics.cacheHits + 1)
+                return token.value
+            }
+            val running = inFlight
+            if (running != null) {
+                metrics = metrics.copy(merged = metrics.merged + 1)
+                running
+            } else {
+                val created = CompletableDeferred<String>()
+                inFlight = created
+                val started = generation
+                scope.launch { refresh(created, started) }
+                created
+            }
+        }
+        // Cancelling this caller only stops waiting, the shared request continues
+        return request.await()
+    }
+
+    /**
+     * Removes the cached token, e.g. when the server rejected it or the user logged out.
+     *
+     * A token request which is still running completes its waiting callers, but its token is
+     * not cached.
+     */
+    fun invalidate() {
+        synchronized(lock) {
+            cached = null
+            inFlight = null
+            generation++
+        }
+    }
+
+    /**
+     * @return A snapshot of the counters of this provider.
+     */
+    fun metrics(): Metrics = synchronized(lock) { metrics }
+
+    /**
+     * Requests a token and completes the shared [request] with it.
+     *
+     * @param started The [generation] in which the request was started.
+     */
+    private suspend fun refresh(request: CompletableDeferred<String>, started: Int) {
+        val start = SystemClock.elapsedRealtime()
+        try {
+            val token = requestToken()
+            val latency = SystemClock.elapsedRealtime() - start
+            val snapshot = synchronized(lock) {
+                if (generation == started) cached = CachedToken(token, expiresAt(token))
+                metrics = metrics.copy(
+                    refreshes = metrics.refreshes + 1,
+                    totalLatencyMillis = metrics.totalLatencyMillis + latency,
+                    maxLatencyMillis = maxOf(metrics.maxLatencyMillis, latency)
+                )
+                metrics
+            }
+            Log.d(TAG, "Token refreshed in $latency ms ($snapshot)")
+            request.complete(token)
+        } catch (e: Throwable) {
+            // Also unexpected errors, so that waiting requests do not wait forever
+            synchronized(lock) { metrics = metrics.copy(failures = metrics.failures + 1) }
+            request.completeExceptionally(e)
+        } finally {
+            synchronized(lock) { if (inFlight === request) inFlight = null }
+        }
+    }
+
+    /**
+     * Requests a fresh token from the [auth].
+     */
+    private suspend fun requestToken(): String = suspendCancellableCoroutine { continuation ->
+        auth.performActionWithFreshTokens { accessToken, _, ex ->
+            if (ex != null) {
+                continuation.resumeWithException(ex as AuthorizationException)
+            } else {
+                continuation.resume(accessToken!!)
+            }
+        }
+    }
+
+    /**
+     * Reads the expiry time from the `exp` claim of a JWT access token.
+     *
+     * @return The expiry time in milliseconds since epoch, or `0` if it's unknown, in which case
+     * the token is not reused.
+     */
+    private fun expiresAt(token: String): Long {
+        val parts = token.split('.')
+        if (parts.size != 3) return 0L
+        return try {
+            val flags = Base64.URL_SAFE or Base64.NO_PADDING or Base64.NO_WRAP
+            val payload = String(Base64.decode(parts[1], flags), Charsets.UTF_8)
+            JSONObject(payload).optLong("exp") * 1000L
+        } catch (e: IllegalArgumentException) {
+            0L
+        } catch (e: JSONException) {
+            0L
+        }
+    }
+
+    /**
+     * A token and its expiry.
+     *
+     * @property value The access token.
+     * @property expiresAt The expiry time in milliseconds since epoch.
+     */
+    private class CachedToken(val value: String, val expiresAt: Long)
+
+    /**
+     * The counters of a [TokenProvider].
+     *
+     * @property refreshes The number of tokens requested from the [Auth].
+     * @property failures The number of failed token requests.
+     * @property cacheHits The number of requests served from the cache.
+     * @property merged The number of requests which waited for a running token request.
+     * @property totalLatencyMillis The total time spent on successful token requests.
+     * @property maxLatencyMillis The longest successful token request.
+     */
+    data class Metrics(
+        val refreshes: Int = 0,
+        val failures: Int = 0,
+        val cacheHits: Int = 0,
+        val merged: Int = 0,
+        val totalLatencyMillis: Long = 0L,
+        val maxLatencyMillis: Long = 0L,
+    )
+
+    companion object {
+        /**
+         * The time before the expiry at which a cached token is no longer used.
+         */
+        private const val EXPIRY_MARGIN_MILLIS = 30_000L
+
+        /**
+         * The providers by the [Auth] they serve.
+         */
+        private val providers = WeakHashMap<Auth, TokenProvider>()
+
+        /**
+         * @param auth The authenticator to get the tokens from.
+         * @return The provider shared by all API clients using the [auth].
+         */
+        @Synchronized
+        fun of(auth: Auth): TokenProvider {
+            return providers.getOrPut(auth) { TokenProvider(auth) }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.capturing
+
+import android.app.NotificationManager
+import android.content.Context
+import android.os.SystemClock
+import android.text.format.DateUtils
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import de.cyface.app.utils.R
+import de.cyface.app.utils.SharedConstants.NOTIFICATION_CHANNEL_ID_RUNNING
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.persistence.DefaultPersistenceLayer
+import de.cyface.persistence.exception.NoSuchMeasurementException
+import de.cyface.protos.model.File.FileType
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+
+/**
+ * Shows the live [CapturingStatistics] in the foreground notification of the capturing service.
+ *
+ * The notification is rebuilt at most every [MIN_INTERVAL_MILLIS] from the same [builder], so
+ * that keeping the app in the background stays cheap.
+ *
+ * This runs in the capturing process, see [launch], as the app's capturing listeners are
+ * unregistered while the app is in the background. Updates are only posted while [start]ed and
+ * the capturing notification is shown, as a notification posted after the service stopped would
+ * no longer be removed with the service. The notification is found by its channel, as the id is
+ * chosen by the capturing service.
+ *
+ * @author Armin Schnabel
+ * @version 2.1.0
+ * @since 4.3.0
+ * @property context The context to format the text and post the notification with.
+ * @property builder The builder of the capturing notification, as used by the capturing service.
+ * The notification must be posted in the [NOTIFICATION_CHANNEL_ID_RUNNING] channel.
+ * @property showPictures `true` if the number of pictures is shown.
+ */
+class CapturingNotificationUpdater(
+    private val context: Context,
+    private val builder: NotificationCompat.Builder,
+    private val showPictures: Boolean,
+) {
+
+    /**
+     * The service to post the notification with.
+     */
+    private val manager =
+        context.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+
+    /**
+     * `true` while the capturing service is running.
+     */
+    @Volatile
+    var isActive = false
+        private set
+
+    /**
+     * The uptime at which the notification was last posted.
+     */
+    private var postedAt = 0L
+
+    init {
+        builder.setOnlyAlertOnce(true)
+    }
+
+    /**
+     * Starts posting updates, to be called when the capturing service started.
+     */
+    fun start() {
+        postedAt = 0L
+        isActive = true
+    }
+
+    /**
+     * Stops posting updates, to be called before the capturing service is stopped.
+     */
+    fun stop() {
+        isActive = false
+    }
+
+    /**
+     * Posts the statistics of the currently captured measurement every [MIN_INTERVAL_MILLIS].
+     *
+     * To be called in the capturing process when the capturing service (re)starts, e.g. from
+     * `EventHandlingStrategy.buildCapturingNotification`. The statistics are seeded from the
+     * database at each start, so they are correct after a pause. The updates stop when the
+     * capturing notification was removed with the service or no measurement is captured.
+     *
+     * @param scope The scope to run the updates in.
+     * @param persistence The persistence layer to load the statistics with.
+     * @return The job which posts the updates.
+     */
+    fun launch(scope: CoroutineScope, persistence: DefaultPersistenceLayer<*>): Job {
+        val statistics = CapturingStatistics()
+        start()
+        return scope.launch {
+            try {
+                val measurement = persistence.loadCurrentlyCapturedMeasurement()
+                statistics.seed(
+                    measurement.distance,
+                    persistence.loadDuration(measurement.id),
+                    pictures(persistence, measurement.id)
+                )
+                while (true) {
+                    // The first update waits until the service posted its notification
+                    delay(MIN_INTERVAL_MILLIS)
+                    val current = persistence.loadCurrentlyCapturedMeasurement()
+                    if (current.id != measurement.id) break
+                    statistics.update(current.distance, pictures(persistence, current.id))
+                    // Checked right before posting, to not re-post a notification just removed
+                    val notificationId = shownNotificationId() ?: break
+                    update(statistics, notificationId)
+                }
+            } catch (e: NoSuchMeasurementException) {
+                Log.d(TAG, "No measurement captured, stopping notification updates")
+            } finally {
+                stop()
+            }
+        }
+    }
+
+    /**
+     * @return The number of pictures of the measurement, `0` if the pictures are not shown.
+     */
+    private suspend fun pictures(persistence: DefaultPersistenceLayer<*>, measurementId: Long): Int {
+        if (!showPictures) return 0
+        return persistence.attachmentDao?.countByMeasurementIdAndType(measurementId, FileType.JPG)
+            ?: 0
+    }
+
+    /**
+     * @return The id of the capturing notification of the service, or `null` if it's not shown.
+     */
+    private fun shownNotificationId(): Int? {
+        return manager.activeNotifications
+            .firstOrNull { it.notification.channelId == NOTIFICATION_CHANNEL_ID_RUNNING }?.id
+    }
+
+    /**
+     * Posts the [statistics], unless they were posted less than [MIN_INTERVAL_MILLIS] ago.
+     *
+     * @param statistics The statistics to show.
+     * @param notificationId The id the capturing service posted its notification with.
+     */
+    fun update(statistics: CapturingStatistics, notificationId: Int) {
+        if (!isActive) return
+        val now = SystemClock.uptimeMillis()
+        if (postedAt > 0 && now - postedAt < MIN_INTERVAL_MILLIS) return
+        postedAt = now
+
+        builder.setContentText(text(statistics))
+        manager.notify(notificationId, builder.build())
+    }
+
+    /**
+     * @return The text which summarizes the [statistics].
+     */
+    private fun text(statistics: CapturingStatistics): String {
+        val distanceKm = statistics.distanceMeters / 1000.0
+        val duration = DateUtils.formatElapsedTime(statistics.durationMillis / 1000)
+        return if (showPictures) {
+            context.getString(
+                R.string.notification_capturing_statistics_pictures,
+                distanceKm, duration, statistics.pictures
+            )
+        } else {
+            context.getString(R.string.notification_capturing_statistics, distanceKm, duration)
+        }
+    }
+
+    companion object {
+        /**
+         * The minimal time between two updates of the notification.
+         */
+        const val MIN_INTERVAL_MILLIS = 5_000L
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.capturing
+
+import android.os.SystemClock
+
+/**
+ * The statistics of the ongoing measurement shown in the capturing notification.
+ *
+ * The statistics are collected in the capturing process, which runs while the app is in the
+ * background, see [CapturingNotificationUpdater.launch]. The duration is loaded once when the
+ * capturing service starts and then accumulated from the elapsed time, as loading it from the
+ * database iterates all locations of the measurement.
+ *
+ * @author Armin Schnabel
+ * @version 2.0.0
+ * @since 4.3.0
+ */
+class CapturingStatistics {
+
+    /**
+     * The distance travelled in meters.
+     */
+    var distanceMeters = 0.0
+        @Synchronized get
+        private set
+
+    /**
+     * The number of pictures captured.
+     */
+    var pictures = 0
+        @Synchronized get
+        private set
+
+    /**
+     * The time spent capturing in milliseconds when the statistics were seeded.
+     */
+    private var seededDurationMillis = 0L
+
+    /**
+     * The elapsed realtime at which the statistics were seeded.
+     */
+    private var seededAt = 0L
+
+    /**
+     * The time spent capturing in milliseconds, without pauses.
+     */
+    val durationMillis: Long
+        @Synchronized get() = seededDurationMillis + SystemClock.elapsedRealtime() - seededAt
+
+    /**
+     * Starts from the statistics of a measurement, e.g. when the capturing service (re)starts.
+     *
+     * @param distanceMeters The distance travelled in meters.
+     * @param durationMillis The time spent capturing in milliseconds.
+     * @param pictures The number of pictures captured.
+     */
+    @Synchronized
+    fun seed(distanceMeters: Double, durationMillis: Long, pictures: Int) {
+        this.distanceMeters = distanceMeters
+        this.pictures = pictures
+        seededDurationMillis = durationMillis
+        seededAt = SystemClock.elapsedRealtime()
+    }
+
+    /**
+     * Updates the values which are cheap to load from the database.
+     *
+     * @param distanceMeters The distance travelled in meters, as updated by the capturing.
+     * @param pictures The number of pictures captured.
+     */
+    @Synchronized
+    fun update(distanceMeters: Double, pictures: Int) {
+        this.distanceMeters = distanceMeters
+        this.pictures = pictures
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.coverage
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Path
+import android.util.Log
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.WebMercator
+import de.cyface.persistence.model.Track
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import kotlin.math.abs
+import kotlin.math.floor
+
+/**
+ * Rasterizes the locations of all captured measurements into a disk-cached tile pyramid which is
+ * shown by the [CoverageTileProvider].
+ *
+ * The trips are drawn with a translucent color, so that roads which were captured more often
+ * appear more intense. As drawing is additive, a new measurement is drawn onto the existing
+ * tiles it touches, and all other tiles stay untouched. Only when a rasterized measurement was
+ * deleted, the pyramid is rebuilt.
+ *
+ * The ids of the rasterized measurements are stored in an index file next to the tiles. The id
+ * of the measurement whose tiles are currently written is stored as well, so that tiles which
+ * were only partially updated, e.g. when the app was killed, are detected and rebuilt.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 4.3.0
+ * @property directory The directory the tile pyramid is stored in.
+ */
+class CoverageRasterizer(private val directory: File) {
+
+    /**
+     * Ensures only one update writes to the [directory] at a time.
+     */
+    private val mutex = Mutex()
+
+    /**
+     * The paint used to draw the trips.
+     */
+    private val paint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = Paint.Style.STROKE
+        strokeWidth = STROKE_WIDTH
+        strokeCap = Paint.Cap.ROUND
+        strokeJoin = Paint.Join.ROUND
+        color = Color.argb(TRIP_ALPHA, 230, 74, 25)
+    }
+
+    /**
+     * Draws all measurements which are not yet part of the tile pyramid.
+     *
+     * @param measurementIds The ids of all measurements to show.
+     * @param loadTracks Loads the cleaned tracks of a measurement.
+     * @return `true` if tiles were changed and the overlay needs to be refreshed.
+     */
+    suspend fun update(
+        measurementIds: Collection<Long>,
+        loadTracks: suspend (Long) -> List<Track>
+    ): Boolean = mutex.withLock {
+        withContext(Dispatchers.IO) {
+            val index = readIndex()
+            var changed = false
+            if (index.pending != null || !measurementIds.containsAll(index.rasterized)) {
+                Log.d(TAG, "Coverage: rebuilding tile pyramid")
+                directory.deleteRecursively()
+                index.rasterized.clear()
+                changed = true
+            }
+
+            val added = measurementIds.filter { it !in index.rasterized }
+            added.forEach { id ->
+                // Loading and projecting may be cancelled, as no tile is touched before
+                val tracks = loadTracks(id)
+                val paths = (MIN_ZOOM..MAX_ZOOM).associateWith { paths(tracks, it) }
+                // Once the first tile is written, all tiles must be, or the pyramid is rebuilt
+                withContext(NonCancellable) {
+                    writeIndex(index.rasterized, id)
+                    val tiles = draw(paths)
+                    index.rasterized.add(id)
+                    writeIndex(index.rasterized, null)
+                    Log.d(TAG, "Coverage: rasterized measurement $id into $tiles tiles")
+                }
+                changed = true
+            }
+            changed
+        }
+    }
+
+    /**
+     * Draws the paths of one measurement onto the tiles they touch.
+     *
+     * @param paths The paths by tile as returned by [paths], by zoom level.
+     * @return The number of tiles updated.
+     */
+    private fun draw(paths: Map<Int, Map<Long, Path>>): Int {
+        var count = 0
+        paths.forEach { (zoom, tiles) ->
+            tiles.forEach { (key, path) ->
+                draw(tileFile(directory, zoom, (key shr 32).toInt(), key.toInt()), path)
+            }
+            count += tiles.size
+        }
+        return count
+    }
+
+    /**
+     * Projects the tracks to the pixels of [zoom] and splits them by the tiles they touch.
+     *
+     * Each segment is only added to the tiles along the segment, i.e. per tile column only to
+     * the rows the segment passes within that column. Segments crossing the antimeridian are
+     * drawn the short way, across the edge of the world.
+     *
+     * @return The paths relative to the tile origin by the tile's `x shl 32 or y`.
+     */
+    private fun paths(tracks: List<Track>, zoom: Int): Map<Long, Path> {
+        val paths = HashMap<Long, Path>()
+        val worldSize = WebMercator.worldSize(zoom.toDouble())
+        val margin = STROKE_WIDTH.toDouble()
+        tracks.forEach { track ->
+            val locations = track.geoLocations.filterNotNull()
+            for (i in 1 until locations.size) {
+                val x0 = WebMercator.x(locations[i - 1].lon, worldSize)
+                val y0 = WebMercator.y(locations[i - 1].lat, worldSize)
+                var x1 = WebMercator.x(locations[i].lon, worldSize)
+                val y1 = WebMercator.y(locations[i].lat, worldSize)
+                if (abs(x1 - x0) > worldSize / 2) x1 += if (x1 > x0) -worldSize else worldSize
+
+                val minX = minOf(x0, x1)
+                val maxX = maxOf(x0, x1)
+                val firstColumn = floor((minX - margin) / TILE_SIZE).toInt()
+                val lastColumn = floor((maxX + margin) / TILE_SIZE).toInt()
+                for (column in firstColumn..lastColumn) {
+                    // The part of the segment within the column, widened by the stroke
+                    val originX = column.toDouble() * TILE_SIZE
+                    val left = maxOf(originX - margin, minX)
+                    val right = minOf(originX + TILE_SIZE + margin, maxX)
+                    val yLeft = if (x1 == x0) y0 else y0 + (left - x0) * (y1 - y0) / (x1 - x0)
+                    val yRight = if (x1 == x0) y1 else y0 + (right - x0) * (y1 - y0) / (x1 - x0)
+                    val firstRow = tile(minOf(yLeft, yRight) - margin, zoom)
+                    val lastRow = tile(maxOf(yLeft, yRight) + margin, zoom)
+                    val tileX = Math.floorMod(column, 1 shl zoom)
+                    for (tileY in firstRow..lastRow) {
+                        val key = tileX.toLong() shl 32 or tileY.toLong()
+                        val path = paths.getOrPut(key) { Path() }
+                        val originY = tileY.toDouble() * TILE_SIZE
+                        path.moveTo((x0 - originX).toFloat(), (y0 - originY).toFloat())
+                        path.lineTo((x1 - originX).toFloat(), (y1 - originY).toFloat())
+                    }
+                }
+            }
+        }
+        return paths
+    }
+
+    /**
+     * Draws the [path] onto the tile stored in [file], creating the tile if necessary.
+     *
+     * The tile is replaced atomically, so the [CoverageTileProvider] never reads a partial file.
+     */
+    private fun draw(file: File, path: Path) {
+        val options = BitmapFactory.Options().apply { inMutable = true }
+        val bitmap = (if (file.exists()) BitmapFactory.decodeFile(file.path, options) else null)
+            ?: Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888)
+        Canvas(bitmap).drawPath(path, paint)
+
+        file.parentFile!!.mkdirs()
+        val temporary = File(file.parentFile, "${file.name}.tmp")
+        temporary.outputStream().use { bitmap.compress(Bitmap.CompressFormat.PNG, 100, it) }
+        bitmap.recycle()
+        if (!temporary.renameTo(file)) throw IOException("Failed to replace tile $file")
+    }
+
+    /**
+     * Reads the index of the rasterized measurements.
+     *
+     * @return The index, empty if there is none or it was written in another format version.
+     */
+    private fun readIndex(): Index {
+        val file = File(directory, INDEX_FILE_NAME)
+        try {
+            DataInputStream(BufferedInputStream(file.inputStream())).use { input ->
+                val version = input.readInt()
+                if (version != FORMAT_VERSION) throw IOException("Unsupported version: $version")
+                val pending = input.readLong()
+                val rasterized = HashSet<Long>()
+                repeat(input.readInt()) { rasterized.add(input.readLong()) }
+                return Index(rasterized, if (pending == NO_PENDING) null else pending)
+            }
+        } catch (e: FileNotFoundException) {
+            return Index(HashSet(), null)
+        } catch (e: IOException) {
+            Log.w(TAG, "Coverage: failed to read index, rebuilding", e)
+            // Tiles of unknown measurements may exist, so the pyramid must be rebuilt
+            return Index(HashSet(), NO_PENDING)
+        }
+    }
+
+    /**
+     * Atomically replaces the index of the rasterized measurements.
+     *
+     * @param rasterized The ids of the measurements which are fully drawn.
+     * @param pending The id of the measurement which is being drawn, or `null`.
+     */
+    private fun writeIndex(rasterized: Set<Long>, pending: Long?) {
+        directory.mkdirs()
+        val file = File(directory, INDEX_FILE_NAME)
+        val temporary = File(directory, "$INDEX_FILE_NAME.tmp")
+        DataOutputStream(BufferedOutputStream(temporary.outputStream())).use { output ->
+            output.writeInt(FORMAT_VERSION)
+            output.writeLong(pending ?: NO_PENDING)
+            output.writeInt(rasterized.size)
+            rasterized.forEach { output.writeLong(it) }
+        }
+        if (!temporary.renameTo(file)) throw IOException("Failed to replace index $file")
+    }
+
+    /**
+     * The content of the index file.
+     *
+     * @property rasterized The ids of the measurements which are fully drawn.
+     * @property pending The id of the measurement which was being drawn, or `null`.
+     */
+    private class Index(val rasterized: MutableSet<Long>, val pending: Long?)
+
+    companion object {
+        /**
+         * The lowest zoom level rendered, on which a whole country fits on a phone screen.
+         */
+        const val MIN_ZOOM = 5
+
+        /**
+         * The highest zoom level rendered. Higher zoom levels are scaled from this level.
+         */
+        const val MAX_ZOOM = 17
+
+        /**
+         * The width and height of the tiles in pixels.
+         */
+        const val TILE_SIZE = WebMercator.TILE_SIZE
+
+        /**
+         * The name of the folder in the app's files directory the tiles are stored in.
+         */
+        const val FOLDER_NAME = "coverage"
+
+        /**
+         * The width of the lines the trips are drawn with, in pixels.
+         */
+        private const val STROKE_WIDTH = 3f
+
+        /**
+         * The opacity of a single trip, so that about four trips on a road are fully opaque.
+         */
+        private const val TRIP_ALPHA = 96
+
+        /**
+         * The name of the index file.
+         */
+        private const val INDEX_FILE_NAME = "index.bin"
+
+        /**
+         * The value stored in the index when no measurement is being drawn.
+         */
+        private const val NO_PENDING = -1L
+
+        /**
+         * The version of the index and tile format, increase this when the rendering changes.
+         */
+        private const val FORMAT_VERSION = 1
+
+        /**
+         * @return The file the tile is stored in.
+         */
+        fun tileFile(directory: File, zoom: Int, x: Int, y: Int): File {
+            return File(directory, "$zoom/$x/$y.png")
+        }
+
+        /**
+         * @return The row of the tile containing the pixel coordinate, clamped to the world.
+         */
+        private fun tile(pixel: Double, zoom: Int): Int {
+            return floor(pixel / TILE_SIZE).toInt().coerceIn(0, (1 shl zoom) - 1)
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.coverage
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import com.google.android.gms.maps.model.Tile
+import com.google.android.gms.maps.model.TileProvider
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileNotFoundException
+
+/**
+ * Serves the coverage tiles rendered by the [CoverageRasterizer] to a `TileOverlay`.
+ *
+ * The tiles are read from disk as they are, so the overlay opens instantly independent of the
+ * number of captured trips. Zoom levels above [CoverageRasterizer.MAX_ZOOM] are cropped and
+ * scaled from the tiles of the highest rendered zoom level.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property directory The directory the tile pyramid is stored in.
+ */
+class CoverageTileProvider(private val directory: File) : TileProvider {
+
+    override fun getTile(x: Int, y: Int, zoom: Int): Tile {
+        if (zoom < CoverageRasterizer.MIN_ZOOM) return TileProvider.NO_TILE
+        if (zoom <= CoverageRasterizer.MAX_ZOOM) {
+            return try {
+                val file = CoverageRasterizer.tileFile(directory, zoom, x, y)
+                Tile(CoverageRasterizer.TILE_SIZE, CoverageRasterizer.TILE_SIZE, file.readBytes())
+            } catch (e: FileNotFoundException) {
+                // No trip passes this tile
+                TileProvider.NO_TILE
+            }
+        }
+        return overZoomed(x, y, zoom)
+    }
+
+    /**
+     * Crops the part covering the requested tile from the tile at [CoverageRasterizer.MAX_ZOOM].
+     */
+    private fun overZoomed(x: Int, y: Int, zoom: Int): Tile {
+        val shift = zoom - CoverageRasterizer.MAX_ZOOM
+        val size = CoverageRasterizer.TILE_SIZE
+        val span = size shr shift
+        if (span == 0) return TileProvider.NO_TILE
+
+        val file = CoverageRasterizer.tileFile(
+            directory, CoverageRasterizer.MAX_ZOOM, x shr shift, y shr shift
+        )
+        val parent = BitmapFactory.decodeFile(file.path) ?: return TileProvider.NO_TILE
+        val left = (x and ((1 shl shift) - 1)) * span
+        val top = (y and ((1 shl shift) - 1)) * span
+        val crop = Bitmap.createBitmap(parent, left, top, span, span)
+        val scaled = Bitmap.createScaledBitmap(crop, size, size, true)
+        val output = ByteArrayOutputStream()
+        scaled.compress(Bitmap.CompressFormat.PNG, 100, output)
+        return Tile(size, size, output.toByteArray())
+    }
+}
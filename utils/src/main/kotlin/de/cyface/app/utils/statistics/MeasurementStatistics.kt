@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.statistics
+
+import kotlin.math.max
+
+/**
+ * Aggregates the statistics of finished measurements.
+ *
+ * This class only depends on the Kotlin standard library, so that it can be benchmarked on a
+ * plain JVM, see the `benchmark` module.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class MeasurementStatistics {
+
+    /**
+     * The number of measurements added.
+     */
+    var count = 0
+        private set
+
+    /**
+     * The sum of the distances in kilometers.
+     */
+    var totalDistanceKm = 0.0
+        private set
+
+    /**
+     * The longest distance in kilometers.
+     */
+    var maxDistanceKm = 0.0
+        private set
+
+    /**
+     * The sum of the durations in milliseconds.
+     */
+    var totalDurationMillis = 0L
+        private set
+
+    /**
+     * The longest duration in milliseconds.
+     */
+    var maxDurationMillis = 0L
+        private set
+
+    /**
+     * The sum of the ascends in meters.
+     */
+    var totalAscend = 0.0
+        private set
+
+    /**
+     * The highest ascend in meters.
+     */
+    var maxAscend = 0.0
+        private set
+
+    /**
+     * Adds the statistics of one measurement.
+     *
+     * @param distanceMeters The distance of the measurement in meters.
+     * @param durationMillis The duration of the measurement in milliseconds.
+     * @param ascend The ascend of the measurement in meters, or `null` if it's unknown.
+     */
+    fun add(distanceMeters: Double, durationMillis: Long, ascend: Double?) {
+        val distanceKm = distanceMeters / 1000.0
+        count++
+        totalDistanceKm += distanceKm
+        maxDistanceKm = max(distanceKm, maxDistanceKm)
+        totalDurationMillis += durationMillis
+        maxDurationMillis = max(durationMillis, maxDurationMillis)
+        if (ascend != null) {
+            totalAscend += ascend
+            maxAscend = max(ascend, maxAscend)
+        }
+    }
+
+    /**
+     * @return The average distance in kilometers, `0` if no measurement was added.
+     */
+    fun averageDistanceKm() = if (count > 0) totalDistanceKm / count else 0.0
+
+    /**
+     * @return The average duration in milliseconds, `0` if no measurement was added.
+     */
+    fun averageDurationMillis() = if (count > 0) totalDurationMillis / count else 0L
+
+    /**
+     * @return The average ascend in meters, `0` if no measurement was added.
+     */
+    fun averageAscend() = if (count > 0) totalAscend / count else 0.0
+
+    /**
+     * @return The CO2 emission avoided on the [totalDistanceKm] in kilograms.
+     */
+    fun totalCo2Kg() = co2Kg(totalDistanceKm)
+
+    /**
+     * @return The CO2 emission avoided on the [maxDistanceKm] in kilograms.
+     */
+    fun maxCo2Kg() = co2Kg(maxDistanceKm)
+
+    /**
+     * @return The average CO2 emission avoided per measurement in kilograms.
+     */
+    fun averageCo2Kg() = if (count > 0) totalCo2Kg() / count else 0.0
+
+    companion object {
+        /**
+         * The CO2 emission of a car in grams per kilometer.
+         */
+        private const val CO2_GRAMS_PER_KM = 95
+
+        /**
+         * @return The CO2 emission of a car on the [distanceKm] in kilograms.
+         */
+        private fun co2Kg(distanceKm: Double) = distanceKm * CO2_GRAMS_PER_KM / 1000
+    }
+}
@@ -32,13 +32,12 @@ import de.cyface.persistence.DefaultPersistenceLayer
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import kotlin.math.max
 
 /**
  * The [Fragment] which shows the statistics of all finished measurements.
  *
  * @author Armin Schnabel
- * @version 1.0.0
+ * @version 1.1.0
  * @since 3.2.0
  */
 class StatisticsFragment : Fragment() {
@@ -83,61 +82,44 @@ class StatisticsFragment : Fragment() {
         val root: View = binding.root
 
         lifecycleScope.launch {
-            val measurements =
-                withContext(Dispatchers.IO) { persistence.loadCompletedMeasurements() }
-
-            // Statistics calculation
-            var totalDistanceKm = 0.0
-            var maxDistanceKm = 0.0
-            var totalDurationMillis = 0L
-            var maxDurationMillis = 0L
-            var maxAscend = 0.0
-            var totalAscend = 0.0
-            measurements.forEach { measurement ->
-                val distanceKm = measurement.distance.div(1000.0)
-                val durationMillis =
-                    withContext(Dispatchers.IO) { persistence.loadDuration(measurement.id) }
-                totalDistanceKm += distanceKm
-                maxDistanceKm = max(distanceKm, maxDistanceKm)
-                maxDurationMillis = max(durationMillis, maxDurationMillis)
-                totalDurationMillis += durationMillis
-                val ascend = withContext(Dispatchers.IO) { persistence.loadAscend(measurement.id) }
-                totalAscend += if (ascend !== null) ascend else 0.0
-                maxAscend = if (ascend !== null) max(ascend, maxAscend) else maxAscend
+            val statistics = withContext(Dispatchers.IO) {
+                val statistics = MeasurementStatistics()
+                persistence.loadCompletedMeasurements().forEach { measurement ->
+                    statistics.add(
+                        measurement.distance,
+                        persistence.loadDuration(measurement.id),
+                        persistence.loadAscend(measurement.id)
+                    )
+                }
+                statistics
             }
 
             // UI binding
-            val averageDistanceKm =
-                if (measurements.isNotEmpty()) totalDistanceKm / measurements.size else 0.0
             binding.distanceView.text =
                 getString(
                     de.cyface.app.utils.R.string.distanceKmWithAverage,
-                    maxDistanceKm,
-                    averageDistanceKm
+                    statistics.maxDistanceKm,
+                    statistics.averageDistanceKm()
                 )
-            val averageDuration =
-                if (measurements.isNotEmpty()) duration(totalDurationMillis / measurements.size) else 0L
             binding.durationView.text =
                 getString(
                     de.cyface.app.utils.R.string.durationWithAverage,
-                    duration(maxDurationMillis),
-                    averageDuration
+                    duration(statistics.maxDurationMillis),
+                    duration(statistics.averageDurationMillis())
                 )
-            val averageAscend =
-                if (measurements.isNotEmpty()) totalAscend / measurements.size else 0.0
             binding.ascendView.text =
                 getString(
                     de.cyface.app.utils.R.string.ascendMetersWithAverage,
-                    maxAscend,
-                    averageAscend
+                    statistics.maxAscend,
+                    statistics.averageAscend()
                 )
-            val totalCo2Kg = totalDistanceKm.times(95).div(1000)
-            val maxCo2Kg = maxDistanceKm.times(95).div(1000)
-            val averageCo2Kg =
-                if (measurements.isNotEmpty()) totalCo2Kg / measurements.size else 0.0
-            binding.totalCo2View.text = getString(de.cyface.app.utils.R.string.co2kg, totalCo2Kg)
-            binding.maxCo2View.text =
-                getString(de.cyface.app.utils.R.string.co2kgWithAverage, maxCo2Kg, averageCo2Kg)
+            binding.totalCo2View.text =
+                getString(de.cyface.app.utils.R.string.co2kg, statistics.totalCo2Kg())
+            binding.maxCo2View.text = getString(
+                de.cyface.app.utils.R.string.co2kgWithAverage,
+                statistics.maxCo2Kg(),
+                statistics.averageCo2Kg()
+            )
         }
 
         return root
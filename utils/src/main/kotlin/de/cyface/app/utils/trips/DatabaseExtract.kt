@@ -0,0 +1,169 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteException
+import android.util.Log
+import de.cyface.app.utils.SharedConstants.TAG
+import java.io.File
+
+/**
+ * Copies the rows of selected measurements from a database into a new database file, or takes a
+ * consistent snapshot of the whole database.
+ *
+ * The schema is taken from the source database, so this works for all databases in the database
+ * folder without knowing their tables:
+ *
+ * - tables with a `measurementId` column only keep the rows of the selected measurements,
+ * - the `Measurement` table only keeps the selected measurements, by its primary key,
+ * - all other tables, e.g. the device identifier or Room's schema hash, are copied completely.
+ *
+ * Both read the source in a single read transaction on a separate connection. In WAL mode this
+ * reads a consistent state, including the changes not yet merged from the `-wal` file, without
+ * blocking the app's writes.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.1
+ * @since 4.3.0
+ */
+internal object DatabaseExtract {
+
+    /**
+     * The column which links rows to their measurement.
+     */
+    private const val MEASUREMENT_ID_COLUMN = "measurementId"
+
+    /**
+     * The name of the table which contains the measurements.
+     */
+    private const val MEASUREMENT_TABLE = "Measurement"
+
+    /**
+     * Writes a compact snapshot of the [source] database into the [target] file.
+     *
+     * Uses `VACUUM INTO`, which writes the snapshot without free pages. SQLite versions before
+     * 3.27, i.e. before Android 11, don't support it, in which case all rows are copied instead.
+     *
+     * @param source The database to copy. It may be opened by the app at the same time.
+     * @param target The file to write the snapshot to. An existing file is replaced.
+     */
+    fun snapshot(source: File, target: File) {
+        SQLiteDatabase.deleteDatabase(target)
+        try {
+            SQLiteDatabase.openDatabase(source.path, null, SQLiteDatabase.OPEN_READONLY).use {
+                it.execSQL("VACUUM INTO ?", arrayOf(target.path))
+            }
+        } catch (e: SQLiteException) {
+            Log.d(TAG, "VACUUM INTO failed, copying ${source.name} row by row", e)
+            extract(source, target, null)
+        }
+        val wal = File(source.path + "-wal")
+        Log.d(
+            TAG,
+            "Snapshot of ${source.name}: ${source.length() + wal.length()} B -> ${target.length()} B"
+        )
+    }
+
+    /**
+     * Writes the extract of the [source] database into the [target] file.
+     *
+     * @param source The database to copy from. It may be opened by the app at the same time.
+     * @param target The file to write the extract to. An existing file is replaced.
+     * @param measurementIds The ids of the measurements to keep, or `null` to keep all rows.
+     */
+    fun extract(source: File, target: File, measurementIds: Collection<Long>?) {
+        SQLiteDatabase.deleteDatabase(target)
+        val ids = measurementIds?.joinToString(",")
+        val database = SQLiteDatabase.openOrCreateDatabase(target, null)
+        var completed = false
+        try {
+            database.execSQL("ATTACH DATABASE ? AS source", arrayOf(source.path))
+            // `beginTransaction()` starts an exclusive transaction, which would also lock the
+            // attached live database against the app's writes. A savepoint outside of a
+            // transaction starts a deferred one instead, so `source` is only read from a snapshot
+            // and only the private `main` database is locked for writing.
+            database.execSQL("SAVEPOINT extract")
+            val tables = mutableListOf<Pair<String, String>>()
+            val indices = mutableListOf<String>()
+            database.rawQuery(
+                "SELECT type, name, sql FROM source.sqlite_master WHERE sql IS NOT NULL " +
+                        "AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'",
+                null
+            ).use {
+                while (it.moveToNext()) {
+                    when (it.getString(0)) {
+                        "table" -> tables.add(it.getString(1) to it.getString(2))
+                        "index" -> indices.add(it.getString(2))
+                    }
+                }
+            }
+            tables.forEach { (table, sql) ->
+                database.execSQL(sql)
+                database.execSQL(
+                    "INSERT INTO main.\"$table\" SELECT * FROM source.\"$table\"" +
+                            if (ids == null) "" else filter(database, table, ids)
+                )
+            }
+            // Created after the inserts, which is faster than updating them row by row
+            indices.forEach { database.execSQL(it) }
+            database.execSQL("PRAGMA main.user_version = ${version(database)}")
+            database.execSQL("RELEASE extract")
+            database.execSQL("DETACH DATABASE source")
+            completed = true
+        } finally {
+            // Closing the connection rolls back an unfinished transaction
+            database.close()
+            if (!completed) SQLiteDatabase.deleteDatabase(target)
+        }
+        Log.d(TAG, "Extracted ${measurementIds?.size ?: "all"} measurements from ${source.name}")
+    }
+
+    /**
+     * @return The `WHERE` clause which selects the rows of the measurements with the [ids] from
+     * the [table], or an empty string if the table is not linked to measurements.
+     */
+    private fun filter(database: SQLiteDatabase, table: String, ids: String): String {
+        var primaryKey: String? = null
+        database.rawQuery("PRAGMA source.table_info(\"$table\")", null).use {
+            val name = it.getColumnIndexOrThrow("name")
+            val pk = it.getColumnIndexOrThrow("pk")
+            while (it.moveToNext()) {
+                if (it.getString(name) == MEASUREMENT_ID_COLUMN) {
+                    return " WHERE \"$MEASUREMENT_ID_COLUMN\" IN ($ids)"
+                }
+                if (it.getInt(pk) == 1) primaryKey = it.getString(name)
+            }
+        }
+        return if (table.equals(MEASUREMENT_TABLE, ignoreCase = true) && primaryKey != null) {
+            " WHERE \"$primaryKey\" IN ($ids)"
+        } else {
+            ""
+        }
+    }
+
+    /**
+     * @return The schema version of the source database, which Room checks when opening it.
+     */
+    private fun version(database: SQLiteDatabase): Int {
+        return database.rawQuery("PRAGMA source.user_version", null).use {
+            if (it.moveToFirst()) it.getInt(0) else 0
+        }
+    }
+}
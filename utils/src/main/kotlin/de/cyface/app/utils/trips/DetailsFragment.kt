@@ -18,7 +18,9 @@
  */
 package de.cyface.app.utils.trips
 
+import android.graphics.Color
 import android.os.Bundle
+import android.util.Log
 import android.view.LayoutInflater
 import android.view.View
 import android.view.View.GONE
@@ -30,6 +32,7 @@ import com.github.mikephil.charting.data.Entry
 import com.github.mikephil.charting.data.LineData
 import com.github.mikephil.charting.data.LineDataSet
 import de.cyface.app.utils.R
+import de.cyface.app.utils.SharedConstants.TAG
 import de.cyface.app.utils.ServiceProvider
 import de.cyface.app.utils.databinding.FragmentTripsDetailsBinding
 import de.cyface.datacapturing.CyfaceDataCapturingService
@@ -39,6 +42,7 @@ import de.cyface.persistence.strategy.DefaultLocationCleaning
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import java.io.IOException
 import kotlin.math.round
 import kotlin.math.roundToInt
 
@@ -46,7 +50,7 @@ import kotlin.math.roundToInt
  * The [Fragment] which shows details about a single, finished measurement.
  *
  * @author Armin Schnabel
- * @version 1.0.1
+ * @version 1.1.1
  * @since 3.2.0
  */
 class DetailsFragment : Fragment() {
@@ -196,11 +200,128 @@ class DetailsFragment : Fragment() {
             }
         }
 
+        showSensorData(measurementId)
+        showRoughness(measurementId)
+
         return root
     }
 
+    /**
+     * Shows the min/max envelope of the measurement's sensor data.
+     *
+     * The data is streamed from the memory-mapped files, see [Point3DEnvelope]. The loading is
+     * cancelled when the view is destroyed, so leaving the view while a large file is decimated
+     * does not keep it busy.
+     *
+     * @param measurementId The id of the measurement to show the data for.
+     */
+    private fun showSensorData(measurementId: Long) {
+        val charts = mapOf(
+            Point3DEnvelope.Type.ACCELERATIONS to binding.accelerationsChart,
+            Point3DEnvelope.Type.ROTATIONS to binding.rotationsChart,
+            Point3DEnvelope.Type.DIRECTIONS to binding.directionsChart,
+        )
+        val columns = resources.displayMetrics.widthPixels
+        viewLifecycleOwner.lifecycleScope.launch {
+            var hasData = false
+            charts.forEach { (type, chart) ->
+                val envelope = try {
+                    Point3DEnvelope.load(requireContext(), measurementId, type, columns)
+                } catch (e: IOException) {
+                    // The data is shown for the other types, so this is not reported to the user
+                    Log.w(TAG, "Failed to load ${type.name.lowercase()} of $measurementId", e)
+                    null
+                }
+                if (envelope == null) {
+                    chart.visibility = GONE
+                } else {
+                    hasData = true
+                    showEnvelope(chart, envelope, getString(type.label))
+                }
+            }
+            if (!hasData) {
+                binding.sensorDataTitle.text = getString(R.string.sensor_data_no_data)
+            }
+        }
+    }
+
+    /**
+     * Shows the median and 90th percentile of the road roughness of the measurement's segments.
+     *
+     * The roughness is computed once per measurement and then loaded, see [RoughnessIndex].
+     *
+     * @param measurementId The id of the measurement to show the roughness for.
+     */
+    private fun showRoughness(measurementId: Long) {
+        viewLifecycleOwner.lifecycleScope.launch {
+            val segments = try {
+                RoughnessIndex.loadOrCompute(requireContext(), measurementId) {
+                    persistence.loadTracks(measurementId, DefaultLocationCleaning())
+                }
+            } catch (e: IOException) {
+                Log.w(TAG, "Failed to load roughness of measurement $measurementId", e)
+                emptyList()
+            }
+            val roughness = segments.map { it.roughness }.sorted()
+            binding.roughnessView.text = if (roughness.isEmpty()) "" else getString(
+                R.string.roughness_value,
+                RoughnessIndex.percentile(roughness, 50),
+                RoughnessIndex.percentile(roughness, 90)
+            )
+        }
+    }
+
+    /**
+     * Plots an envelope as one data set per axis, which alternates between the min and max value
+     * of each column.
+     *
+     * @param chart The chart to plot the envelope in.
+     * @param envelope The envelope to plot.
+     * @param label The label of the values, including the unit.
+     */
+    private fun showEnvelope(chart: LineChart, envelope: Point3DEnvelope, label: String) {
+        val textColor = resources.getColor(R.color.text)
+        val datasets = (0 until AXIS_COLORS.size).map { axis ->
+            val entries = ArrayList<Entry>(2 * envelope.columns)
+            for (column in 0 until envelope.columns) {
+                entries.add(Entry(column.toFloat(), envelope.min[axis][column]))
+                entries.add(Entry(column.toFloat(), envelope.max[axis][column]))
+            }
+            LineDataSet(entries, AXIS_LABELS[axis]).apply {
+                color = AXIS_COLORS[axis]
+                setDrawCircles(false)
+                setDrawValues(false)
+                lineWidth = 0.5f
+            }
+        }
+        chart.data = LineData(datasets)
+        chart.axisLeft.textColor = textColor
+        chart.axisRight.textColor = textColor
+        chart.description.text = label
+        chart.description.textColor = textColor
+        chart.legend.textColor = textColor
+        chart.xAxis.isEnabled = false
+        chart.invalidate() // ensures chart is re-rendered else "no chart data" until touch
+    }
+
     override fun onDestroyView() {
         super.onDestroyView()
         _binding = null
     }
+
+    companion object {
+        /**
+         * The labels of the x, y and z axis of the sensor data.
+         */
+        private val AXIS_LABELS = listOf("x", "y", "z")
+
+        /**
+         * The colors of the x, y and z axis of the sensor data.
+         */
+        private val AXIS_COLORS = listOf(
+            Color.rgb(0xD3, 0x2F, 0x2F),
+            Color.rgb(0x38, 0x8E, 0x3C),
+            Color.rgb(0x19, 0x76, 0xD2),
+        )
+    }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.content.Context
+import android.net.Uri
+import android.util.AtomicFile
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.util.UUID
+
+/**
+ * The persisted state of an export, which survives the process, so that [ExportWorker] can
+ * resume an interrupted export.
+ *
+ * It holds the selection, which can be too large for the work's input `Data`, the [Exporter.Part]s
+ * which were written completely and the archive which is currently written. That archive is
+ * incomplete if the process dies, so it's removed when the export is resumed.
+ *
+ * The state is written atomically, so that it's either the old or the new state after a crash.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property measurementIds The ids of the measurements to export or `null` to export all data.
+ * @property written The names of the parts which were written completely.
+ * @property pending The archive which is currently written, or `null` if there is none.
+ */
+internal class ExportState private constructor(
+    private val file: AtomicFile,
+    val measurementIds: List<Long>?,
+    written: Set<String>,
+    pending: Uri?,
+) {
+    var written: Set<String> = written
+        private set
+
+    var pending: Uri? = pending
+        private set
+
+    /**
+     * Records the archive which is about to be written.
+     *
+     * @param archive The location of the archive.
+     */
+    @Throws(IOException::class)
+    fun startPart(archive: Uri) {
+        pending = archive
+        save()
+    }
+
+    /**
+     * Records that a part was written completely.
+     *
+     * @param part The name of the part.
+     */
+    @Throws(IOException::class)
+    fun finishPart(part: String) {
+        written = written + part
+        pending = null
+        save()
+    }
+
+    /**
+     * Records that the [pending] archive was removed.
+     */
+    @Throws(IOException::class)
+    fun clearPending() {
+        pending = null
+        save()
+    }
+
+    /**
+     * Removes the state, e.g. when the export finished, failed or was cancelled.
+     */
+    fun delete() {
+        file.delete()
+    }
+
+    /**
+     * Writes the state to its file.
+     */
+    @Throws(IOException::class)
+    private fun save() {
+        val json = JSONObject()
+        measurementIds?.let { ids -> json.put(KEY_MEASUREMENT_IDS, JSONArray(ids)) }
+        json.put(KEY_WRITTEN, JSONArray(written))
+        pending?.let { json.put(KEY_PENDING, it.toString()) }
+
+        val stream = file.startWrite()
+        try {
+            stream.write(json.toString().toByteArray(Charsets.UTF_8))
+            file.finishWrite(stream)
+        } catch (e: IOException) {
+            file.failWrite(stream)
+            throw e
+        }
+    }
+
+    companion object {
+        /**
+         * The folder in the app's files which contains the state of interrupted exports.
+         */
+        private const val FOLDER = "export"
+
+        /**
+         * The key of [measurementIds] in the state file, absent to export all data.
+         */
+        private const val KEY_MEASUREMENT_IDS = "measurementIds"
+
+        /**
+         * The key of [written] in the state file.
+         */
+        private const val KEY_WRITTEN = "written"
+
+        /**
+         * The key of [pending] in the state file, absent if no archive is written.
+         */
+        private const val KEY_PENDING = "pending"
+
+        /**
+         * Creates the state of a new export.
+         *
+         * @param context The context to find the app's files with.
+         * @param exportIdentifier The identifier of the export, see [Exporter].
+         * @param measurementIds The ids of the measurements to export or `null` to export all data.
+         * @return The state.
+         * @throws IOException if the state could not be written.
+         */
+        @Throws(IOException::class)
+        fun create(
+            context: Context,
+            exportIdentifier: UUID,
+            measurementIds: Collection<Long>?
+        ): ExportState {
+            val folder = File(context.filesDir, FOLDER)
+            if (!folder.exists() && !folder.mkdirs()) throw IOException("Failed to create $folder")
+            return ExportState(
+                AtomicFile(File(folder, "$exportIdentifier")),
+                measurementIds?.toList(),
+                emptySet(),
+                null
+            ).also { it.save() }
+        }
+
+        /**
+         * Loads the state of an export.
+         *
+         * @param context The context to find the app's files with.
+         * @param exportIdentifier The identifier of the export, see [Exporter].
+         * @return The state, or `null` if there is none or it's unreadable.
+         */
+        fun load(context: Context, exportIdentifier: UUID): ExportState? {
+            val file = AtomicFile(File(File(context.filesDir, FOLDER), "$exportIdentifier"))
+            return try {
+                val json = JSONObject(String(file.readFully(), Charsets.UTF_8))
+                val ids = json.optJSONArray(KEY_MEASUREMENT_IDS)?.let { array ->
+                    List(array.length()) { array.getLong(it) }
+                }
+                val written = json.getJSONArray(KEY_WRITTEN).let { array ->
+                    List(array.length()) { array.getString(it) }.toSet()
+                }
+                val pending = json.optString(KEY_PENDING).takeIf { it.isNotEmpty() }?.let {
+                    Uri.parse(it)
+                }
+                ExportState(file, ids, written, pending)
+            } catch (e: FileNotFoundException) {
+                null
+            } catch (e: JSONException) {
+                null
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.app.Notification
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.content.Context
+import android.content.pm.ServiceInfo
+import android.os.SystemClock
+import android.text.format.DateUtils
+import android.text.format.Formatter
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.ForegroundInfo
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import de.cyface.app.utils.R
+import de.cyface.app.utils.SharedConstants.EXPORT_PROGRESS_NOTIFICATION_ID
+import de.cyface.app.utils.SharedConstants.EXPORT_RESULT_NOTIFICATION_ID
+import de.cyface.app.utils.SharedConstants.NOTIFICATION_CHANNEL_ID_EXPORT
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.trips.export.Downloads
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.job
+import kotlinx.coroutines.withContext
+import java.io.IOException
+import java.util.UUID
+
+/**
+ * Runs an [Exporter] as foreground work, so that large exports survive navigation, screen-off
+ * and the app being closed.
+ *
+ * The progress is shown in a notification with the bytes exported, an estimate of the remaining
+ * time and an action to cancel the export. The selection, each [Exporter.Part] which was written
+ * completely and the archive which is written are recorded in the [ExportState]. When the process
+ * dies, WorkManager restarts the work, which then removes the incomplete archive and continues with
+ * the first part not yet written.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.1
+ * @since 4.3.0
+ */
+class ExportWorker(
+    context: Context,
+    parameters: WorkerParameters,
+) : CoroutineWorker(context, parameters) {
+
+    override suspend fun doWork(): Result {
+        val exportIdentifier = UUID.fromString(inputData.getString(KEY_EXPORT_IDENTIFIER))
+        return withContext(Dispatchers.IO) {
+            val state = ExportState.load(applicationContext, exportIdentifier)
+            if (state == null) {
+                Log.e(TAG, "Export $exportIdentifier has no state, it was finished or removed")
+                return@withContext Result.failure()
+            }
+            try {
+                val exporter = Exporter(
+                    applicationContext,
+                    state.measurementIds,
+                    exportIdentifier,
+                    inputData.getLong(KEY_TIMESTAMP, System.currentTimeMillis())
+                )
+                val written = state.written
+
+                val parts = exporter.parts()
+                val progress = Progress(
+                    parts.sumOf { it.bytes },
+                    parts.filter { it.name in written }.sumOf { it.bytes }
+                )
+                if (written.isNotEmpty()) Log.d(TAG, "Resuming export after ${written.size} parts")
+                setForeground(foregroundInfo(progress))
+
+                val job = coroutineContext.job
+                var bytesTransferred = 0L
+                state.pending?.let {
+                    // Only written partially when the process died, the part is written again
+                    Log.d(TAG, "Removing incomplete archive $it")
+                    Downloads.delete(applicationContext, it)
+                    state.clearPending()
+                }
+                parts.filter { it.name !in written }.forEach { part ->
+                    val partStart = progress.bytesDone
+                    bytesTransferred += exporter.export(part, state::startPart) { bytes ->
+                        job.ensureActive()
+                        if (progress.add(bytes)) {
+                            notify(EXPORT_PROGRESS_NOTIFICATION_ID, progressNotification(progress))
+                        }
+                    }
+                    // Continue with the estimated size, the snapshots can be smaller
+                    progress.bytesDone = partStart + part.bytes
+                    state.finishPart(part.name)
+                }
+                state.delete()
+                notify(
+                    EXPORT_RESULT_NOTIFICATION_ID,
+                    resultNotification(
+                        R.string.notification_title_export_finished,
+                        applicationContext.getString(R.string.toast_export) + " " +
+                                Formatter.formatShortFileSize(applicationContext, bytesTransferred)
+                    )
+                )
+                Result.success()
+            } catch (e: CancellationException) {
+                // Only a cancelled export is not resumed, the system also stops work, e.g. on quota
+                if (stopReason == WorkInfo.STOP_REASON_CANCELLED_BY_APP) state.delete()
+                throw e
+            } catch (e: Exception) {
+                // E.g. `IOException`, `SecurityException` or `SQLiteException`, the state would
+                // otherwise stay and each attempt fail again without informing the user
+                failed(state, e)
+            }
+        }
+    }
+
+    /**
+     * Removes the state of a failed export and informs the user.
+     *
+     * @param state The state of the export.
+     * @param e The reason of the failure.
+     * @return The result of the work.
+     */
+    private fun failed(state: ExportState, e: Exception): Result {
+        Log.e(TAG, "Export failed", e)
+        state.delete()
+        notify(
+            EXPORT_RESULT_NOTIFICATION_ID,
+            resultNotification(R.string.notification_title_export_failed, e.message)
+        )
+        return Result.failure()
+    }
+
+    /**
+     * @return The information to run this work in the foreground with the progress notification.
+     */
+    private fun foregroundInfo(progress: Progress): ForegroundInfo {
+        return ForegroundInfo(
+            EXPORT_PROGRESS_NOTIFICATION_ID,
+            progressNotification(progress),
+            ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC
+        )
+    }
+
+    /**
+     * @return The notification which shows the export's progress and allows to cancel it.
+     */
+    private fun progressNotification(progress: Progress): Notification {
+        createChannelIfNotExists()
+        val context = applicationContext
+        val remaining = progress.remainingSeconds()
+        val text = context.getString(
+            R.string.notification_text_export_progress,
+            Formatter.formatShortFileSize(context, progress.bytesDone),
+            Formatter.formatShortFileSize(context, progress.bytesTotal),
+            if (remaining == null) "…" else DateUtils.formatElapsedTime(remaining)
+        )
+        val cancel = WorkManager.getInstance(context).createCancelPendingIntent(id)
+        return NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID_EXPORT)
+            .setContentTitle(context.getString(R.string.export_data))
+            .setContentText(text)
+            .setSmallIcon(android.R.drawable.stat_sys_download)
+            .setProgress(PROGRESS_MAX, progress.permille(), false)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .addAction(
+                android.R.drawable.ic_menu_close_clear_cancel,
+                context.getString(R.string.notification_action_cancel_export),
+                cancel
+            )
+            .build()
+    }
+
+    /**
+     * @return The notification which shows the result of the export.
+     */
+    private fun resultNotification(title: Int, text: String?): Notification {
+        createChannelIfNotExists()
+        return NotificationCompat.Builder(applicationContext, NOTIFICATION_CHANNEL_ID_EXPORT)
+            .setContentTitle(applicationContext.getString(title))
+            .setContentText(text)
+            .setSmallIcon(android.R.drawable.stat_sys_download_done)
+            .setAutoCancel(true)
+            .build()
+    }
+
+    /**
+     * Shows or updates a notification. It's not shown if the user denied notifications.
+     */
+    private fun notify(notificationId: Int, notification: Notification) {
+        val manager = applicationContext
+            .getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        manager.notify(notificationId, notification)
+    }
+
+    /**
+     * Creates the notification channel for exports, if it does not exist yet.
+     */
+    private fun createChannelIfNotExists() {
+        val manager = applicationContext
+            .getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        if (manager.getNotificationChannel(NOTIFICATION_CHANNEL_ID_EXPORT) == null) {
+            val channel = NotificationChannel(
+                NOTIFICATION_CHANNEL_ID_EXPORT,
+                applicationContext.getString(R.string.notification_channel_name_export),
+                NotificationManager.IMPORTANCE_LOW
+            )
+            channel.description =
+                applicationContext.getString(R.string.notification_channel_description_export)
+            manager.createNotificationChannel(channel)
+        }
+    }
+
+    /**
+     * Tracks the bytes exported and estimates the remaining time from the rate of this run.
+     *
+     * @property bytesTotal The estimated number of bytes to export.
+     * @property bytesDone The number of bytes exported, including those of earlier runs.
+     */
+    private class Progress(val bytesTotal: Long, var bytesDone: Long) {
+        private val startBytes = bytesDone
+        private val startMillis = SystemClock.elapsedRealtime()
+        private var notifiedMillis = startMillis
+
+        /**
+         * @param bytes The number of bytes exported since the last call.
+         * @return `true` if the notification should be updated, which is at most once per second.
+         */
+        fun add(bytes: Long): Boolean {
+            bytesDone += bytes
+            val now = SystemClock.elapsedRealtime()
+            if (now - notifiedMillis < UPDATE_INTERVAL_MILLIS) return false
+            notifiedMillis = now
+            return true
+        }
+
+        /**
+         * @return The progress in thousandths, capped as [bytesTotal] is an estimate.
+         */
+        fun permille(): Int {
+            if (bytesTotal <= 0) return 0
+            return minOf(PROGRESS_MAX.toLong(), bytesDone * PROGRESS_MAX / bytesTotal).toInt()
+        }
+
+        /**
+         * @return The estimated remaining seconds, or `null` if nothing was exported in this run.
+         */
+        fun remainingSeconds(): Long? {
+            val bytes = bytesDone - startBytes
+            val millis = SystemClock.elapsedRealtime() - startMillis
+            if (bytes <= 0 || millis <= 0) return null
+            return maxOf(0L, bytesTotal - bytesDone) * millis / bytes / 1000
+        }
+    }
+
+    companion object {
+        /**
+         * The name of the unique work, so that exports run one after another.
+         */
+        private const val WORK_NAME = "export"
+
+        /**
+         * The input key of the identifier of the export, see [Exporter].
+         */
+        private const val KEY_EXPORT_IDENTIFIER = "export_identifier"
+
+        /**
+         * The input key of the time the export was started, see [Exporter].
+         */
+        private const val KEY_TIMESTAMP = "timestamp"
+
+        /**
+         * The maximum of the progress bar.
+         */
+        private const val PROGRESS_MAX = 1000
+
+        /**
+         * The minimal interval between two progress notification updates.
+         */
+        private const val UPDATE_INTERVAL_MILLIS = 1_000L
+
+        /**
+         * Starts an export in the background, after the exports which are already running.
+         *
+         * The selection is stored in the [ExportState] instead of the work's input, which is
+         * limited in size.
+         *
+         * @param context The context to access the [WorkManager] with.
+         * @param measurementIds The ids of the measurements to export or `null` to export all data.
+         * @throws IOException if the state of the export could not be written.
+         */
+        @Throws(IOException::class)
+        fun enqueue(context: Context, measurementIds: Collection<Long>?) {
+            val exportIdentifier = UUID.randomUUID()
+            ExportState.create(context, exportIdentifier, measurementIds)
+            val input = workDataOf(
+                KEY_EXPORT_IDENTIFIER to exportIdentifier.toString(),
+                KEY_TIMESTAMP to System.currentTimeMillis(),
+            )
+            val request = OneTimeWorkRequestBuilder<ExportWorker>().setInputData(input).build()
+            WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request)
+        }
+    }
+}
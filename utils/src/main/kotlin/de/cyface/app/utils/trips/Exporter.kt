@@ -1,5 +1,5 @@
 /*
- * Copyright 2017-2023 Cyface GmbH
+ * Copyright 2025 Cyface GmbH
  *
  * This file is part of the Cyface App for Android.
  *
@@ -18,295 +18,342 @@
  */
 package de.cyface.app.utils.trips
 
-import android.content.ContentValues
 import android.content.Context
-import android.os.Build
-import android.os.Environment
-import android.os.Handler
-import android.os.Looper
+import android.database.sqlite.SQLiteException
+import android.net.Uri
 import android.provider.MediaStore
 import android.util.Log
-import android.widget.Toast
-import de.cyface.app.utils.R
 import de.cyface.app.utils.SharedConstants
 import de.cyface.app.utils.SharedConstants.DATABASE_NAME
+import de.cyface.app.utils.trips.export.Downloads
+import de.cyface.persistence.DefaultPersistenceBehaviour
+import de.cyface.persistence.DefaultPersistenceLayer
 import de.cyface.persistence.io.DefaultFileIOHandler
 import de.cyface.persistence.serialization.Point3DFile
-import de.cyface.utils.Utils
-import java.io.BufferedInputStream
-import java.io.BufferedOutputStream
+import de.cyface.utils.StorageHelper
+import kotlinx.coroutines.runBlocking
 import java.io.File
-import java.io.FileInputStream
-import java.io.FileOutputStream
 import java.io.IOException
 import java.io.OutputStream
-import java.lang.ref.WeakReference
 import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
 import java.util.UUID
-import java.util.zip.ZipEntry
-import java.util.zip.ZipOutputStream
-import kotlin.math.ln
-import kotlin.math.pow
 
 /**
- * Async task which exports the measurement data without the image data.
+ * Exports the measurement data, either all data without the image data or the data of selected
+ * measurements including their attachments.
+ *
+ * The export of all data is split into [Part]s which are written into separate archives, one per
+ * sensor data folder and one for the databases, so that an interrupted export can be resumed with
+ * the first part which was not written, see [ExportWorker]. The export of selected measurements is
+ * a single part, i.e. a single archive.
+ *
+ * *Attention:* The parts are exported by long running, blocking code, execute this asynchronously!
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 2.0.1
+ * @version 3.1.1
  * @since 1.0.0
+ * @property context The `Context` to get the paths.
+ * @property measurementIds The ids of the measurements to export or `null` to export all data.
+ * @property exportIdentifier A globally unique identifier used to group files created by one
+ * export and to distinguish those files from different exports made in the same minute,
+ * potentially on a different device.
+ * @param timestamp The time the export was started, which is part of the file names.
  */
-class Exporter(context: Context) {
-    private val contextReference: WeakReference<Context> = WeakReference(context)
-    private var targetPathTimestamp: String = "_" + SimpleDateFormat("yyyy-MM-dd_H-m", Locale.GERMANY).format(Date())
+class Exporter(
+    private val context: Context,
+    private val measurementIds: Collection<Long>?,
+    private val exportIdentifier: UUID,
+    timestamp: Long,
+) {
+    private val targetPathTimestamp: String =
+        "_" + SimpleDateFormat("yyyy-MM-dd_H-m", Locale.GERMANY).format(Date(timestamp))
 
     /**
-     * Copies the persistence layer files to a compressed archive into `Downloads` folder.
-     *
-     * *Attention:*  This long running, blocking code, execute this asynchronously!
+     * @return The parts of this export, in the order to export them in.
      */
-    fun export() {
-        // To be able to show a UI dialog/message
-        if (Looper.myLooper() == null) {
-            Looper.prepare()
+    fun parts(): List<Part> {
+        // The size of the snapshots is not known in advance, the live files are an upper bound
+        val databases = databases(databaseFolder()).sumOf {
+            it.length() + File(it.path + "-wal").length()
         }
-        val context = contextReference.get()!!
-
-        runOnUiThread {
-            Toast.makeText(context, context.getString(R.string.export_data), Toast.LENGTH_SHORT)
-                .show()
+        if (measurementIds != null) {
+            val files = measurementIds.sumOf { measurementId ->
+                measurementFiles(measurementId).values.sumOf { it.length() }
+            }
+            return listOf(Part(MEASUREMENTS_PART, files + databases))
         }
-
         val fileAccess = DefaultFileIOHandler()
-        val accelerations =
-            fileAccess.getFolderPath(context, Point3DFile.ACCELERATIONS_FOLDER_NAME)
-        val rotations = fileAccess.getFolderPath(context, Point3DFile.ROTATIONS_FOLDER_NAME)
-        val directions = fileAccess.getFolderPath(context, Point3DFile.DIRECTIONS_FOLDER_NAME)
-        var bytesTransferred = 0L
-        val exportIdentifier = UUID.randomUUID()
-        try {
-            bytesTransferred += exportFolder(context, accelerations, exportIdentifier)
-            bytesTransferred += exportFolder(context, rotations, exportIdentifier)
-            bytesTransferred += exportFolder(context, directions, exportIdentifier)
-
-            // Export all database files - including "wal" which contains recent unmerged database changes
-            val parent = context.getDatabasePath(DATABASE_NAME).parentFile!!
-            bytesTransferred += exportFolder(
-                context, parent,
-                exportIdentifier
-            )
-        } catch (e: IOException) {
-            throw IllegalStateException(e)
+        val folders = FOLDER_NAMES.map { name ->
+            val folder = fileAccess.getFolderPath(context, name)
+            Part(name, folder.walkTopDown().filter { it.isFile }.sumOf { it.length() })
         }
+        return folders + Part(DATABASES_PART, databases)
+    }
 
-        // Only show success note if app is still active
-        try {
-            runOnUiThread {
-                val text = context.getString(R.string.toast_export) + " " + humanReadableByteCount(
-                    bytesTransferred
-                )
-                Toast.makeText(context, text, Toast.LENGTH_LONG).show()
-            }
-        } catch (e: NullPointerException) {
-            Log.d(SharedConstants.TAG, "Dialog (export successful) not shown: Activity not active.", e)
-            // We don't need to report this to Sentry as it's ok if this happens (app is closed)
+    /**
+     * Zips and exports one part of this export to the `Environment#DIRECTORY_DOWNLOADS`.
+     *
+     * @param part The part to export.
+     * @param onCreated Called with the location of the archive before it's written, see
+     * [Downloads.write].
+     * @param progress Called with the number of bytes read whenever a chunk was zipped. May throw
+     * to cancel the export, in which case the partially written archive is removed.
+     * @return the number of bytes read
+     */
+    @Throws(IOException::class)
+    fun export(part: Part, onCreated: (Uri) -> Unit, progress: (Long) -> Unit): Long {
+        return when (part.name) {
+            DATABASES_PART -> exportDatabases(onCreated, progress)
+            MEASUREMENTS_PART -> exportMeasurements(measurementIds!!, onCreated, progress)
+            else -> exportFolder(
+                DefaultFileIOHandler().getFolderPath(context, part.name),
+                onCreated,
+                progress
+            )
         }
     }
 
     /**
-     * This method helps to access the UI thread from a handler thread.
+     * Exports the database snapshots.
+     *
+     * @param onCreated Called with the location of the archive before it's written.
+     * @param progress Called with the number of bytes read whenever a chunk was zipped.
+     * @return the number of bytes read
      */
-    private fun runOnUiThread(runnable: Runnable) {
-        Handler(Looper.getMainLooper()).post(runnable)
+    @Throws(IOException::class)
+    private fun exportDatabases(onCreated: (Uri) -> Unit, progress: (Long) -> Unit): Long {
+        val folder = databaseFolder()
+        return withSnapshots(null) { files ->
+            if (files.isEmpty()) {
+                0L
+            } else {
+                Log.d(SharedConstants.TAG, "Zipping snapshots of folder " + folder.name)
+                write(folder.name, onCreated) { FolderZipper.zipFiles(files, it, progress) }
+            }
+        }
     }
 
     /**
-     * Zips and exports a folder to the `Environment#DIRECTORY_DOWNLOADS`.
+     * Exports the sensor data, the attachments and a database extract of the selected
+     * measurements into one archive, so that the export scales with the selection instead of
+     * with all data on the device.
      *
-     * @param context the `Context` to get the paths
-     * @param sourceFolder the folder to export
-     * @param exportIdentifier A globally unique identifier used to group files created by one export call and to
-     * distinguish those files from different export calls made in the same minute potentially on a different
-     * device.
+     * @param measurementIds The ids of the measurements to export.
+     * @param onCreated Called with the location of the archive before it's written.
+     * @param progress Called with the number of bytes read whenever a chunk was zipped.
      * @return the number of bytes read
      */
     @Throws(IOException::class)
-    private fun exportFolder(
-        context: Context, sourceFolder: File,
-        exportIdentifier: UUID
+    private fun exportMeasurements(
+        measurementIds: Collection<Long>,
+        onCreated: (Uri) -> Unit,
+        progress: (Long) -> Unit
     ): Long {
-        val files = sourceFolder.listFiles()
-        requireNotNull(files)
-        if (!sourceFolder.exists() || files.isEmpty()) {
-            return 0L
+        val files = LinkedHashMap<String, File>()
+        measurementIds.forEach { files.putAll(measurementFiles(it)) }
+        val folder = databaseFolder()
+        return withSnapshots(measurementIds) { extracts ->
+            extracts.forEach { (name, file) -> files["${folder.name}/$name"] = file }
+            Log.d(
+                SharedConstants.TAG,
+                "Zipping ${files.size} files of ${measurementIds.size} measurements"
+            )
+            write(MEASUREMENTS_PART, onCreated) { FolderZipper.zipFiles(files, it, progress) }
         }
+    }
 
-        // Export zipped folder
-        var targetOutputStream: OutputStream? = null
-        return try {
-            // TODO This should not use a random UUID but would be better to use the device id. Unfortunately we require
-            // a different architecture to get access to that identifier.
-            val fileName =
-                ("cyface-" + sourceFolder.name + targetPathTimestamp + "_" + exportIdentifier
-                        + ".zip")
-            val bytesTransferred: Long
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                val resolver = contextReference.get()!!.contentResolver
-                val contentValues = ContentValues()
-                contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName)
-                contentValues.put(
-                    MediaStore.MediaColumns.MIME_TYPE,
-                    MediaStore.Downloads.CONTENT_TYPE
-                )
-                contentValues.put(
-                    MediaStore.MediaColumns.RELATIVE_PATH,
-                    Environment.DIRECTORY_DOWNLOADS
-                )
-                val outputUri =
-                    resolver.insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, contentValues)
-                requireNotNull(outputUri)
-                targetOutputStream = resolver.openOutputStream(outputUri)
-                bytesTransferred = zipFolder(sourceFolder, targetOutputStream)
-            } else {
-                // Create target directory
-                val downloadDirectory = Environment
-                    .getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
-                if (!downloadDirectory.exists()) {
-                    check(downloadDirectory.mkdirs()) { "Failed to create target directory" }
+    /**
+     * Writes the database snapshots or, if measurements are selected, the database extracts and
+     * passes them to [export].
+     *
+     * The live files are not copied, as the app may write to them during the export and as the
+     * `-wal` file is often larger than the data. The snapshots are written to temporary files and
+     * are deleted after the [export].
+     *
+     * If a database cannot be read, the export fails instead of falling back to the live file, as
+     * that would contain the measurements which were not selected and miss its `-wal` file.
+     *
+     * @param measurementIds The ids of the measurements to extract or `null` for snapshots.
+     * @param export Exports the snapshots, by their database name.
+     * @return The result of [export].
+     * @throws IOException If the snapshot of a database could not be written.
+     */
+    @Throws(IOException::class)
+    private fun <T> withSnapshots(
+        measurementIds: Collection<Long>?,
+        export: (Map<String, File>) -> T
+    ): T {
+        val snapshots = File(context.cacheDir, "export_$exportIdentifier")
+        snapshots.deleteRecursively() // Left over if the process died during an earlier attempt
+        check(snapshots.mkdirs()) { "Failed to create snapshot directory" }
+        try {
+            val files = LinkedHashMap<String, File>()
+            databases(databaseFolder()).forEach { database ->
+                val snapshot = File(snapshots, database.name)
+                try {
+                    if (measurementIds == null) {
+                        DatabaseExtract.snapshot(database, snapshot)
+                    } else {
+                        DatabaseExtract.extract(database, snapshot, measurementIds)
+                    }
+                    files[database.name] = snapshot
+                } catch (e: SQLiteException) {
+                    throw IOException("Failed to snapshot database ${database.name}", e)
                 }
-                check(downloadDirectory.canWrite()) { "Download target not writable" }
-                val target = File(downloadDirectory, fileName)
-                targetOutputStream = FileOutputStream(target)
-                bytesTransferred = zipFolder(sourceFolder, targetOutputStream)
-                Utils.informMediaScanner(context, target)
             }
-            bytesTransferred
-        } catch (e: IOException) {
-            throw IllegalStateException(e)
+            return export(files)
         } finally {
-            targetOutputStream?.close()
+            snapshots.deleteRecursively()
+        }
+    }
+
+    /**
+     * @param measurementId The id of the measurement to collect the files for.
+     * @return The sensor data and attachment files by their path inside the archive.
+     */
+    private fun measurementFiles(measurementId: Long): Map<String, File> {
+        val files = LinkedHashMap<String, File>()
+        Point3DEnvelope.Type.entries.forEach { type ->
+            val file = Point3DFileReader.file(context, measurementId, type)
+            if (file.exists()) files["${type.folderName}/${file.name}"] = file
+        }
+        attachments(measurementId).forEach { (path, file) ->
+            files["$ATTACHMENTS_FOLDER/$path"] = file
         }
+        return files
     }
 
     /**
-     * Zips a folder and it's sub elements.
+     * @return The folder which contains the databases.
+     */
+    private fun databaseFolder(): File {
+        return context.getDatabasePath(DATABASE_NAME).parentFile!!
+    }
+
+    /**
+     * @param folder The database folder.
+     * @return The databases in the folder, without their `-wal`, `-shm` and `-journal` files.
+     */
+    private fun databases(folder: File): List<File> {
+        return folder.listFiles { file ->
+            file.isFile && DATABASE_SUFFIXES.none { file.name.endsWith(it) }
+        }?.toList() ?: emptyList()
+    }
+
+    /**
+     * Collects the attachments of a measurement: the files registered in the database and the
+     * pictures captured into the measurement's picture folder.
      *
-     * @param source the folder to be zipped.
-     * @param targetOutputStream the target stream to write the zip file to
-     * @return the number of bytes read
-     * @throws IOException when it fails to zip the folder
+     * @param measurementId The id of the measurement to collect the attachments for.
+     * @return The attachment files by their path relative to the picture storage.
      */
-    @Throws(IOException::class)
-    private fun zipFolder(source: File, targetOutputStream: OutputStream?): Long {
-        var bytesTransferred = 0L
-        require(source.exists()) { "Source file does not exit." }
-        require(source.isDirectory) { "Source file is no folder." }
-        ZipOutputStream(BufferedOutputStream(targetOutputStream)).use { outputStream ->
-            val subFolders = source.listFiles()
-            requireNotNull(subFolders)
-            for (file in subFolders) {
-                bytesTransferred += if (file.isDirectory) {
-                    val parent = file.parent
-                    requireNotNull(parent)
-                    zipSubFolder(outputStream, file, parent.length)
-                } else {
-                    zipFile(
-                        file, outputStream,
-                        file.absolutePath.substring(file.absolutePath.lastIndexOf("/"))
-                    )
+    private fun attachments(measurementId: Long): Map<String, File> {
+        val storage = File(StorageHelper.getStoragePathWithFallback(context))
+        val attachments = LinkedHashMap<String, File>()
+        storage.listFiles { file -> file.isDirectory && file.name.endsWith("_$measurementId") }
+            ?.forEach { folder ->
+                folder.walkTopDown().filter { it.isFile }.forEach {
+                    attachments[it.relativeTo(storage).path] = it
                 }
             }
+
+        val persistence = DefaultPersistenceLayer(context, DefaultPersistenceBehaviour())
+        val registered = runBlocking {
+            persistence.attachmentDao!!.loadAllByMeasurementId(measurementId)
+        }
+        registered.map { it.path.toFile() }.filter { it.isFile }.forEach { file ->
+            // Files outside of the picture storage are stored by their measurement
+            val path = if (file.startsWith(storage)) {
+                file.relativeTo(storage).path
+            } else {
+                "$measurementId/${file.name}"
+            }
+            attachments.putIfAbsent(path, file)
         }
-        return bytesTransferred
+        return attachments
     }
 
     /**
-     * Zips a subfolder recursively.
+     * Zips and exports a folder to the `Environment#DIRECTORY_DOWNLOADS`.
      *
-     * @param outputStream The [ZipOutputStream] to write the zipped content to.
-     * @param folder The [File] reference to the subfolder to be zipped.
-     * @param basePathLength The length of the parent folder path.
+     * @param sourceFolder the folder to export
+     * @param onCreated Called with the location of the archive before it's written.
+     * @param progress Called with the number of bytes read whenever a chunk was zipped.
      * @return the number of bytes read
-     * @throws IOException when the subfolder failed to be read or written to the outputStream
      */
     @Throws(IOException::class)
-    private fun zipSubFolder(
-        outputStream: ZipOutputStream,
-        folder: File,
-        basePathLength: Int
+    private fun exportFolder(
+        sourceFolder: File,
+        onCreated: (Uri) -> Unit,
+        progress: (Long) -> Unit
     ): Long {
-        Log.d(SharedConstants.TAG, "Zipping folder " + folder.name)
-        val folderContent = folder.listFiles()
-        requireNotNull(folderContent)
-        var bytesTransferred = 0L
-        for (file in folderContent) {
-            if (file.isDirectory) {
-                bytesTransferred += zipSubFolder(outputStream, file, basePathLength)
-                continue
-            }
-            bytesTransferred += zipFile(file, outputStream, file.path.substring(basePathLength))
+        val files = sourceFolder.listFiles()
+        if (!sourceFolder.exists() || files == null || files.isEmpty()) {
+            return 0L
+        }
+
+        // Export zipped folder
+        Log.d(SharedConstants.TAG, "Zipping folder " + sourceFolder.name)
+        return write(sourceFolder.name, onCreated) {
+            FolderZipper.zipFolder(sourceFolder, it, progress)
         }
-        return bytesTransferred
     }
 
     /**
-     * Zips a single file.
+     * Writes an archive of this export to the `Environment#DIRECTORY_DOWNLOADS`.
      *
-     * @param outputStream The [ZipOutputStream] to write the zipped content to.
-     * @param file The [File] reference to the file to be zipped.
-     * @param relativePath The relative path to the file.
+     * @param name The name of the archive's content.
+     * @param onCreated Called with the location of the archive before it's written.
+     * @param zip Writes the archive to the stream and returns the number of bytes read.
      * @return the number of bytes read
-     * @throws IOException when the subfolder failed to be read or written to the outputStream
      */
     @Throws(IOException::class)
-    private fun zipFile(file: File, outputStream: ZipOutputStream?, relativePath: String): Long {
-        Log.d(SharedConstants.TAG, "Zipping file " + file.name)
-        var inputStream: BufferedInputStream? = null
-        return try {
-            // The size of the buffer to zip the measurement folder.
-            val zipBufferSize = 2048
-            inputStream = BufferedInputStream(FileInputStream(file.path), zipBufferSize)
-            val entry = ZipEntry(relativePath)
-            entry.time = file.lastModified() // keeps modification time after unzipping
-            outputStream!!.putNextEntry(entry)
-            val data = ByteArray(zipBufferSize)
-            var bytesRead: Int
-            var bytesTransferred = 0L
-            while (inputStream.read(data, 0, zipBufferSize).also { bytesRead = it } != -1) {
-                outputStream.write(data, 0, bytesRead)
-                bytesTransferred += bytesRead.toLong()
-            }
-            inputStream.close()
-            bytesTransferred
-        } catch (e: IOException) {
-            outputStream?.close()
-            throw IllegalStateException("Failed to compress file: " + file.path, e)
-        } finally {
-            inputStream?.close()
-        }
+    private fun write(name: String, onCreated: (Uri) -> Unit, zip: (OutputStream) -> Long): Long {
+        // TODO This should not use a random UUID but would be better to use the device id. Unfortunately we require
+        // a different architecture to get access to that identifier.
+        val fileName = "cyface-" + name + targetPathTimestamp + "_" + exportIdentifier + ".zip"
+        return Downloads.write(context, fileName, MediaStore.Downloads.CONTENT_TYPE, onCreated, zip)
     }
 
     /**
-     * Makes the exported size readable to humans.
-     * source: https://stackoverflow.com/a/3758880/5815054
+     * One archive of an export.
      *
-     * @param bytes The number of bytes of the size to format as human readable String
-     * @return a human readable size as String
+     * @property name Identifies the part when the export is resumed.
+     * @property bytes The number of bytes to read, estimated before the part is exported.
      */
-    private fun humanReadableByteCount(bytes: Long): String {
-        val unit = 1000
-        if (bytes < unit) return "$bytes B"
-        val exp = (ln(bytes.toDouble()) / ln(unit.toDouble())).toInt()
+    data class Part(val name: String, val bytes: Long)
 
-        @Suppress("SpellCheckingInspection")
-        val pre = "kMGTPE"[exp - 1].toString() + ""
-        return String.format(
-            Locale.GERMAN,
-            "%.1f %sB",
-            bytes / unit.toDouble().pow(exp.toDouble()),
-            pre
+    companion object {
+        /**
+         * The folders which contain the sensor data of all measurements.
+         */
+        private val FOLDER_NAMES = listOf(
+            Point3DFile.ACCELERATIONS_FOLDER_NAME,
+            Point3DFile.ROTATIONS_FOLDER_NAME,
+            Point3DFile.DIRECTIONS_FOLDER_NAME,
         )
+
+        /**
+         * The name of the [Part] which contains the databases.
+         */
+        private const val DATABASES_PART = "databases"
+
+        /**
+         * The name of the [Part] which contains the files of the selected measurements.
+         */
+        private const val MEASUREMENTS_PART = "measurements"
+
+        /**
+         * The folder in the archive which contains the attachments, e.g. pictures.
+         */
+        private const val ATTACHMENTS_FOLDER = "attachments"
+
+        /**
+         * The suffixes of the files in the database folder which are not databases themselves.
+         */
+        private val DATABASE_SUFFIXES = listOf("-wal", "-shm", "-journal")
     }
 }
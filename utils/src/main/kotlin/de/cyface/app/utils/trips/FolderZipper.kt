@@ -0,0 +1,299 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.util.zip.Deflater
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Zips folders or single files, used by the [Exporter].
+ *
+ * By default, the compression is chosen per file, see [Compression.ADAPTIVE].
+ *
+ * This object only depends on the Java standard library, so that it can be benchmarked on a plain
+ * JVM, see the `benchmark` module.
+ *
+ * @author Armin Schnabel
+ * @author Klemens Muthmann
+ * @version 1.3.1
+ * @since 4.3.0
+ */
+object FolderZipper {
+
+    /**
+     * The size of the buffer to zip the measurement folder.
+     */
+    private const val ZIP_BUFFER_SIZE = 2048
+
+    /**
+     * Zips a folder and it's sub elements.
+     *
+     * @param source the folder to be zipped.
+     * @param targetOutputStream the target stream to write the zip file to
+     * @param progress called with the number of bytes read whenever a chunk was zipped
+     * @param compression how the files are compressed
+     * @return the number of bytes read
+     * @throws IOException when it fails to zip the folder
+     */
+    @Throws(IOException::class)
+    fun zipFolder(
+        source: File,
+        targetOutputStream: OutputStream?,
+        progress: (Long) -> Unit = {},
+        compression: Compression = Compression.ADAPTIVE
+    ): Long {
+        var bytesTransferred = 0L
+        require(source.exists()) { "Source file does not exit." }
+        require(source.isDirectory) { "Source file is no folder." }
+        ZipOutputStream(BufferedOutputStream(targetOutputStream)).use { outputStream ->
+            val subFolders = source.listFiles()
+            requireNotNull(subFolders)
+            for (file in subFolders) {
+                bytesTransferred += if (file.isDirectory) {
+                    val parent = file.parent
+                    requireNotNull(parent)
+                    zipSubFolder(outputStream, file, parent.length, progress, compression)
+                } else {
+                    zipFile(
+                        file, outputStream,
+                        file.absolutePath.substring(file.absolutePath.lastIndexOf("/")),
+                        progress, compression
+                    )
+                }
+            }
+        }
+        return bytesTransferred
+    }
+
+    /**
+     * Zips single files, e.g. the files of selected measurements.
+     *
+     * @param files the files to be zipped, by their path inside the zip file.
+     * @param targetOutputStream the target stream to write the zip file to
+     * @param progress called with the number of bytes read whenever a chunk was zipped
+     * @param compression how the files are compressed
+     * @return the number of bytes read
+     * @throws IOException when it fails to zip the files
+     */
+    @Throws(IOException::class)
+    fun zipFiles(
+        files: Map<String, File>,
+        targetOutputStream: OutputStream?,
+        progress: (Long) -> Unit = {},
+        compression: Compression = Compression.ADAPTIVE
+    ): Long {
+        var bytesTransferred = 0L
+        ZipOutputStream(BufferedOutputStream(targetOutputStream)).use { outputStream ->
+            for ((relativePath, file) in files) {
+                bytesTransferred +=
+                    zipFile(file, outputStream, relativePath, progress, compression)
+            }
+        }
+        return bytesTransferred
+    }
+
+    /**
+     * Zips a subfolder recursively.
+     *
+     * @param outputStream The [ZipOutputStream] to write the zipped content to.
+     * @param folder The [File] reference to the subfolder to be zipped.
+     * @param basePathLength The length of the parent folder path.
+     * @param progress called with the number of bytes read whenever a chunk was zipped
+     * @param compression how the files are compressed
+     * @return the number of bytes read
+     * @throws IOException when the subfolder failed to be read or written to the outputStream
+     */
+    @Throws(IOException::class)
+    private fun zipSubFolder(
+        outputStream: ZipOutputStream,
+        folder: File,
+        basePathLength: Int,
+        progress: (Long) -> Unit,
+        compression: Compression
+    ): Long {
+        val folderContent = folder.listFiles()
+        requireNotNull(folderContent)
+        var bytesTransferred = 0L
+        for (file in folderContent) {
+            if (file.isDirectory) {
+                bytesTransferred +=
+                    zipSubFolder(outputStream, file, basePathLength, progress, compression)
+                continue
+            }
+            val relativePath = file.path.substring(basePathLength)
+            bytesTransferred += zipFile(file, outputStream, relativePath, progress, compression)
+        }
+        return bytesTransferred
+    }
+
+    /**
+     * Zips a single file.
+     *
+     * @param outputStream The [ZipOutputStream] to write the zipped content to.
+     * @param file The [File] reference to the file to be zipped.
+     * @param relativePath The relative path to the file.
+     * @param progress called with the number of bytes read whenever a chunk was zipped
+     * @param compression how the file is compressed
+     * @return the number of bytes read
+     * @throws IOException when the subfolder failed to be read or written to the outputStream
+     */
+    @Throws(IOException::class)
+    private fun zipFile(
+        file: File,
+        outputStream: ZipOutputStream,
+        relativePath: String,
+        progress: (Long) -> Unit,
+        compression: Compression
+    ): Long {
+        return try {
+            val entry = ZipEntry(relativePath)
+            entry.time = file.lastModified() // keeps modification time after unzipping
+            // Incompressible files are deflated with `NO_COMPRESSION` instead of being stored, as
+            // stored entries need their checksum in advance, i.e. the file would be read twice.
+            // This only adds a few bytes per 64 KiB block.
+            entry.method = ZipEntry.DEFLATED
+            outputStream.setLevel(compression.level(file))
+            BufferedInputStream(FileInputStream(file.path), ZIP_BUFFER_SIZE).use { inputStream ->
+                outputStream.putNextEntry(entry)
+                val data = ByteArray(ZIP_BUFFER_SIZE)
+                var bytesRead: Int
+                var bytesTransferred = 0L
+                while (inputStream.read(data).also { bytesRead = it } != -1) {
+                    outputStream.write(data, 0, bytesRead)
+                    bytesTransferred += bytesRead.toLong()
+                    progress(bytesRead.toLong())
+                }
+                bytesTransferred
+            }
+        } catch (e: IOException) {
+            outputStream.close()
+            throw IllegalStateException("Failed to compress file: " + file.path, e)
+        }
+    }
+
+    /**
+     * Deflates the start of a file with the fastest level to estimate how well it compresses.
+     *
+     * @param file The file to sample.
+     * @return the compressed size divided by the sampled size, or `null` if the file is too small
+     * for the estimate to be worth it.
+     */
+    @Throws(IOException::class)
+    internal fun sampleRatio(file: File): Double? {
+        val sample = ByteArray(SAMPLE_SIZE)
+        var sampled = 0
+        FileInputStream(file).use { inputStream ->
+            var bytesRead = 0
+            while (sampled < SAMPLE_SIZE && bytesRead != -1) {
+                bytesRead = inputStream.read(sample, sampled, SAMPLE_SIZE - sampled)
+                if (bytesRead > 0) sampled += bytesRead
+            }
+        }
+        if (sampled < MIN_SAMPLE_SIZE) {
+            return null
+        }
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            deflater.setInput(sample, 0, sampled)
+            deflater.finish()
+            val buffer = ByteArray(ZIP_BUFFER_SIZE)
+            var compressed = 0L
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer)
+            }
+            return compressed.toDouble() / sampled
+        } finally {
+            deflater.end()
+        }
+    }
+
+    /**
+     * How the files are compressed in the zip file.
+     */
+    enum class Compression {
+        /**
+         * Deflates all files with the default level.
+         */
+        DEFAULT {
+            override fun level(file: File) = Deflater.DEFAULT_COMPRESSION
+        },
+
+        /**
+         * Does not compress files which don't compress, like JPEG images, and spends the CPU time
+         * of the default level only on files which compress well, like databases. The remaining
+         * files are deflated with the fastest level, which achieves most of the size reduction.
+         *
+         * The compressibility is decided by the file type or by a [sampleRatio].
+         */
+        ADAPTIVE {
+            override fun level(file: File): Int {
+                if (file.extension.lowercase() in INCOMPRESSIBLE_EXTENSIONS) {
+                    return Deflater.NO_COMPRESSION
+                }
+                val ratio = sampleRatio(file) ?: return Deflater.DEFAULT_COMPRESSION
+                return when {
+                    ratio > STORE_RATIO -> Deflater.NO_COMPRESSION
+                    ratio < DEFAULT_LEVEL_RATIO -> Deflater.DEFAULT_COMPRESSION
+                    else -> Deflater.BEST_SPEED
+                }
+            }
+        };
+
+        /**
+         * @param file The file to be zipped.
+         * @return The deflate level to zip the file with, [Deflater.NO_COMPRESSION] for files which
+         * don't compress.
+         */
+        @Throws(IOException::class)
+        internal abstract fun level(file: File): Int
+    }
+
+    /**
+     * The number of bytes sampled to estimate the compressibility of a file.
+     */
+    private const val SAMPLE_SIZE = 64 * 1024
+
+    /**
+     * Files smaller than this are deflated without sampling, as they take no noticeable time.
+     */
+    private const val MIN_SAMPLE_SIZE = 4 * 1024
+
+    /**
+     * Files which compress to more than this share of their size are not compressed.
+     */
+    private const val STORE_RATIO = 0.9
+
+    /**
+     * Files which compress to less than this share of their size are deflated with the default
+     * level, as the stronger compression still saves a lot of bytes.
+     */
+    private const val DEFAULT_LEVEL_RATIO = 0.5
+
+    /**
+     * The extensions of files which are already compressed.
+     */
+    private val INCOMPRESSIBLE_EXTENSIONS = setOf("jpg", "jpeg", "png", "webp", "mp4", "zip", "gz")
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import kotlin.math.cos
+import kotlin.math.min
+import kotlin.math.sin
+
+/**
+ * A geo fence which is defined by a center location and a radius.
+ *
+ * This class only depends on the Kotlin standard library, so that it can be benchmarked on a plain
+ * JVM, see the `benchmark` module.
+ *
+ * @author Armin Schnabel
+ * @version 2.0.0
+ * @since 3.3.0
+ * @param centerLat The latitude of the center.
+ * @param centerLon The longitude of the center.
+ * @param radiusMeters The radius in meters.
+ */
+data class GeoFence(
+    val centerLat: Double,
+    val centerLon: Double,
+    val radiusMeters: Double
+) {
+    /**
+     * The latitude of the center in radians.
+     */
+    private val centerLatRadians = Math.toRadians(centerLat)
+
+    /**
+     * The cosine of the center latitude, which is the same for all checked locations.
+     */
+    private val cosCenterLat = cos(centerLatRadians)
+
+    /**
+     * The haversine of the central angle which corresponds to the [radiusMeters].
+     *
+     * Comparing with this instead of the distance saves the `atan2` and `sqrt` per location.
+     */
+    private val maxHaversine = sin(min(radiusMeters / EARTH_RADIUS_METERS, Math.PI) / 2)
+        .let { it * it }
+
+    /**
+     * Checks if a given location is within the [GeoFence].
+     *
+     * @param lat The latitude of the location to check.
+     * @param lon The longitude of the location to check.
+     * @return `true` if the location is within.
+     */
+    fun isWithin(lat: Double, lon: Double): Boolean {
+        val latRadians = Math.toRadians(lat)
+        val sinDLat = sin((centerLatRadians - latRadians) / 2)
+        val sinDLon = sin(Math.toRadians(centerLon - lon) / 2)
+        val a = sinDLat * sinDLat + sinDLon * sinDLon * cos(latRadians) * cosCenterLat
+        return a <= maxHaversine
+    }
+
+    companion object {
+        /**
+         * The average earth radius in meters.
+         */
+        private const val EARTH_RADIUS_METERS = 6371000.0
+    }
+}
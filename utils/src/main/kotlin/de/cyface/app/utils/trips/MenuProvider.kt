@@ -33,6 +33,8 @@ import androidx.lifecycle.LifecycleCoroutineScope
 import androidx.recyclerview.selection.MutableSelection
 import de.cyface.app.utils.R
 import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.trips.export.TrackExporter
+import de.cyface.app.utils.trips.export.TrackFormat
 import de.cyface.datacapturing.CyfaceDataCapturingService
 import de.cyface.persistence.DefaultPersistenceBehaviour
 import de.cyface.persistence.DefaultPersistenceLayer
@@ -45,6 +47,7 @@ import de.cyface.utils.settings.AppSettings
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
 import java.io.File
+import java.io.IOException
 import java.lang.ref.WeakReference
 import java.util.Arrays
 
@@ -53,7 +56,7 @@ import java.util.Arrays
  * shown in the action bar at the top right.
  *
  * @author Armin Schnabel
- * @version 2.0.1
+ * @version 2.2.2
  * @since 3.2.0
  */
 class MenuProvider(
@@ -65,9 +68,16 @@ class MenuProvider(
     private val scope: LifecycleCoroutineScope
 ) : androidx.core.view.MenuProvider {
 
+    /**
+     * The format of the track export which waits for the storage permission, or `null` if the
+     * full export waits for it.
+     */
+    private var pendingTrackFormat: TrackFormat? = null
+
     override fun onCreateMenu(menu: Menu, menuInflater: MenuInflater) {
         menuInflater.inflate(R.menu.trips, menu)
-        val showExport = context.get()!!.packageName.equals("de.cyface.app")
+        // DiGuRaL: to export the upload metrics, which are stored in the database folder
+        val showExport = context.get()!!.packageName in listOf("de.cyface.app", "de.cyface.app.digural")
         if (showExport) {
             menu.findItem(R.id.export).isVisible = true
         }
@@ -81,31 +91,23 @@ class MenuProvider(
             }
 
             R.id.export -> {
-                // Permission requirements: https://developer.android.com/training/data-storage
-                val requiresWritePermission = Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
-                if (requiresWritePermission) {
-                    if (ContextCompat.checkSelfPermission(
-                            context.get()!!,
-                            Manifest.permission.WRITE_EXTERNAL_STORAGE
-                        ) != PackageManager.PERMISSION_GRANTED || ContextCompat.checkSelfPermission(
-                            context.get()!!,
-                            Manifest.permission.READ_EXTERNAL_STORAGE
-                        ) != PackageManager.PERMISSION_GRANTED
-                    ) {
+                pendingTrackFormat = null
+                if (hasExportPermission()) export()
+                true
+            }
 
-                        exportPermissionLauncher.launch(
-                            arrayOf(
-                                Manifest.permission.WRITE_EXTERNAL_STORAGE,
-                                Manifest.permission.READ_EXTERNAL_STORAGE
-                            )
-                        )
-                    } else {
-                        scope.launch { Exporter(context.get()!!).export() }
-                    }
-                } else {
-                    scope.launch { Exporter(context.get()!!).export() }
-                }
+            R.id.export_tracks_gpx -> {
+                exportTracks(TrackFormat.GPX)
+                true
+            }
 
+            R.id.export_tracks_geojson -> {
+                exportTracks(TrackFormat.GEOJSON)
+                true
+            }
+
+            R.id.export_tracks_csv -> {
+                exportTracks(TrackFormat.CSV)
                 true
             }
 
@@ -125,6 +127,104 @@ class MenuProvider(
         }
     }
 
+    /**
+     * Continues the export which requested the storage permission, after it was granted.
+     */
+    fun onExportPermissionGranted() {
+        val format = pendingTrackFormat
+        if (format == null) {
+            export()
+        } else {
+            exportTracks(format)
+        }
+    }
+
+    /**
+     * Exports the data of the selected measurements, or all data if none are selected, in the
+     * background. The progress is shown in a notification, see [ExportWorker].
+     */
+    private fun export() {
+        try {
+            ExportWorker.enqueue(context.get()!!, selectedMeasurementIds())
+            Toast.makeText(context.get(), R.string.export_data, Toast.LENGTH_SHORT).show()
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to start the export", e)
+            Toast.makeText(
+                context.get(),
+                R.string.notification_title_export_failed,
+                Toast.LENGTH_LONG
+            ).show()
+        }
+    }
+
+    /**
+     * @return The ids of the selected measurements, oldest first, or `null` if none are selected.
+     */
+    private fun selectedMeasurementIds(): List<Long>? {
+        val selection = adapter.tracker!!.selection
+        return if (selection.isEmpty) null else selection.sorted()
+    }
+
+    /**
+     * Checks if the export may write into the `Downloads` folder and requests the permission if not.
+     *
+     * Permission requirements: https://developer.android.com/training/data-storage
+     *
+     * @return `true` if the export can start right away.
+     */
+    private fun hasExportPermission(): Boolean {
+        val requiresWritePermission = Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+        if (requiresWritePermission && (ContextCompat.checkSelfPermission(
+                context.get()!!,
+                Manifest.permission.WRITE_EXTERNAL_STORAGE
+            ) != PackageManager.PERMISSION_GRANTED || ContextCompat.checkSelfPermission(
+                context.get()!!,
+                Manifest.permission.READ_EXTERNAL_STORAGE
+            ) != PackageManager.PERMISSION_GRANTED)
+        ) {
+            exportPermissionLauncher.launch(
+                arrayOf(
+                    Manifest.permission.WRITE_EXTERNAL_STORAGE,
+                    Manifest.permission.READ_EXTERNAL_STORAGE
+                )
+            )
+            return false
+        }
+        return true
+    }
+
+    /**
+     * Exports the tracks, events and statistics of the selected measurements into `Downloads`.
+     *
+     * @param format The format to export the measurements in.
+     */
+    private fun exportTracks(format: TrackFormat) {
+        if (adapter.tracker!!.selection.isEmpty) {
+            Toast.makeText(
+                context.get(),
+                context.get()!!.getString(R.string.delete_data_non_selected),
+                Toast.LENGTH_LONG
+            ).show()
+            return
+        }
+        pendingTrackFormat = format
+        if (!hasExportPermission()) return
+        pendingTrackFormat = null
+
+        val measurementIds = selectedMeasurementIds()!!
+        Toast.makeText(context.get(), R.string.export_data, Toast.LENGTH_SHORT).show()
+        scope.launch {
+            val text = try {
+                val count = TrackExporter(context.get()!!).export(measurementIds, format)
+                context.get()!!.getString(R.string.toast_export_tracks, count)
+            } catch (e: IOException) {
+                Log.e(TAG, "Failed to export tracks", e)
+                context.get()!!.getString(R.string.export_tracks_failed)
+            }
+            Toast.makeText(context.get(), text, Toast.LENGTH_LONG).show()
+        }
+    }
+
     /*@Deprecated("Deprecated in Java")
     override fun onRequestPermissionsResult(
         requestCode: Int, permissions: Array<String>,
@@ -237,6 +337,7 @@ class MenuProvider(
                             deleteRecursively(context.get()!!, attachmentsFolder)
                         }
                         persistence.delete(measurementId)
+                        RoughnessIndex.delete(context.get()!!, measurementId)
                     }
                     adapter.tracker!!.deselect(measurementId)
                 }
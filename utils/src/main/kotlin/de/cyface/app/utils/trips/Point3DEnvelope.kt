@@ -0,0 +1,226 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.content.Context
+import androidx.annotation.StringRes
+import com.google.protobuf.CodedInputStream
+import de.cyface.app.utils.R
+import de.cyface.persistence.serialization.Point3DFile
+import de.cyface.protos.model.Accelerations
+import de.cyface.protos.model.Directions
+import de.cyface.protos.model.Rotations
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * The min/max envelope of the sensor data of a measurement, decimated to a number of columns.
+ *
+ * Plotting one min and one max value per pixel column preserves the peaks of the signal, which
+ * are lost when just every n-th sample is plotted.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 4.3.0
+ * @property columns The number of columns with data.
+ * @property samples The number of samples the envelope was created from.
+ * @property min The minimum per column of the x, y and z axis.
+ * @property max The maximum per column of the x, y and z axis.
+ */
+class Point3DEnvelope private constructor(
+    val columns: Int,
+    val samples: Long,
+    val min: Array<FloatArray>,
+    val max: Array<FloatArray>,
+) {
+
+    /**
+     * The types of sensor data stored in [Point3DFile]s.
+     *
+     * @property folderName The folder the files are stored in.
+     * @property fileExtension The extension of the files.
+     * @property label The resource of the label of the values, including the unit.
+     * @property parse Parses one batch from the file.
+     */
+    enum class Type(
+        val folderName: String,
+        val fileExtension: String,
+        @StringRes val label: Int,
+        internal val parse: (CodedInputStream) -> Point3DFileReader.Batch,
+    ) {
+        ACCELERATIONS(
+            Point3DFile.ACCELERATIONS_FOLDER_NAME,
+            Point3DFile.ACCELERATIONS_FILE_EXTENSION,
+            R.string.accelerations_label,
+            {
+                val batch = Accelerations.parseFrom(it)
+                Point3DFileReader.Batch(batch.timestampList, batch.xList, batch.yList, batch.zList)
+            }
+        ),
+        ROTATIONS(
+            Point3DFile.ROTATIONS_FOLDER_NAME,
+            Point3DFile.ROTATION_FILE_EXTENSION,
+            R.string.rotations_label,
+            {
+                val batch = Rotations.parseFrom(it)
+                Point3DFileReader.Batch(batch.timestampList, batch.xList, batch.yList, batch.zList)
+            }
+        ),
+        DIRECTIONS(
+            Point3DFile.DIRECTIONS_FOLDER_NAME,
+            Point3DFile.DIRECTION_FILE_EXTENSION,
+            R.string.directions_label,
+            {
+                val batch = Directions.parseFrom(it)
+                Point3DFileReader.Batch(batch.timestampList, batch.xList, batch.yList, batch.zList)
+            }
+        ),
+    }
+
+    /**
+     * Collects the min/max envelope in a single pass without knowing the number of samples.
+     *
+     * Starts with one sample per bucket. When all `2 * columns` buckets are filled, neighbouring
+     * buckets are merged and the number of samples per bucket doubles. The memory used is thus
+     * independent of the number of samples.
+     */
+    private class Decimator(private val columns: Int) {
+        private val capacity = 2 * columns
+        private val mins = Array(AXES) { FloatArray(capacity) }
+        private val maxs = Array(AXES) { FloatArray(capacity) }
+        private var samplesPerBucket = 1L
+        private var samplesInBucket = 0L
+        private var buckets = 0
+        var samples = 0L
+            private set
+
+        fun add(x: Float, y: Float, z: Float) {
+            if (samplesInBucket == 0L) {
+                if (buckets == capacity) merge()
+                set(buckets, x, y, z)
+                buckets++
+            } else {
+                val bucket = buckets - 1
+                update(bucket, 0, x)
+                update(bucket, 1, y)
+                update(bucket, 2, z)
+            }
+            samplesInBucket = (samplesInBucket + 1) % samplesPerBucket
+            samples++
+        }
+
+        fun result(): Point3DEnvelope {
+            // Leaves at most one bucket per column
+            if (buckets > columns) {
+                merge()
+            }
+            return Point3DEnvelope(
+                buckets,
+                samples,
+                Array(AXES) { mins[it].copyOf(buckets) },
+                Array(AXES) { maxs[it].copyOf(buckets) },
+            )
+        }
+
+        private fun set(bucket: Int, x: Float, y: Float, z: Float) {
+            mins[0][bucket] = x; maxs[0][bucket] = x
+            mins[1][bucket] = y; maxs[1][bucket] = y
+            mins[2][bucket] = z; maxs[2][bucket] = z
+        }
+
+        private fun update(bucket: Int, axis: Int, value: Float) {
+            if (value < mins[axis][bucket]) mins[axis][bucket] = value
+            if (value > maxs[axis][bucket]) maxs[axis][bucket] = value
+        }
+
+        /**
+         * Merges each pair of neighbouring buckets.
+         */
+        private fun merge() {
+            val merged = (buckets + 1) / 2
+            for (axis in 0 until AXES) {
+                for (i in 0 until merged) {
+                    val left = 2 * i
+                    val right = minOf(left + 1, buckets - 1)
+                    mins[axis][i] = minOf(mins[axis][left], mins[axis][right])
+                    maxs[axis][i] = maxOf(maxs[axis][left], maxs[axis][right])
+                }
+            }
+            // An incomplete last bucket is merged too, so the next sample starts a new bucket
+            buckets = merged
+            samplesPerBucket *= 2
+            samplesInBucket = 0L
+        }
+    }
+
+    companion object {
+        /**
+         * The number of axes of the data: x, y and z.
+         */
+        private const val AXES = 3
+
+        /**
+         * Loads the envelope of a measurement's sensor data.
+         *
+         * The file is streamed by the [Point3DFileReader], so only the batch which is currently
+         * decoded is on the heap. The loading stops when the calling coroutine is cancelled, e.g.
+         * when the user leaves the view.
+         *
+         * @param context The context to find the file with.
+         * @param measurementId The id of the measurement to load the data for.
+         * @param type The type of data to load.
+         * @param columns The number of columns to decimate the data to, e.g. the width in pixels.
+         * @return The envelope or `null` if there is no data of that type.
+         * @throws java.io.IOException if the file is not a [Point3DFile].
+         */
+        suspend fun load(
+            context: Context,
+            measurementId: Long,
+            type: Type,
+            columns: Int
+        ): Point3DEnvelope? = withContext(Dispatchers.IO) {
+            require(columns > 0)
+            val file = Point3DFileReader.file(context, measurementId, type)
+            if (!file.exists() || file.length() == 0L) return@withContext null
+            load(file, type.parse, columns)
+        }
+
+        /**
+         * Loads the envelope of a [Point3DFile].
+         *
+         * @param file The file to load the data from.
+         * @param parse Parses one batch, see [Type.parse].
+         * @param columns The number of columns to decimate the data to.
+         * @return The envelope or `null` if the file contains no complete batch.
+         * @throws java.io.IOException if the file is not a [Point3DFile].
+         */
+        internal suspend fun load(
+            file: File,
+            parse: (CodedInputStream) -> Point3DFileReader.Batch,
+            columns: Int
+        ): Point3DEnvelope? {
+            val decimator = Decimator(columns)
+            Point3DFileReader.forEachBatch(file, parse) { batch ->
+                Point3DFileReader.decode(batch) { _, x, y, z -> decimator.add(x, y, z) }
+            }
+            return if (decimator.samples == 0L) null else decimator.result()
+        }
+    }
+}
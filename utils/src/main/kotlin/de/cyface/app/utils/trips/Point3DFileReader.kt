@@ -0,0 +1,200 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.content.Context
+import android.util.Log
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.InvalidProtocolBufferException
+import com.google.protobuf.WireFormat
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.persistence.io.DefaultFileIOHandler
+import de.cyface.persistence.serialization.Point3DFile
+import kotlinx.coroutines.ensureActive
+import java.io.File
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Streams the sensor data of a [Point3DFile] without loading the file onto the heap.
+ *
+ * The file is memory-mapped window by window and parsed one batch at a time directly from the
+ * mapped buffer, so only the batch which is currently decoded is on the heap, even for files
+ * which are several GB large.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 4.3.0
+ */
+internal object Point3DFileReader {
+
+    /**
+     * The values are stored as integers in thousandths of their unit.
+     */
+    private const val SCALE = 1_000f
+
+    /**
+     * The size of the parts of the file which are mapped into memory at once.
+     *
+     * Large enough to contain many batches, small enough to not exhaust the address space
+     * on 32-bit devices when the file is several GB large.
+     */
+    private const val WINDOW_BYTES = 16L * 1024 * 1024
+
+    /**
+     * The maximal size of a batch header: the tag and the length of the batch as varints.
+     */
+    private const val MAX_HEADER_BYTES = 10
+
+    /**
+     * @param context The context to find the file with.
+     * @param measurementId The id of the measurement to find the file for.
+     * @param type The type of data stored in the file.
+     * @return The file, which may not exist if no such data was captured.
+     */
+    fun file(context: Context, measurementId: Long, type: Point3DEnvelope.Type): File {
+        return DefaultFileIOHandler().getFilePath(
+            context,
+            measurementId,
+            type.folderName,
+            type.fileExtension
+        )
+    }
+
+    /**
+     * Calls [action] for each batch in a [Point3DFile].
+     *
+     * The file contains a sequence of length-delimited batches, each prefixed with the tag
+     * of field `1` as written by the serializer of the persistence layer. The reading stops when
+     * the calling coroutine is cancelled.
+     *
+     * An incomplete last batch, e.g. when the capturing was killed while writing it, is skipped,
+     * so the complete batches before it are still returned.
+     *
+     * @param file The file to read.
+     * @param parse Parses one batch, see [Point3DEnvelope.Type.parse].
+     * @param action The action to call for each batch.
+     * @throws IOException if the file is not a [Point3DFile].
+     */
+    suspend fun forEachBatch(
+        file: File,
+        parse: (CodedInputStream) -> Batch,
+        action: (Batch) -> Unit
+    ) {
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val size = channel.size()
+            var position = 0L
+            while (position < size) {
+                val windowSize = minOf(WINDOW_BYTES, size - position)
+                val isLastWindow = position + windowSize == size
+                val window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize)
+                // Reads directly from the mapped buffer without copying it onto the heap
+                val input = CodedInputStream.newInstance(window)
+                var consumed = 0
+                while (!input.isAtEnd) {
+                    coroutineContext.ensureActive()
+                    if (!isLastWindow && windowSize - consumed < MAX_HEADER_BYTES) break
+
+                    val offset = position + consumed
+                    // Only the last window can end within a header, see `MAX_HEADER_BYTES`
+                    val length = readHeader(input, file, offset) ?: return truncated(file, offset)
+                    if (input.totalBytesRead + length > windowSize) {
+                        if (isLastWindow) return truncated(file, offset)
+                        // The batch continues in the next window, which starts at this batch
+                        if (consumed == 0) throw IOException("Batch larger than window: $file")
+                        break
+                    }
+                    val limit = input.pushLimit(length)
+                    action(parse(input))
+                    input.popLimit(limit)
+                    consumed = input.totalBytesRead
+                }
+                position += consumed
+            }
+        }
+    }
+
+    /**
+     * Reads the header of a batch.
+     *
+     * @param input The input positioned at the header.
+     * @param file The file which is read, for the error message.
+     * @param offset The position of the header in the file, for the error message.
+     * @return The length of the batch or `null` if the header is incomplete.
+     * @throws IOException if the header is not the one of a batch.
+     */
+    private fun readHeader(input: CodedInputStream, file: File, offset: Long): Int? {
+        return try {
+            val tag = input.readTag()
+            if (WireFormat.getTagFieldNumber(tag) != 1 ||
+                WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED
+            ) {
+                throw IOException("Unexpected tag $tag at $offset in $file")
+            }
+            input.readRawVarint32()
+        } catch (e: InvalidProtocolBufferException) {
+            null
+        }
+    }
+
+    /**
+     * Logs that the last batch of a file is incomplete, which is then skipped.
+     *
+     * @param file The file which is read.
+     * @param offset The position of the incomplete batch in the file.
+     */
+    private fun truncated(file: File, offset: Long) {
+        Log.w(TAG, "Skipping incomplete batch at $offset of ${file.length()} bytes in $file")
+    }
+
+    /**
+     * Decodes the offset/diff-encoded values of a batch: the first value is absolute, the others
+     * are differences to their predecessor.
+     *
+     * @param batch The batch to decode.
+     * @param action Called with the timestamp in milliseconds and the x, y and z values of each
+     * sample, in their unit.
+     */
+    fun decode(batch: Batch, action: (Long, Float, Float, Float) -> Unit) {
+        var timestamp = 0L
+        var x = 0L
+        var y = 0L
+        var z = 0L
+        for (i in batch.x.indices) {
+            timestamp += batch.timestamps[i]
+            x += batch.x[i]
+            y += batch.y[i]
+            z += batch.z[i]
+            action(timestamp, x / SCALE, y / SCALE, z / SCALE)
+        }
+    }
+
+    /**
+     * The values of one batch as stored in the file, i.e. offset/diff-encoded and in thousandths
+     * of their unit.
+     */
+    class Batch(
+        val timestamps: List<Long>,
+        val x: List<Int>,
+        val y: List<Int>,
+        val z: List<Int>,
+    )
+}
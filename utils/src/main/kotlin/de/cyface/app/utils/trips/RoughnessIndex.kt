@@ -0,0 +1,260 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.content.Context
+import android.location.Location
+import android.util.Log
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.persistence.model.Track
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import kotlin.math.sqrt
+
+/**
+ * Computes a road roughness index per segment of a trip from its accelerations.
+ *
+ * The track is split into segments of about [SEGMENT_LENGTH_METERS]. The accelerations are then
+ * streamed once through the [Point3DFileReader] and joined with the segments by their
+ * timestamps. As the device orientation is unknown, the magnitude of the acceleration is used,
+ * from which the slowly changing part (gravity, braking, curves) is removed with an exponential
+ * moving average. The root mean square of the remaining vibration is the roughness.
+ *
+ * The memory used only depends on the number of segments, not on the size of the sensor data.
+ * The results are stored in a compact binary file, so that the raw data is only processed
+ * once per measurement.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.1
+ * @since 4.3.0
+ */
+object RoughnessIndex {
+
+    /**
+     * The length of the segments the roughness is computed for.
+     */
+    private const val SEGMENT_LENGTH_METERS = 50.0
+
+    /**
+     * The weight of a new sample in the moving average which is removed from the magnitude.
+     *
+     * At 100 Hz this averages over about half a second, which keeps the vibrations caused by
+     * the road surface and removes the driving maneuvers.
+     */
+    private const val SMOOTHING = 0.02f
+
+    /**
+     * The folder in the app's files directory the results are stored in.
+     */
+    private const val FOLDER_NAME = "roughness"
+
+    /**
+     * The version of the file format, increase this when the format or algorithm changes.
+     */
+    private const val FORMAT_VERSION = 1
+
+    /**
+     * Loads the roughness segments of a finished measurement and computes them if required.
+     *
+     * @param context The context to find the files with.
+     * @param measurementId The id of the measurement.
+     * @param loadTracks Loads the cleaned tracks of the measurement.
+     * @return The segments, empty if there is no acceleration or location data.
+     * @throws IOException if the accelerations could not be read.
+     */
+    suspend fun loadOrCompute(
+        context: Context,
+        measurementId: Long,
+        loadTracks: suspend () -> List<Track>
+    ): List<RoughnessSegment> = withContext(Dispatchers.IO) {
+        val accelerations =
+            Point3DFileReader.file(context, measurementId, Point3DEnvelope.Type.ACCELERATIONS)
+        if (!accelerations.exists()) return@withContext emptyList()
+
+        val cache = cacheFile(context, measurementId)
+        if (cache.exists() && cache.lastModified() >= accelerations.lastModified()) {
+            try {
+                return@withContext read(cache)
+            } catch (e: IOException) {
+                Log.w(TAG, "Failed to read roughness of measurement $measurementId, recomputing", e)
+            }
+        }
+
+        val segments = compute(accelerations, loadTracks())
+        write(cache, segments)
+        segments
+    }
+
+    /**
+     * Removes the stored roughness segments of a measurement, e.g. when it's deleted.
+     *
+     * @param context The context to find the files with.
+     * @param measurementId The id of the measurement.
+     */
+    fun delete(context: Context, measurementId: Long) {
+        cacheFile(context, measurementId).delete()
+    }
+
+    /**
+     * @return The file the roughness segments of a measurement are stored in.
+     */
+    private fun cacheFile(context: Context, measurementId: Long): File {
+        return File(File(context.filesDir, FOLDER_NAME), "$measurementId.bin")
+    }
+
+    /**
+     * Returns a percentile of values with the nearest-rank method.
+     *
+     * @param sorted The values in ascending order, not empty.
+     * @param percent The percentile, e.g. `50` for the median.
+     * @return The smallest value which is larger than [percent] percent of the values.
+     */
+    fun percentile(sorted: List<Float>, percent: Int): Float {
+        require(sorted.isNotEmpty())
+        require(percent in 0..100)
+        return sorted[(sorted.size * percent / 100).coerceAtMost(sorted.lastIndex)]
+    }
+
+    /**
+     * Computes the roughness segments in a single pass over the accelerations.
+     */
+    private suspend fun compute(accelerations: File, tracks: List<Track>): List<RoughnessSegment> {
+        val bounds = segmentBounds(tracks)
+        if (bounds.isEmpty()) return emptyList()
+
+        val sumOfSquares = DoubleArray(bounds.size)
+        val counts = IntArray(bounds.size)
+        var segment = 0
+        var average = Float.NaN
+        Point3DFileReader.forEachBatch(accelerations, Point3DEnvelope.Type.ACCELERATIONS.parse) {
+            Point3DFileReader.decode(it) { timestamp, x, y, z ->
+                val magnitude = sqrt(x * x + y * y + z * z)
+                average =
+                    if (average.isNaN()) magnitude else average + SMOOTHING * (magnitude - average)
+                // Samples and segments are both ordered by time
+                while (segment < bounds.size && timestamp > bounds[segment].endTime) segment++
+                if (segment < bounds.size && timestamp >= bounds[segment].startTime) {
+                    val vibration = magnitude - average
+                    sumOfSquares[segment] += (vibration * vibration).toDouble()
+                    counts[segment]++
+                }
+            }
+        }
+
+        return bounds.indices.filter { counts[it] > 0 }.map {
+            bounds[it].copy(
+                roughness = sqrt(sumOfSquares[it] / counts[it]).toFloat(),
+                samples = counts[it]
+            )
+        }
+    }
+
+    /**
+     * Splits the tracks into segments of about [SEGMENT_LENGTH_METERS].
+     *
+     * Segments do not span pauses, i.e. they end with the track they belong to.
+     *
+     * @return The segments without roughness, ordered by time.
+     */
+    internal fun segmentBounds(tracks: List<Track>): List<RoughnessSegment> {
+        val segments = mutableListOf<RoughnessSegment>()
+        val distance = FloatArray(1)
+        tracks.forEach { track ->
+            val locations = track.geoLocations.filterNotNull()
+            if (locations.size < 2) return@forEach
+
+            var start = locations.first()
+            var length = 0.0
+            for (i in 1 until locations.size) {
+                val previous = locations[i - 1]
+                val location = locations[i]
+                Location.distanceBetween(
+                    previous.lat, previous.lon, location.lat, location.lon, distance
+                )
+                length += distance[0]
+                if (length >= SEGMENT_LENGTH_METERS || i == locations.lastIndex) {
+                    segments.add(
+                        RoughnessSegment(
+                            start.lat, start.lon, location.lat, location.lon,
+                            start.timestamp, location.timestamp, Float.NaN, 0
+                        )
+                    )
+                    start = location
+                    length = 0.0
+                }
+            }
+        }
+        return segments
+    }
+
+    /**
+     * Writes the segments to a file. Coordinates are stored as `Float`, which is precise to
+     * about a meter, and times relative to the first segment.
+     */
+    private fun write(file: File, segments: List<RoughnessSegment>) {
+        file.parentFile!!.mkdirs()
+        val origin = segments.firstOrNull()?.startTime ?: 0L
+        DataOutputStream(BufferedOutputStream(file.outputStream())).use { output ->
+            output.writeInt(FORMAT_VERSION)
+            output.writeLong(origin)
+            output.writeInt(segments.size)
+            segments.forEach {
+                output.writeFloat(it.startLat.toFloat())
+                output.writeFloat(it.startLon.toFloat())
+                output.writeFloat(it.endLat.toFloat())
+                output.writeFloat(it.endLon.toFloat())
+                output.writeInt((it.startTime - origin).toInt())
+                output.writeInt((it.endTime - it.startTime).toInt())
+                output.writeFloat(it.roughness)
+                output.writeInt(it.samples)
+            }
+        }
+    }
+
+    /**
+     * Reads the segments written by [write].
+     *
+     * @throws IOException if the file is corrupt or was written in another format version.
+     */
+    private fun read(file: File): List<RoughnessSegment> {
+        DataInputStream(BufferedInputStream(file.inputStream())).use { input ->
+            val version = input.readInt()
+            if (version != FORMAT_VERSION) throw IOException("Unsupported version: $version")
+            val origin = input.readLong()
+            return List(input.readInt()) {
+                val startLat = input.readFloat().toDouble()
+                val startLon = input.readFloat().toDouble()
+                val endLat = input.readFloat().toDouble()
+                val endLon = input.readFloat().toDouble()
+                val startTime = origin + input.readInt()
+                val endTime = startTime + input.readInt()
+                RoughnessSegment(
+                    startLat, startLon, endLat, endLon,
+                    startTime, endTime, input.readFloat(), input.readInt()
+                )
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+/**
+ * The road roughness of a part of a trip.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property startLat The latitude of the location the segment starts at.
+ * @property startLon The longitude of the location the segment starts at.
+ * @property endLat The latitude of the location the segment ends at.
+ * @property endLon The longitude of the location the segment ends at.
+ * @property startTime The time the segment starts at in milliseconds since epoch.
+ * @property endTime The time the segment ends at in milliseconds since epoch.
+ * @property roughness The root mean square of the vibration in m/s², see [RoughnessIndex].
+ * @property samples The number of acceleration samples the [roughness] is based on.
+ */
+data class RoughnessSegment(
+    val startLat: Double,
+    val startLon: Double,
+    val endLat: Double,
+    val endLon: Double,
+    val startTime: Long,
+    val endTime: Long,
+    val roughness: Float,
+    val samples: Int,
+)
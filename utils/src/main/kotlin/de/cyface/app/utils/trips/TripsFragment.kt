@@ -24,6 +24,7 @@ import android.net.Uri
 import android.os.Bundle
 import android.os.Handler
 import android.os.Looper
+import android.util.Log
 import android.view.LayoutInflater
 import android.view.View
 import android.view.View.GONE
@@ -42,18 +43,20 @@ import androidx.recyclerview.widget.DividerItemDecoration
 import androidx.recyclerview.widget.LinearLayoutManager
 import de.cyface.app.utils.R
 import de.cyface.app.utils.ServiceProvider
+import de.cyface.app.utils.SharedConstants.TAG
 import de.cyface.app.utils.capturing.settings.UiSettings
 import de.cyface.app.utils.databinding.FragmentTripsBinding
 import de.cyface.app.utils.trips.incentives.Incentives
+import de.cyface.app.utils.trips.incentives.UnexpectedResponseException
 import de.cyface.datacapturing.CyfaceDataCapturingService
 import de.cyface.datacapturing.persistence.CapturingPersistenceBehaviour
 import de.cyface.persistence.DefaultPersistenceLayer
-import de.cyface.persistence.model.GeoLocation
 import de.cyface.persistence.model.Measurement
 import de.cyface.persistence.model.MeasurementStatus
 import de.cyface.utils.settings.AppSettings
 import io.sentry.Sentry
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -70,17 +73,13 @@ import java.util.Calendar
 import java.util.Date
 import java.util.Locale
 import java.util.TimeZone
-import kotlin.math.atan2
-import kotlin.math.cos
 import kotlin.math.roundToInt
-import kotlin.math.sin
-import kotlin.math.sqrt
 
 /**
  * The [Fragment] which shows all finished measurements to the user.
  *
  * @author Armin Schnabel
- * @version 1.1.2
+ * @version 1.3.2
  * @since 3.2.0
  */
 class TripsFragment : Fragment() {
@@ -152,6 +151,12 @@ class TripsFragment : Fragment() {
      */
     private var incentives: Incentives? = null
 
+    /**
+     * The revalidation of the voucher count, which runs once per view and not on every update of
+     * the measurements, or `null` if it was not started for the current view.
+     */
+    private var voucherRevalidation: Job? = null
+
     /**
      * The [TripsViewModel] which holds the UI data.
      */
@@ -159,6 +164,11 @@ class TripsFragment : Fragment() {
         TripsViewModelFactory(capturing.persistenceLayer.measurementRepository!!)
     }
 
+    /**
+     * The [MenuProvider] which continues the export after the storage permission was granted.
+     */
+    private var menuProvider: MenuProvider? = null
+
     // This launcher must be launched to request permissions
     private var exportPermissionLauncher: ActivityResultLauncher<Array<String>> =
         registerForActivityResult(
@@ -167,7 +177,7 @@ class TripsFragment : Fragment() {
             if (result.isNotEmpty()) {
                 val allGranted = result.values.none { !it }
                 if (allGranted) {
-                    lifecycleScope.launch { Exporter(requireContext()).export() }
+                    menuProvider?.onExportPermissionGranted()
                 } else {
                     Toast.makeText(
                         context,
@@ -197,7 +207,12 @@ class TripsFragment : Fragment() {
                     val incentivesApi = uiSettings.incentivesUrlFlow.first()
 
                     // Initialize the Incentives instance with the retrieved URL
-                    incentives = Incentives(incentivesApi, serviceProvider.auth)
+                    incentives = Incentives(
+                        incentivesApi,
+                        serviceProvider.auth,
+                        capturing.wiFiSurveyor.account.name,
+                        requireContext().cacheDir
+                    )
                 }
             }
         } else {
@@ -250,15 +265,16 @@ class TripsFragment : Fragment() {
         }
 
         // Add items to menu (top right)
+        menuProvider = MenuProvider(
+            capturing,
+            appSettings,
+            adapter,
+            exportPermissionLauncher,
+            WeakReference<Context>(requireContext().applicationContext),
+            lifecycleScope
+        )
         requireActivity().addMenuProvider(
-            MenuProvider(
-                capturing,
-                appSettings,
-                adapter,
-                exportPermissionLauncher,
-                WeakReference<Context>(requireContext().applicationContext),
-                lifecycleScope
-            ), viewLifecycleOwner, Lifecycle.State.RESUMED
+            menuProvider!!, viewLifecycleOwner, Lifecycle.State.RESUMED
         )
 
         return binding.root
@@ -460,7 +476,7 @@ class TripsFragment : Fragment() {
 
                 tracks.forEach trackLoop@{ track ->
                     val locationsWithinGeoFenceCount = track.geoLocations.count { location ->
-                        geoFence.isWithin(location)
+                        geoFence.isWithin(location.lat, location.lon)
                     }
                     if (locationsWithinGeoFenceCount >= requiredLocationsWithinGeoFence) {
                         daysWithinGeoFence.add(measurementDay)
@@ -529,41 +545,61 @@ class TripsFragment : Fragment() {
 
     }
 
+    /**
+     * Shows the last known number of vouchers immediately and revalidates it in the background,
+     * so that the achievements card is not blocked by a slow or missing connection.
+     */
     private suspend fun showVouchersLeft() {
-        try {
-            val response = incentives!!.availableVouchers()
-
-            if (response.code == 200) {
-                try {
-                    val json = JSONObject(response.body!!.string())
-                    val availableVouchers = json.getInt("vouchers")
-                    if (availableVouchers > 0) {
-                        // Update UI on the main thread
-                        withContext(Dispatchers.Main) {
-                            // Can be null when switching tab before response returns
-                            // We don't want to show number of raffle tickets left
-                            /*_binding?.numberOfVouchersLeft?.text =
-                                getString(R.string.voucher_left, availableVouchers)*/
-                            _binding?.achievementsError?.visibility = GONE
-                            _binding?.achievements?.visibility = VISIBLE
-                        }
-                    } else {
-                        showNoVouchersLeft()
-                    }
-                } catch (e: JSONException) {
-                    handleJsonException(e)
-                } finally {
-                    response.close()
-                }
-            } else {
-                handleUnknownResponse(response.code)
-            }
-        } catch (e: AuthorizationException) {
-            handleAuthorizationException(e)
+        val cached = try {
+            incentives!!.cachedVoucherCount()
         } catch (e: IOException) {
-            handleError(e)
-        } catch (e: Exception) {
-            handleException(e)
+            null
+        } catch (e: JSONException) {
+            null
+        }
+        if (cached != null) {
+            showVoucherCount(cached)
+        }
+
+        // Revalidate only once per view, `showAchievements` runs on each update of the measurements
+        if (voucherRevalidation != null || _binding == null) return
+        voucherRevalidation = viewLifecycleOwner.lifecycleScope.launch {
+            try {
+                showVoucherCount(incentives!!.voucherCount())
+            } catch (e: UnexpectedResponseException) {
+                handleUnknownResponse(e.code)
+            } catch (e: JSONException) {
+                handleJsonException(e)
+            } catch (e: AuthorizationException) {
+                if (cached == null) handleAuthorizationException(e)
+                else Log.d(TAG, "Voucher count revalidation failed, showing cached count", e)
+            } catch (e: IOException) {
+                if (cached == null) handleError(e)
+                else Log.d(TAG, "Voucher count revalidation failed, showing cached count", e)
+            } catch (e: Exception) {
+                handleException(e)
+            }
+        }
+    }
+
+    /**
+     * Shows whether vouchers are left.
+     *
+     * @param availableVouchers The number of available vouchers.
+     */
+    private suspend fun showVoucherCount(availableVouchers: Int) {
+        if (availableVouchers > 0) {
+            // Update UI on the main thread
+            withContext(Dispatchers.Main) {
+                // Can be null when switching tab before response returns
+                // We don't want to show number of raffle tickets left
+                /*_binding?.numberOfVouchersLeft?.text =
+                    getString(R.string.voucher_left, availableVouchers)*/
+                _binding?.achievementsError?.visibility = GONE
+                _binding?.achievements?.visibility = VISIBLE
+            }
+        } else {
+            showNoVouchersLeft()
         }
     }
 
@@ -690,6 +726,7 @@ class TripsFragment : Fragment() {
 
     override fun onDestroyView() {
         super.onDestroyView()
+        voucherRevalidation = null
         _binding = null
     }
 
@@ -725,38 +762,6 @@ class TripsFragment : Fragment() {
         )
     }
 
-    /**
-     * A geo fence which is defined by a center location and a radius.
-     *
-     * @param centerLat The latitude of the center.
-     * @param centerLon The longitude of the center.
-     * @param radiusMeters The radius in meters.
-     */
-    data class GeoFence(
-        val centerLat: Double,
-        val centerLon: Double,
-        val radiusMeters: Double
-    ) {
-        /**
-         * Checks if a given location is within the [GeoFence].
-         *
-         * @param location The location to check.
-         * @return `true` if the location is within.
-         */
-        fun isWithin(location: GeoLocation): Boolean {
-            val earthRadiusMeters = 6371000.0 // average earth radius in meters
-            val dLat = Math.toRadians(centerLat - location.lat)
-            val dLon = Math.toRadians(centerLon - location.lon)
-            val lat1 = Math.toRadians(location.lat)
-            val lat2 = Math.toRadians(centerLat)
-            val a = sin(dLat / 2) * sin(dLat / 2) +
-                    sin(dLon / 2) * sin(dLon / 2) * cos(lat1) * cos(lat2)
-            val c = 2 * atan2(sqrt(a), sqrt(1 - a))
-            val distance = earthRadiusMeters * c
-            return distance <= radiusMeters
-        }
-    }
-
     data class UnlockCondition(
         val ridesWithinEvent: Int = 0,
         val daysWithinGeoFence: Set<Date> = emptySet(),
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import kotlinx.coroutines.ensureActive
+import java.io.OutputStream
+import java.io.Writer
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Streams the measurements as a ZIP archive with three CSV files: `measurements.csv`,
+ * `events.csv` and `locations.csv`.
+ *
+ * The archive entries are written one after another, so the measurements are loaded once per
+ * file, one measurement at a time.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal object CsvTrackWriter : TrackWriter {
+
+    override suspend fun write(source: TrackSource, output: OutputStream): Int {
+        // Not closed, as that would close the output
+        val zip = ZipOutputStream(output)
+        val writer = zip.bufferedWriter(bufferSize = BUFFER_SIZE)
+        var count = 0
+
+        zip.putNextEntry(ZipEntry("measurements.csv"))
+        writer.write(
+            "measurement_id,timestamp,status,modality,distance_meters,duration_millis,ascend_meters\n"
+        )
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            val summary = source.summary(id) ?: continue
+            val measurement = summary.measurement
+            writer.write(
+                "$id,${measurement.timestamp},${measurement.status.name}," +
+                        "${measurement.modality.name},${measurement.distance}," +
+                        "${summary.durationMillis},${summary.ascend ?: ""}\n"
+            )
+            count++
+        }
+        writer.flush()
+
+        zip.putNextEntry(ZipEntry("events.csv"))
+        writer.write("measurement_id,timestamp,type,value\n")
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            source.events(id).forEach { event ->
+                writer.write("$id,${event.timestamp},${event.type.name},")
+                event.value?.let { writer.quoted(it) }
+                writer.write("\n")
+            }
+        }
+        writer.flush()
+
+        zip.putNextEntry(ZipEntry("locations.csv"))
+        writer.write("measurement_id,track,timestamp,lat,lon,altitude,speed,accuracy\n")
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            source.tracks(id).forEachIndexed { track, it ->
+                it.geoLocations.forEach { location ->
+                    writer.write(
+                        "$id,$track,${location.timestamp},${location.lat},${location.lon}," +
+                                "${location.altitude ?: ""},${location.speed}," +
+                                "${location.accuracy ?: ""}\n"
+                    )
+                }
+            }
+        }
+        writer.flush()
+
+        zip.finish()
+        return count
+    }
+
+    /**
+     * Writes the [text] as quoted CSV value.
+     */
+    private fun Writer.quoted(text: String) {
+        write("\"")
+        write(text.replace("\"", "\"\""))
+        write("\"")
+    }
+
+    private const val BUFFER_SIZE = 64 * 1024
+}
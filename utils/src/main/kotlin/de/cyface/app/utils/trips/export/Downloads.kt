@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import android.content.ContentResolver
+import android.content.ContentValues
+import android.content.Context
+import android.net.Uri
+import android.os.Build
+import android.os.Environment
+import android.provider.MediaStore
+import de.cyface.utils.Utils
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+
+/**
+ * Writes files into the public `Downloads` folder.
+ *
+ * On Android 10+ the file is added to the [MediaStore] and stays pending, i.e. invisible to other
+ * apps, until it's completely written. A partially written file is removed, unless the process
+ * dies while writing it, see [delete].
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 4.3.0
+ */
+object Downloads {
+
+    /**
+     * Creates a file in the `Downloads` folder and lets [write] stream its content.
+     *
+     * @param context The context to access the storage with.
+     * @param fileName The name of the file.
+     * @param mimeType The MIME type of the file.
+     * @param onCreated Called with the location of the file before it's written, e.g. to remove
+     * it with [delete] if the process dies while writing it.
+     * @param write Writes the content to the stream, which is closed afterwards. Inlined, so that
+     * it can suspend.
+     * @return The result of [write].
+     * @throws IOException if the file could not be created or written.
+     */
+    @Throws(IOException::class)
+    inline fun <T> write(
+        context: Context,
+        fileName: String,
+        mimeType: String,
+        onCreated: (Uri) -> Unit = {},
+        write: (OutputStream) -> T
+    ): T {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            val resolver = context.contentResolver
+            val values = ContentValues().apply {
+                put(MediaStore.MediaColumns.DISPLAY_NAME, fileName)
+                put(MediaStore.MediaColumns.MIME_TYPE, mimeType)
+                put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS)
+                put(MediaStore.MediaColumns.IS_PENDING, 1)
+            }
+            val uri = resolver.insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values)
+                ?: throw IOException("Failed to create $fileName")
+            try {
+                onCreated(uri)
+                val result = resolver.openOutputStream(uri)?.use { write(it) }
+                    ?: throw IOException("Failed to open $fileName")
+                values.clear()
+                values.put(MediaStore.MediaColumns.IS_PENDING, 0)
+                resolver.update(uri, values, null, null)
+                result
+            } catch (e: Exception) {
+                resolver.delete(uri, null, null)
+                throw e
+            }
+        } else {
+            @Suppress("DEPRECATION") // Replaced by the `MediaStore` on Android 10+
+            val directory =
+                Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw IOException("Failed to create target directory")
+            }
+            if (!directory.canWrite()) throw IOException("Download target not writable")
+            val target = File(directory, fileName)
+            try {
+                onCreated(Uri.fromFile(target))
+                val result = FileOutputStream(target).use { write(it) }
+                Utils.informMediaScanner(context, target)
+                result
+            } catch (e: Exception) {
+                target.delete()
+                throw e
+            }
+        }
+    }
+
+    /**
+     * Removes a file written by [write], e.g. a partially written file.
+     *
+     * @param context The context to access the storage with.
+     * @param location The location of the file, as passed to `onCreated`.
+     */
+    fun delete(context: Context, location: Uri) {
+        if (location.scheme == ContentResolver.SCHEME_FILE) {
+            File(location.path!!).delete()
+        } else {
+            context.contentResolver.delete(location, null, null)
+        }
+    }
+}
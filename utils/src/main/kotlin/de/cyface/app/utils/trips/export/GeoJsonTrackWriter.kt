@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import android.util.JsonWriter
+import kotlinx.coroutines.ensureActive
+import java.io.OutputStream
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Streams the measurements as a GeoJSON `FeatureCollection`.
+ *
+ * Each measurement is a `MultiLineString` feature with one line per sub-track and its statistics
+ * as properties, followed by a `Point` feature per event.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal object GeoJsonTrackWriter : TrackWriter {
+
+    override suspend fun write(source: TrackSource, output: OutputStream): Int {
+        // Not closed, as that would close the output
+        val json = JsonWriter(output.bufferedWriter(bufferSize = BUFFER_SIZE))
+        json.beginObject()
+        json.name("type").value("FeatureCollection")
+        json.name("features").beginArray()
+        var count = 0
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            val summary = source.summary(id) ?: continue
+            val tracks = source.tracks(id)
+            val measurement = summary.measurement
+
+            json.beginObject()
+            json.name("type").value("Feature")
+            json.name("properties").beginObject()
+            json.name("measurementId").value(id)
+            json.name("timestamp").value(measurement.timestamp)
+            json.name("modality").value(measurement.modality.name)
+            json.name("distanceMeters").value(measurement.distance)
+            json.name("durationMillis").value(summary.durationMillis)
+            summary.ascend?.let { json.name("ascendMeters").value(it) }
+            json.endObject()
+            json.name("geometry").beginObject()
+            json.name("type").value("MultiLineString")
+            json.name("coordinates").beginArray()
+            tracks.forEach { track ->
+                json.beginArray()
+                track.geoLocations.forEach { location ->
+                    json.beginArray().value(location.lon).value(location.lat)
+                    location.altitude?.let { json.value(it) }
+                    json.endArray()
+                }
+                json.endArray()
+            }
+            json.endArray()
+            json.endObject()
+            json.endObject()
+
+            source.locate(source.events(id), tracks).forEach { (event, location) ->
+                json.beginObject()
+                json.name("type").value("Feature")
+                json.name("properties").beginObject()
+                json.name("measurementId").value(id)
+                json.name("timestamp").value(event.timestamp)
+                json.name("type").value(event.type.name)
+                event.value?.let { json.name("value").value(it) }
+                json.endObject()
+                json.name("geometry").beginObject()
+                json.name("type").value("Point")
+                json.name("coordinates").beginArray().value(location.lon).value(location.lat)
+                    .endArray()
+                json.endObject()
+                json.endObject()
+            }
+            count++
+        }
+        json.endArray()
+        json.endObject()
+        json.flush()
+        return count
+    }
+
+    private const val BUFFER_SIZE = 64 * 1024
+}
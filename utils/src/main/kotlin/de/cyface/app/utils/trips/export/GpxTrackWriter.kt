@@ -0,0 +1,114 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import kotlinx.coroutines.ensureActive
+import java.io.OutputStream
+import java.io.Writer
+import java.time.Instant
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Streams the measurements as GPX 1.1.
+ *
+ * GPX requires all waypoints before the tracks, so the events are written in a first pass and
+ * the tracks in a second pass, each loading one measurement at a time.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal object GpxTrackWriter : TrackWriter {
+
+    override suspend fun write(source: TrackSource, output: OutputStream): Int {
+        val writer = output.bufferedWriter(bufferSize = BUFFER_SIZE)
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        writer.write(
+            "<gpx version=\"1.1\" creator=\"Cyface\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+        )
+
+        // Waypoints, only measurements with events are loaded
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            val events = source.events(id)
+            if (events.isEmpty()) continue
+            source.locate(events, source.tracks(id)).forEach { (event, location) ->
+                writer.write("<wpt lat=\"${location.lat}\" lon=\"${location.lon}\">")
+                writer.write("<time>${Instant.ofEpochMilli(event.timestamp)}</time>")
+                writer.write("<name>")
+                writer.escaped(event.type.name)
+                writer.write("</name>")
+                event.value?.let {
+                    writer.write("<desc>")
+                    writer.escaped(it)
+                    writer.write("</desc>")
+                }
+                writer.write("<type>measurement $id</type></wpt>\n")
+            }
+        }
+
+        // Tracks
+        var count = 0
+        for (id in source.measurementIds) {
+            coroutineContext.ensureActive()
+            val summary = source.summary(id) ?: continue
+            val measurement = summary.measurement
+            writer.write("<trk><name>Measurement $id</name><desc>")
+            writer.write("distance: ${measurement.distance.toInt()} m, ")
+            writer.write("duration: ${summary.durationMillis / 1000} s")
+            summary.ascend?.let { writer.write(", ascend: ${it.toInt()} m") }
+            writer.write("</desc><type>")
+            writer.escaped(measurement.modality.name)
+            writer.write("</type>\n")
+            source.tracks(id).forEach { track ->
+                writer.write("<trkseg>\n")
+                track.geoLocations.forEach { location ->
+                    writer.write("<trkpt lat=\"${location.lat}\" lon=\"${location.lon}\">")
+                    location.altitude?.let { writer.write("<ele>$it</ele>") }
+                    writer.write("<time>${Instant.ofEpochMilli(location.timestamp)}</time>")
+                    writer.write("</trkpt>\n")
+                }
+                writer.write("</trkseg>\n")
+            }
+            writer.write("</trk>\n")
+            count++
+        }
+
+        writer.write("</gpx>\n")
+        writer.flush()
+        return count
+    }
+
+    /**
+     * Writes the [text] with the characters which have a meaning in XML escaped.
+     */
+    private fun Writer.escaped(text: String) {
+        for (c in text) {
+            when (c) {
+                '<' -> write("&lt;")
+                '>' -> write("&gt;")
+                '&' -> write("&amp;")
+                '"' -> write("&quot;")
+                else -> write(c.code)
+            }
+        }
+    }
+
+    private const val BUFFER_SIZE = 64 * 1024
+}
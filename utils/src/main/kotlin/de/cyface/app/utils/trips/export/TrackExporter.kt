@@ -0,0 +1,73 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import android.content.Context
+import android.util.Log
+import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.persistence.DefaultPersistenceBehaviour
+import de.cyface.persistence.DefaultPersistenceLayer
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Exports the cleaned tracks, events and statistics of selected measurements into the `Downloads`
+ * folder.
+ *
+ * The measurements are loaded and written one at a time straight into the output stream, so the
+ * memory used does not grow with the number of exported measurements.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property context The context to access the database and the storage with.
+ */
+class TrackExporter(private val context: Context) {
+
+    /**
+     * Exports the measurements into one file.
+     *
+     * @param measurementIds The ids of the measurements to export, in the order to export them in.
+     * @param format The format to export the measurements in.
+     * @return The number of exported measurements.
+     * @throws IOException if the file could not be written.
+     */
+    @Throws(IOException::class)
+    suspend fun export(measurementIds: List<Long>, format: TrackFormat): Int {
+        return withContext(Dispatchers.IO) {
+            val persistence = DefaultPersistenceLayer(context, DefaultPersistenceBehaviour())
+            val source = TrackSource(persistence, measurementIds)
+            val timestamp = SimpleDateFormat("yyyy-MM-dd_H-m", Locale.GERMANY).format(Date())
+            val fileName = "cyface-tracks_$timestamp.${format.extension}"
+            val start = System.currentTimeMillis()
+            val count = Downloads.write(context, fileName, format.mimeType) {
+                format.writer.write(source, it)
+            }
+            Log.d(
+                TAG,
+                "Exported $count measurements as $format in ${System.currentTimeMillis() - start} ms"
+            )
+            count
+        }
+    }
+}
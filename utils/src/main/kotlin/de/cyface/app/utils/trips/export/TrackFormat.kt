@@ -0,0 +1,68 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import java.io.OutputStream
+
+/**
+ * The formats the tracks of measurements can be exported in.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property extension The extension of the exported file.
+ * @property mimeType The MIME type of the exported file.
+ * @property writer Writes the measurements in this format.
+ */
+enum class TrackFormat(
+    val extension: String,
+    val mimeType: String,
+    internal val writer: TrackWriter,
+) {
+    /**
+     * GPX 1.1 with a track per measurement and a waypoint per event.
+     */
+    GPX("gpx", "application/gpx+xml", GpxTrackWriter),
+
+    /**
+     * A GeoJSON `FeatureCollection` with a `MultiLineString` per measurement and a `Point` per event.
+     */
+    GEOJSON("geojson", "application/geo+json", GeoJsonTrackWriter),
+
+    /**
+     * A ZIP archive with a CSV file each for the measurements, events and locations.
+     */
+    CSV("csv.zip", "application/zip", CsvTrackWriter),
+}
+
+/**
+ * Streams the measurements of a [TrackSource] in one [TrackFormat].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+internal interface TrackWriter {
+    /**
+     * @param source The measurements to write.
+     * @param output The stream to write to, which is not closed.
+     * @return The number of measurements written.
+     */
+    suspend fun write(source: TrackSource, output: OutputStream): Int
+}
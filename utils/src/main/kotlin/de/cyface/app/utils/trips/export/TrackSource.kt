@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips.export
+
+import de.cyface.app.utils.EventMatching
+import de.cyface.persistence.DefaultPersistenceLayer
+import de.cyface.persistence.model.Event
+import de.cyface.persistence.model.GeoLocation
+import de.cyface.persistence.model.Measurement
+import de.cyface.persistence.model.Track
+import de.cyface.persistence.strategy.DefaultLocationCleaning
+
+/**
+ * Loads the data of the exported measurements one measurement at a time, so that only the
+ * measurement which is currently written is on the heap.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ * @property persistence The persistence layer to load the data from.
+ * @property measurementIds The ids of the exported measurements.
+ */
+internal class TrackSource(
+    private val persistence: DefaultPersistenceLayer<*>,
+    val measurementIds: List<Long>,
+) {
+
+    /**
+     * @return The measurement and its statistics, or `null` if it was deleted in the meantime.
+     */
+    suspend fun summary(measurementId: Long): Summary? {
+        val measurement = persistence.loadMeasurement(measurementId) ?: return null
+        return Summary(
+            measurement,
+            persistence.loadDuration(measurementId),
+            persistence.loadAscend(measurementId)
+        )
+    }
+
+    /**
+     * @return The events of the measurement, ordered by time.
+     */
+    suspend fun events(measurementId: Long): List<Event> {
+        return persistence.loadEvents(measurementId)?.sortedBy { it.timestamp } ?: emptyList()
+    }
+
+    /**
+     * @return The sub-tracks of the measurement, without the locations filtered by the cleaning.
+     */
+    suspend fun tracks(measurementId: Long): List<Track> {
+        return persistence.loadTracks(measurementId, DefaultLocationCleaning())
+    }
+
+    /**
+     * Finds the location of each event: the first location captured at or after the event, or the
+     * last location if the event happened after the last location.
+     *
+     * @param events The events, ordered by time.
+     * @param tracks The sub-tracks the events happened on.
+     * @return The events with their location, without the events of measurements without locations.
+     */
+    fun locate(events: List<Event>, tracks: List<Track>): List<Pair<Event, GeoLocation>> {
+        val locations = tracks.flatMap { it.geoLocations }
+        if (locations.isEmpty()) return emptyList()
+        val timestamps = LongArray(locations.size) { locations[it].timestamp }
+        return events.map { event ->
+            val index = EventMatching.nextLocationIndex(timestamps, event.timestamp)
+            event to locations[minOf(index, locations.size - 1)]
+        }
+    }
+
+    /**
+     * The statistics of an exported measurement.
+     *
+     * @property measurement The measurement.
+     * @property durationMillis The duration of the measurement.
+     * @property ascend The ascend in meters or `null` if it's unknown.
+     */
+    class Summary(val measurement: Measurement, val durationMillis: Long, val ascend: Double?)
+}
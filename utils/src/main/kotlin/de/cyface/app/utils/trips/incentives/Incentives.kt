@@ -18,19 +18,29 @@
  */
 package de.cyface.app.utils.trips.incentives
 
+import android.os.SystemClock
 import android.util.Log
 import de.cyface.app.utils.SharedConstants.TAG
+import de.cyface.app.utils.auth.TokenProvider
 import de.cyface.synchronization.Auth
 import de.cyface.uploader.DefaultUploader
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
 import net.openid.appauth.AuthorizationException
+import okhttp3.Cache
+import okhttp3.CacheControl
 import okhttp3.Call
 import okhttp3.Callback
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
+import okio.ByteString.Companion.encodeUtf8
 import okio.IOException
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.File
 import java.net.URL
 import kotlin.coroutines.resumeWithException
 
@@ -38,56 +48,94 @@ import kotlin.coroutines.resumeWithException
  * The API to get the voucher data from.
  *
  * @author Armin Schnabel
- * @version 3.0.0
+ * @version 3.3.0
  * @since 3.3.0
  * @property apiEndpoint An API endpoint running a Cyface Incentives API, like `https://some.url/api/v1`
- * @property auth The authenticator to get the auth token from
+ * @property auth The authenticator to get the auth token from, see [TokenProvider]
+ * @property user The name of the account which is logged in. The cached responses are only
+ * returned for this account.
+ * @param cacheDirectory The app's cache directory, in which the HTTP responses are cached.
  */
 class Incentives(
     private val apiEndpoint: URL,
-    private val auth: Auth
+    private val auth: Auth,
+    private val user: String,
+    cacheDirectory: File
 ) {
-    private val client: OkHttpClient = OkHttpClient()
+    private val client: OkHttpClient = client(cacheDirectory, user)
 
     /**
-     * Requests the number of available vouchers.
+     * The access tokens, shared with the other API clients using the [auth].
+     */
+    private val tokens = TokenProvider.of(auth)
+
+    /**
+     * Returns the last known number of available vouchers without a network request.
      *
-     * @return The [Response] from the voucher count request.
-     * @throws AuthorizationException if there is an error refreshing the access token.
-     * @throws IOException if there is a network error.
+     * This is the count from memory or, e.g. after an app restart, from the HTTP cache of the
+     * [user].
+     *
+     * @return The number of vouchers or `null` if it's unknown.
      */
-    @OptIn(ExperimentalCoroutinesApi::class)
-    suspend fun availableVouchers(): Response {
-        return suspendCancellableCoroutine { continuation ->
-            auth.performActionWithFreshTokens { accessToken, _, ex ->
-                if (ex != null) {
-                    continuation.resumeWithException(ex as AuthorizationException)
-                    return@performActionWithFreshTokens
-                }
+    suspend fun cachedVoucherCount(): Int? {
+        lastVoucherCount?.takeIf { it.user == user }?.let { return it.count }
 
-                // Try to send the request
-                val url = voucherCountEndpoint().toString()
-                Log.d(TAG, "Voucher count request to $url")
-                val request = Request.Builder()
-                    .url(url)
-                    .addHeader("Authorization", "Bearer $accessToken")
-                    .build()
+        // The cache directory belongs to the user, so no token is required
+        val request = Request.Builder()
+            .url(voucherCountEndpoint())
+            .cacheControl(CacheControl.FORCE_CACHE)
+            .build()
+        return withContext(Dispatchers.IO) {
+            client.newCall(request).execute().use { response ->
+                if (response.code == 200) parseVoucherCount(response) else null
+            }
+        }
+    }
 
-                client.newCall(request).enqueue(object : Callback {
-                    override fun onFailure(call: Call, e: IOException) {
-                        continuation.resumeWithException(e)
-                    }
+    /**
+     * Returns the number of available vouchers, revalidated with the server unless it was
+     * requested less than [MEMORY_TTL_MILLIS] ago.
+     *
+     * The server only sends the count if it changed since the cached response (`If-None-Match`).
+     *
+     * @return The number of vouchers.
+     * @throws AuthorizationException if there is an error refreshing the access token.
+     * @throws UnexpectedResponseException if the server responded with an unexpected status.
+     * @throws JSONException if the response could not be parsed.
+     * @throws IOException if there is a network error.
+     */
+    suspend fun voucherCount(): Int {
+        val cached = lastVoucherCount?.takeIf { it.user == user }
+        val now = SystemClock.elapsedRealtime()
+        if (cached != null && now - cached.fetchedAt < MEMORY_TTL_MILLIS) return cached.count
 
-                    override fun onResponse(call: Call, response: Response) {
-                        continuation.resume(response) {
-                            response.close() // close to release resources
-                        }
-                    }
-                })
+        val response = availableVouchers()
+        return withContext(Dispatchers.IO) {
+            response.use {
+                if (it.code != 200) throw UnexpectedResponseException(it.code)
+                if (it.networkResponse?.code == 304) {
+                    Log.d(TAG, "Voucher count not modified, using cached response")
+                }
+                val count = parseVoucherCount(it)
+                lastVoucherCount = VoucherCount(user, count, now)
+                count
             }
         }
     }
 
+    /**
+     * Requests the number of available vouchers.
+     *
+     * @return The [Response] from the voucher count request.
+     * @throws AuthorizationException if there is an error refreshing the access token.
+     * @throws IOException if there is a network error.
+     */
+    suspend fun availableVouchers(): Response {
+        val url = voucherCountEndpoint().toString()
+        Log.d(TAG, "Voucher count request to $url")
+        return execute(url)
+    }
+
     /**
      * Requests a voucher for the currently logged in user.
      *
@@ -95,42 +143,60 @@ class Incentives(
      * @throws AuthorizationException if there is an error refreshing the access token.
      * @throws IOException if there is a network error.
      */
-    @OptIn(ExperimentalCoroutinesApi::class)
     suspend fun voucher(): Response {
-        return suspendCancellableCoroutine { continuation ->
-            auth.performActionWithFreshTokens { accessToken, _, ex ->
-                if (ex != null) {
-                    continuation.resumeWithException(ex as AuthorizationException)
-                    return@performActionWithFreshTokens
-                }
+        val url = voucherEndpoint().toString()
+        Log.d(TAG, "Voucher request to $url")
+        val response = execute(url)
+        if (!response.isSuccessful) {
+            response.close()
+            throw IOException("Unexpected HTTP response: ${response.code}")
+        }
+        return response
+    }
 
-                // Try to send the request
-                val url = voucherEndpoint().toString()
-                Log.d(TAG, "Voucher request to $url")
-                val request = Request.Builder()
-                    .url(url)
-                    .addHeader("Authorization", "Bearer $accessToken")
-                    .build()
+    /**
+     * Sends an authenticated `GET` request with the access token from the shared [tokens].
+     *
+     * If the server rejects the token, it's removed from the cache so that the next request
+     * refreshes it.
+     *
+     * @param url The URL to request.
+     * @return The [Response] to the request.
+     * @throws AuthorizationException if there is an error refreshing the access token.
+     * @throws IOException if there is a network error.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private suspend fun execute(url: String): Response {
+        val request = Request.Builder()
+            .url(url)
+            .addHeader("Authorization", "Bearer ${tokens.accessToken()}")
+            .build()
 
-                client.newCall(request).enqueue(object : Callback {
-                    override fun onFailure(call: Call, e: IOException) {
-                        continuation.resumeWithException(e)
-                    }
+        val response = suspendCancellableCoroutine { continuation ->
+            val call = client.newCall(request)
+            continuation.invokeOnCancellation { call.cancel() }
+            call.enqueue(object : Callback {
+                override fun onFailure(call: Call, e: IOException) {
+                    continuation.resumeWithException(e)
+                }
 
-                    override fun onResponse(call: Call, response: Response) {
-                        if (!response.isSuccessful) {
-                            continuation.resumeWithException(
-                                IOException("Unexpected HTTP response: ${response.code}")
-                            )
-                        } else {
-                            continuation.resume(response) {
-                                response.close() // close to release resources
-                            }
-                        }
+                override fun onResponse(call: Call, response: Response) {
+                    continuation.resume(response) {
+                        response.close() // close to release resources
                     }
-                })
-            }
+                }
+            })
         }
+        if (response.code == 401) tokens.invalidate()
+        return response
+    }
+
+    /**
+     * @return The number of vouchers from a voucher count response.
+     * @throws JSONException if the response could not be parsed.
+     */
+    private fun parseVoucherCount(response: Response): Int {
+        return JSONObject(response.body!!.string()).getInt("vouchers")
     }
 
     @Suppress("MemberVisibilityCanBePrivate") // Part of the API
@@ -142,4 +208,70 @@ class Incentives(
     private fun voucherEndpoint(): URL {
         return URL(DefaultUploader.returnUrlWithTrailingSlash(apiEndpoint.toExternalForm()) + "voucher")
     }
-}
\ No newline at end of file
+
+    /**
+     * A voucher count received from the server.
+     *
+     * @property user The account the count was requested for.
+     * @property count The number of vouchers.
+     * @property fetchedAt The [SystemClock.elapsedRealtime] at which it was received.
+     */
+    private class VoucherCount(val user: String, val count: Int, val fetchedAt: Long)
+
+    companion object {
+        /**
+         * The time for which the voucher count is not revalidated.
+         */
+        private const val MEMORY_TTL_MILLIS = 60_000L
+
+        /**
+         * The name of the folder in the cache directory the HTTP responses are cached in.
+         */
+        private const val CACHE_FOLDER_NAME = "incentives"
+
+        /**
+         * The maximal size of the HTTP cache. The responses are only a few bytes.
+         */
+        private const val CACHE_MAX_BYTES = 256L * 1024
+
+        /**
+         * The last voucher count received in this process, shared as the fragments recreate
+         * their [Incentives] instance.
+         */
+        @Volatile
+        private var lastVoucherCount: VoucherCount? = null
+
+        /**
+         * The clients by the user whose responses they cache, shared by all instances, as only one
+         * [Cache] may use a cache directory.
+         */
+        private val sharedClients = mutableMapOf<String, OkHttpClient>()
+
+        /**
+         * @return The client with the HTTP cache of the [user] in [cacheDirectory].
+         */
+        @Synchronized
+        private fun client(cacheDirectory: File, user: String): OkHttpClient {
+            return sharedClients.getOrPut(user) {
+                // The account name is hashed as it's not necessarily a valid file name
+                val folder = File(File(cacheDirectory, CACHE_FOLDER_NAME), user.encodeUtf8().sha256().hex())
+                OkHttpClient.Builder()
+                    .cache(Cache(folder, CACHE_MAX_BYTES))
+                    .build()
+            }
+        }
+
+        /**
+         * Removes the cached voucher counts of all users, e.g. when the user logs out.
+         *
+         * @param cacheDirectory The app's cache directory, in which the HTTP responses are cached.
+         */
+        @Synchronized
+        fun clear(cacheDirectory: File) {
+            lastVoucherCount = null
+            sharedClients.values.forEach { it.cache?.delete() }
+            sharedClients.clear()
+            File(cacheDirectory, CACHE_FOLDER_NAME).deleteRecursively()
+        }
+    }
+}
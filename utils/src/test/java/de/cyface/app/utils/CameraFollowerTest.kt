@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Tests the inner viewport of the [CameraFollower].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class CameraFollowerTest {
+
+    /**
+     * Tests the inner viewport of a visible region which does not cross the antimeridian.
+     */
+    @Test
+    fun testInnerViewport() {
+        val visible = LatLngBounds(LatLng(50.0, 13.0), LatLng(52.0, 15.0))
+
+        assertTrue(inner(visible, LatLng(51.0, 14.0)))
+        assertTrue(inner(visible, LatLng(50.5, 13.5)))
+        assertFalse(inner(visible, LatLng(50.4, 14.0)))
+        assertFalse(inner(visible, LatLng(51.0, 14.6)))
+        assertFalse(inner(visible, LatLng(51.0, 16.0)))
+    }
+
+    /**
+     * Tests the inner viewport of a visible region which crosses the antimeridian.
+     */
+    @Test
+    fun testInnerViewportAcrossAntimeridian() {
+        val visible = LatLngBounds(LatLng(-10.0, 170.0), LatLng(10.0, -170.0))
+
+        assertTrue(inner(visible, LatLng(0.0, 179.0)))
+        assertTrue(inner(visible, LatLng(0.0, -179.0)))
+        assertTrue(inner(visible, LatLng(0.0, 175.0)))
+        assertFalse(inner(visible, LatLng(0.0, 172.0)))
+        assertFalse(inner(visible, LatLng(0.0, -172.0)))
+        assertFalse(inner(visible, LatLng(0.0, 0.0)))
+    }
+
+    private fun inner(visible: LatLngBounds, position: LatLng): Boolean {
+        return CameraFollower.isInInnerViewport(
+            visible,
+            CameraFollower.DEFAULT_MARGIN_FRACTION,
+            position
+        )
+    }
+}
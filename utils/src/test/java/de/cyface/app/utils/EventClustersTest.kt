@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import com.google.android.gms.maps.model.LatLng
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests the grid clustering of the [EventClusters].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class EventClustersTest {
+
+    /**
+     * Tests that events in the same cell form one cluster and events in other cells don't.
+     */
+    @Test
+    fun testCluster() {
+        val worldSize = WebMercator.worldSize(ZOOM)
+        val first = event(1L, cellCenter(CELL, -10.0, worldSize))
+        val second = event(2L, cellCenter(CELL, 10.0, worldSize))
+        val other = event(3L, cellCenter(CELL + 2, 0.0, worldSize))
+
+        val oocut = EventClusters.cluster(listOf(first, other, second), worldSize).toList()
+
+        assertEquals(listOf(listOf(first, second), listOf(other)), oocut)
+    }
+
+    /**
+     * Tests that the events merge into one cluster when the map is zoomed out.
+     */
+    @Test
+    fun testClusterZoomedOut() {
+        val worldSize = WebMercator.worldSize(ZOOM)
+        val events = (0 until 5).map { event(it.toLong(), cellCenter(CELL + 2 * it, 0.0, worldSize)) }
+
+        assertEquals(5, EventClusters.cluster(events, worldSize).size)
+        val oocut = EventClusters.cluster(events, WebMercator.worldSize(ZOOM - 5))
+        assertEquals(listOf(events), oocut.toList())
+    }
+
+    /**
+     * Tests that a cluster marker is placed at the mean position of its events.
+     */
+    @Test
+    fun testCenter() {
+        val cluster = listOf(
+            event(1L, LatLng(51.0, 13.0)),
+            event(2L, LatLng(52.0, 14.0)),
+            event(3L, LatLng(51.5, 13.5)),
+        )
+
+        val oocut = EventClusters.center(cluster)
+
+        assertEquals(51.5, oocut.latitude, 1e-9)
+        assertEquals(13.5, oocut.longitude, 1e-9)
+    }
+
+    private fun event(id: Long, position: LatLng) = EventMarker(id, position, "Event $id")
+
+    /**
+     * @param cell The horizontal index of a cell of 48 map pixels.
+     * @param offset The horizontal offset from the center of the cell in map pixels.
+     * @param worldSize The size of the world in map pixels.
+     * @return A position in that cell at [LATITUDE].
+     */
+    private fun cellCenter(cell: Int, offset: Double, worldSize: Double): LatLng {
+        val x = (cell + 0.5) * CELL_SIZE + offset
+        return LatLng(LATITUDE, x / worldSize * 360.0 - 180.0)
+    }
+
+    companion object {
+        private const val ZOOM = 15.0
+        private const val LATITUDE = 51.05
+        private const val CELL_SIZE = 48.0
+
+        /**
+         * The cell of 48 map pixels at [ZOOM] around Dresden.
+         */
+        private const val CELL = 94_028
+    }
+}
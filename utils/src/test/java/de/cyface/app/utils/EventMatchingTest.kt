@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests the [EventMatching].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class EventMatchingTest {
+
+    private val timestamps = longArrayOf(1_000L, 2_000L, 2_000L, 3_000L, 5_000L)
+
+    /**
+     * Tests that the first location at or after the event is found.
+     */
+    @Test
+    fun testNextLocationIndex() {
+        assertEquals(0, EventMatching.nextLocationIndex(timestamps, 500L))
+        assertEquals(0, EventMatching.nextLocationIndex(timestamps, 1_000L))
+        assertEquals(1, EventMatching.nextLocationIndex(timestamps, 1_500L))
+        // The first of equal timestamps
+        assertEquals(1, EventMatching.nextLocationIndex(timestamps, 2_000L))
+        assertEquals(4, EventMatching.nextLocationIndex(timestamps, 4_000L))
+        assertEquals(4, EventMatching.nextLocationIndex(timestamps, 5_000L))
+    }
+
+    /**
+     * Tests that `timestamps.size` is returned when all locations are older than the event.
+     */
+    @Test
+    fun testNextLocationIndexAfterTrack() {
+        assertEquals(timestamps.size, EventMatching.nextLocationIndex(timestamps, 6_000L))
+        assertEquals(0, EventMatching.nextLocationIndex(LongArray(0), 1_000L))
+    }
+
+    /**
+     * Tests that the binary search finds the same index as a linear search.
+     */
+    @Test
+    fun testNextLocationIndexLikeLinearSearch() {
+        val sorted = LongArray(1_000) { it * 10L + (it % 3) }
+        for (timestamp in -5L..10_010L step 7) {
+            val expected = sorted.indexOfFirst { it >= timestamp }
+                .let { if (it == -1) sorted.size else it }
+            assertEquals("$timestamp", expected, EventMatching.nextLocationIndex(sorted, timestamp))
+        }
+    }
+}
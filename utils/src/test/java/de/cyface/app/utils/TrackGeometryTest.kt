@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils
+
+import com.google.android.gms.maps.model.LatLng
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests the simplification of the [TrackGeometry].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class TrackGeometryTest {
+
+    /**
+     * Tests that points on a straight line are removed.
+     */
+    @Test
+    fun testSimplifyStraightLine() = runBlocking {
+        val points = (0..100).map { LatLng(LATITUDE + it * STEP_DEGREES, LONGITUDE) }
+
+        val oocut = TrackGeometry.simplify(points)
+
+        assertEquals(listOf(points.first(), points.last()), oocut)
+    }
+
+    /**
+     * Tests that a point less than a meter off the line is removed.
+     */
+    @Test
+    fun testSimplifyWithinTolerance() = runBlocking {
+        val points = listOf(
+            LatLng(LATITUDE, LONGITUDE),
+            // About 0.5 m east of the line
+            LatLng(LATITUDE + 10 * STEP_DEGREES, LONGITUDE + 0.000007),
+            LatLng(LATITUDE + 20 * STEP_DEGREES, LONGITUDE),
+        )
+
+        assertEquals(listOf(points[0], points[2]), TrackGeometry.simplify(points))
+    }
+
+    /**
+     * Tests that a point more than a meter off the line is kept.
+     */
+    @Test
+    fun testSimplifyBeyondTolerance() = runBlocking {
+        val points = listOf(
+            LatLng(LATITUDE, LONGITUDE),
+            // About 5 m east of the line
+            LatLng(LATITUDE + 10 * STEP_DEGREES, LONGITUDE + 0.00007),
+            LatLng(LATITUDE + 20 * STEP_DEGREES, LONGITUDE),
+        )
+
+        assertEquals(points, TrackGeometry.simplify(points))
+    }
+
+    /**
+     * Tests that lines with less than three points are returned as they are.
+     */
+    @Test
+    fun testSimplifyShortLine() = runBlocking {
+        val points = listOf(LatLng(LATITUDE, LONGITUDE), LatLng(LATITUDE, LONGITUDE))
+
+        assertEquals(points, TrackGeometry.simplify(points))
+    }
+
+    /**
+     * Tests that a long zigzag track, where no point can be removed, does not exceed the stack.
+     */
+    @Test
+    fun testSimplifyLongTrack() = runBlocking {
+        val points = (0 until 10_000).map {
+            LatLng(LATITUDE + it * STEP_DEGREES, LONGITUDE + (it % 2) * 0.0001)
+        }
+
+        assertEquals(points.size, TrackGeometry.simplify(points).size)
+    }
+
+    companion object {
+        private const val LATITUDE = 51.05
+        private const val LONGITUDE = 13.74
+
+        /**
+         * About 1 m along a meridian.
+         */
+        private const val STEP_DEGREES = 0.00001
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.statistics
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests the aggregation of the [MeasurementStatistics].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class MeasurementStatisticsTest {
+
+    /**
+     * Tests the totals, maxima and averages of several measurements.
+     */
+    @Test
+    fun testAdd() {
+        val oocut = MeasurementStatistics()
+
+        oocut.add(2_000.0, 600_000L, 10.0)
+        oocut.add(8_000.0, 1_800_000L, 40.0)
+        oocut.add(5_000.0, 1_200_000L, 25.0)
+
+        assertEquals(3, oocut.count)
+        assertEquals(15.0, oocut.totalDistanceKm, DELTA)
+        assertEquals(8.0, oocut.maxDistanceKm, DELTA)
+        assertEquals(5.0, oocut.averageDistanceKm(), DELTA)
+        assertEquals(3_600_000L, oocut.totalDurationMillis)
+        assertEquals(1_800_000L, oocut.maxDurationMillis)
+        assertEquals(1_200_000L, oocut.averageDurationMillis())
+        assertEquals(75.0, oocut.totalAscend, DELTA)
+        assertEquals(40.0, oocut.maxAscend, DELTA)
+        assertEquals(25.0, oocut.averageAscend(), DELTA)
+        // 95 g/km
+        assertEquals(1.425, oocut.totalCo2Kg(), DELTA)
+        assertEquals(0.76, oocut.maxCo2Kg(), DELTA)
+        assertEquals(0.475, oocut.averageCo2Kg(), DELTA)
+    }
+
+    /**
+     * Tests that measurements without ascend count for the distance and duration only.
+     */
+    @Test
+    fun testAddWithoutAscend() {
+        val oocut = MeasurementStatistics()
+
+        oocut.add(1_000.0, 60_000L, null)
+        oocut.add(3_000.0, 180_000L, 20.0)
+
+        assertEquals(2, oocut.count)
+        assertEquals(20.0, oocut.totalAscend, DELTA)
+        assertEquals(20.0, oocut.maxAscend, DELTA)
+        // Averaged over all measurements, like before the aggregation was extracted
+        assertEquals(10.0, oocut.averageAscend(), DELTA)
+        assertEquals(2.0, oocut.averageDistanceKm(), DELTA)
+    }
+
+    /**
+     * Tests that the averages are `0` without measurements instead of dividing by zero.
+     */
+    @Test
+    fun testEmpty() {
+        val oocut = MeasurementStatistics()
+
+        assertEquals(0, oocut.count)
+        assertEquals(0.0, oocut.averageDistanceKm(), DELTA)
+        assertEquals(0L, oocut.averageDurationMillis())
+        assertEquals(0.0, oocut.averageAscend(), DELTA)
+        assertEquals(0.0, oocut.averageCo2Kg(), DELTA)
+    }
+
+    companion object {
+        private const val DELTA = 1e-9
+    }
+}
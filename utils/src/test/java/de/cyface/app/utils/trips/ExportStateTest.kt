@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.app.Application
+import android.net.Uri
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.UUID
+
+/**
+ * Tests that the [ExportState] survives the process, so that an export can be resumed.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = Application::class)
+class ExportStateTest {
+
+    /**
+     * The context to find the app's files with.
+     */
+    private lateinit var context: Application
+
+    /**
+     * The export the state is stored for.
+     */
+    private val exportIdentifier = UUID.randomUUID()
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+    }
+
+    /**
+     * Tests that a selection larger than the 10 KB of a work's input is restored completely.
+     */
+    @Test
+    fun testLargeSelection() {
+        val measurementIds = (1_000_000L until 1_005_000L).toList()
+
+        ExportState.create(context, exportIdentifier, measurementIds)
+        val oocut = ExportState.load(context, exportIdentifier)!!
+
+        assertEquals(measurementIds, oocut.measurementIds)
+        assertEquals(emptySet<String>(), oocut.written)
+        assertNull(oocut.pending)
+    }
+
+    /**
+     * Tests that the export of all data is restored without a selection.
+     */
+    @Test
+    fun testAllData() {
+        ExportState.create(context, exportIdentifier, null)
+
+        assertNull(ExportState.load(context, exportIdentifier)!!.measurementIds)
+    }
+
+    /**
+     * Tests that the written parts and the archive which is written are restored.
+     */
+    @Test
+    fun testParts() {
+        val archive = Uri.parse("content://media/external/downloads/42")
+        val oocut = ExportState.create(context, exportIdentifier, null)
+
+        oocut.startPart(Uri.parse("content://media/external/downloads/41"))
+        oocut.finishPart("accelerations")
+        oocut.startPart(archive)
+        val restored = ExportState.load(context, exportIdentifier)!!
+
+        assertEquals(setOf("accelerations"), restored.written)
+        assertEquals(archive, restored.pending)
+
+        restored.clearPending()
+        assertNull(ExportState.load(context, exportIdentifier)!!.pending)
+    }
+
+    /**
+     * Tests that a removed state is not restored.
+     */
+    @Test
+    fun testDelete() {
+        ExportState.create(context, exportIdentifier, listOf(1L)).delete()
+
+        assertNull(ExportState.load(context, exportIdentifier))
+    }
+}
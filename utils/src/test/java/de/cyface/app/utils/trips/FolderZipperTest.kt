@@ -0,0 +1,178 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.util.zip.Deflater
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import kotlin.random.Random
+
+/**
+ * Tests the choice of the [FolderZipper.Compression] per file and that the archives contain the
+ * files unchanged.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class FolderZipperTest {
+
+    /**
+     * The folder the files to zip are written to.
+     */
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    /**
+     * Tests that files which are already compressed are not compressed again, by their extension.
+     */
+    @Test
+    fun testAdaptiveByExtension() {
+        val picture = file("picture.JPG", repetitive(SIZE))
+
+        assertEquals(Deflater.NO_COMPRESSION, FolderZipper.Compression.ADAPTIVE.level(picture))
+    }
+
+    /**
+     * Tests that the level is chosen by how well the start of a file compresses.
+     */
+    @Test
+    fun testAdaptiveBySample() {
+        val random = Random(42)
+        val incompressible = file("random", random.nextBytes(SIZE))
+        // 64 symbols, i.e. about 6 bits per byte
+        val compressible = file("symbols", ByteArray(SIZE) { random.nextInt(64).toByte() })
+        val repetitive = file("measures", repetitive(SIZE))
+
+        val oocut = FolderZipper.Compression.ADAPTIVE
+
+        assertEquals(Deflater.NO_COMPRESSION, oocut.level(incompressible))
+        assertEquals(Deflater.BEST_SPEED, oocut.level(compressible))
+        assertEquals(Deflater.DEFAULT_COMPRESSION, oocut.level(repetitive))
+    }
+
+    /**
+     * Tests that small files are deflated with the default level without sampling them.
+     */
+    @Test
+    fun testAdaptiveSmallFile() {
+        val small = file("small", Random(42).nextBytes(1024))
+
+        assertNull(FolderZipper.sampleRatio(small))
+        assertEquals(Deflater.DEFAULT_COMPRESSION, FolderZipper.Compression.ADAPTIVE.level(small))
+    }
+
+    /**
+     * Tests that [FolderZipper.Compression.DEFAULT] deflates all files with the default level.
+     */
+    @Test
+    fun testDefault() {
+        val picture = file("picture.jpg", Random(42).nextBytes(SIZE))
+
+        assertEquals(
+            Deflater.DEFAULT_COMPRESSION,
+            FolderZipper.Compression.DEFAULT.level(picture)
+        )
+    }
+
+    /**
+     * Tests that the archive contains all files unchanged and that incompressible files only grow
+     * by a few bytes.
+     */
+    @Test
+    fun testZipFiles() {
+        val random = Random(42)
+        val files = mapOf(
+            "attachments/1/picture.jpg" to file("picture.jpg", random.nextBytes(SIZE)),
+            "databases/measures" to file("measures", repetitive(SIZE)),
+        )
+        val archive = ByteArrayOutputStream()
+
+        val bytesRead = FolderZipper.zipFiles(files, archive)
+
+        assertEquals(2L * SIZE, bytesRead)
+        val entries = unzip(archive.toByteArray())
+        assertEquals(files.keys, entries.keys)
+        files.forEach { (path, file) ->
+            val (entry, content) = entries[path]!!
+            assertEquals(ZipEntry.DEFLATED, entry.method)
+            assertArrayEquals(file.readBytes(), content)
+        }
+        val picture = entries["attachments/1/picture.jpg"]!!.first
+        assertTrue(
+            "Picture compressed to ${picture.compressedSize} B",
+            picture.compressedSize - SIZE in 0..SIZE / 100
+        )
+        val database = entries["databases/measures"]!!.first
+        assertTrue(database.compressedSize < SIZE / 4)
+    }
+
+    /**
+     * Writes a file into the temporary [folder].
+     */
+    private fun file(name: String, content: ByteArray): File {
+        return folder.newFile(name).apply { writeBytes(content) }
+    }
+
+    /**
+     * @return Rows like those of a database, which compress well.
+     */
+    private fun repetitive(size: Int): ByteArray {
+        val rows = StringBuilder()
+        var row = 0
+        while (rows.length < size) {
+            rows.append("$row|${1_700_000_000_000L + row * 1000L}|51.05|13.73|SAVED\n")
+            row++
+        }
+        return rows.substring(0, size).toByteArray()
+    }
+
+    /**
+     * @return The entries of the archive with their content, by their path.
+     */
+    private fun unzip(archive: ByteArray): Map<String, Pair<ZipEntry, ByteArray>> {
+        val entries = LinkedHashMap<String, Pair<ZipEntry, ByteArray>>()
+        ZipInputStream(ByteArrayInputStream(archive)).use { zip ->
+            var entry = zip.nextEntry
+            while (entry != null) {
+                val content = zip.readBytes()
+                entries[entry.name] = entry to content
+                entry = zip.nextEntry
+            }
+        }
+        return entries
+    }
+
+    companion object {
+        /**
+         * The size of the files, larger than the sample of the [FolderZipper.Compression.ADAPTIVE].
+         */
+        private const val SIZE = 128 * 1024
+    }
+}
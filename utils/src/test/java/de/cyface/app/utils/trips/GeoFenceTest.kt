@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.asin
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+import kotlin.random.Random
+
+/**
+ * Tests the [GeoFence] against the distance based check it replaced.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class GeoFenceTest {
+
+    /**
+     * Tests that the locations around the boundary of a 150 m fence are checked like before.
+     */
+    @Test
+    fun testParityAtBoundary() {
+        val oocut = GeoFence(CENTER_LAT, CENTER_LON, RADIUS_METERS)
+        val random = Random(SEED)
+
+        repeat(10_000) {
+            val distance = RADIUS_METERS + random.nextDouble(-1.0, 1.0)
+            val (lat, lon) = destination(random.nextDouble(0.0, 2 * Math.PI), distance)
+            assertEquals(
+                "Location at $distance m: $lat, $lon",
+                isWithinByDistance(lat, lon),
+                oocut.isWithin(lat, lon)
+            )
+        }
+    }
+
+    /**
+     * Tests locations which are clearly within or outside of the fence.
+     */
+    @Test
+    fun testIsWithin() {
+        val oocut = GeoFence(CENTER_LAT, CENTER_LON, RADIUS_METERS)
+
+        assertTrue(oocut.isWithin(CENTER_LAT, CENTER_LON))
+        destination(0.0, 149.0).let { assertTrue(oocut.isWithin(it.first, it.second)) }
+        destination(Math.PI / 2, 151.0).let { assertFalse(oocut.isWithin(it.first, it.second)) }
+        assertFalse(oocut.isWithin(-CENTER_LAT, CENTER_LON - 180.0))
+    }
+
+    /**
+     * Tests that a radius larger than half the circumference contains the whole earth.
+     */
+    @Test
+    fun testRadiusLargerThanEarth() {
+        val oocut = GeoFence(CENTER_LAT, CENTER_LON, 30_000_000.0)
+
+        assertTrue(oocut.isWithin(-CENTER_LAT, CENTER_LON - 180.0))
+    }
+
+    /**
+     * The distance based check which was used before the [GeoFence] compared the haversine.
+     */
+    private fun isWithinByDistance(lat: Double, lon: Double): Boolean {
+        val dLat = Math.toRadians(CENTER_LAT - lat)
+        val dLon = Math.toRadians(CENTER_LON - lon)
+        val lat1 = Math.toRadians(lat)
+        val lat2 = Math.toRadians(CENTER_LAT)
+        val a = sin(dLat / 2) * sin(dLat / 2) +
+                sin(dLon / 2) * sin(dLon / 2) * cos(lat1) * cos(lat2)
+        val c = 2 * atan2(sqrt(a), sqrt(1 - a))
+        return EARTH_RADIUS_METERS * c <= RADIUS_METERS
+    }
+
+    /**
+     * @param bearing The direction from the center in radians, clockwise from north.
+     * @param distance The distance from the center in meters.
+     * @return The latitude and longitude of the location.
+     */
+    private fun destination(bearing: Double, distance: Double): Pair<Double, Double> {
+        val angle = distance / EARTH_RADIUS_METERS
+        val lat1 = Math.toRadians(CENTER_LAT)
+        val lon1 = Math.toRadians(CENTER_LON)
+        val lat2 = asin(sin(lat1) * cos(angle) + cos(lat1) * sin(angle) * cos(bearing))
+        val lon2 = lon1 + atan2(
+            sin(bearing) * sin(angle) * cos(lat1),
+            cos(angle) - sin(lat1) * sin(lat2)
+        )
+        return Math.toDegrees(lat2) to Math.toDegrees(lon2)
+    }
+
+    companion object {
+        private const val CENTER_LAT = 51.05
+        private const val CENTER_LON = 13.74
+        private const val RADIUS_METERS = 150.0
+        private const val EARTH_RADIUS_METERS = 6371000.0
+        private const val SEED = 42
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import com.google.protobuf.CodedOutputStream
+import de.cyface.protos.model.Accelerations
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Tests the decimation of the [Point3DEnvelope] and the reading of truncated files by the
+ * [Point3DFileReader].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+class Point3DEnvelopeTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    /**
+     * Tests that the envelope fits the columns and keeps the peaks of the signal.
+     */
+    @Test
+    fun testDecimation() = runBlocking {
+        val samples = 1_000
+        val x = IntArray(samples) { if (it == PEAK_INDEX) PEAK else 0 }
+        val y = IntArray(samples) { it }
+        val file = write(batch(x, y))
+
+        val oocut = Point3DEnvelope.load(file, Point3DEnvelope.Type.ACCELERATIONS.parse, COLUMNS)!!
+
+        assertEquals(samples.toLong(), oocut.samples)
+        assertTrue("${oocut.columns} columns", oocut.columns in 1..COLUMNS)
+        assertEquals(PEAK / 1_000f, oocut.max[0].max(), 0f)
+        assertEquals(0f, oocut.min[0].min(), 0f)
+        assertEquals(0f, oocut.min[1].first(), 0f)
+        assertEquals((samples - 1) / 1_000f, oocut.max[1].last(), 0f)
+        // The ramp increases from column to column
+        for (column in 1 until oocut.columns) {
+            assertTrue(oocut.min[1][column] > oocut.max[1][column - 1])
+        }
+    }
+
+    /**
+     * Tests that the complete batches are loaded when the last batch was not completely written.
+     */
+    @Test
+    fun testTruncatedBatch() = runBlocking {
+        val file = write(
+            batch(IntArray(BATCH_SIZE) { 1 }),
+            batch(IntArray(BATCH_SIZE) { 2 }),
+            batch(IntArray(BATCH_SIZE) { 3 }),
+        )
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 5) }
+
+        val oocut = Point3DEnvelope.load(file, Point3DEnvelope.Type.ACCELERATIONS.parse, COLUMNS)!!
+
+        assertEquals(2L * BATCH_SIZE, oocut.samples)
+        assertEquals(0.002f, oocut.max[0].max(), 0f)
+    }
+
+    /**
+     * Tests that the complete batches are loaded when the file ends within a batch header.
+     */
+    @Test
+    fun testTruncatedHeader() = runBlocking {
+        val file = write(batch(IntArray(BATCH_SIZE) { 1 }))
+        // The tag of the next batch, without its length
+        file.appendBytes(byteArrayOf(0x0A))
+
+        val oocut = Point3DEnvelope.load(file, Point3DEnvelope.Type.ACCELERATIONS.parse, COLUMNS)!!
+
+        assertEquals(BATCH_SIZE.toLong(), oocut.samples)
+    }
+
+    /**
+     * Tests that a file without a complete batch has no envelope.
+     */
+    @Test
+    fun testOnlyTruncatedBatch() = runBlocking {
+        val file = write(batch(IntArray(BATCH_SIZE) { 1 }))
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 1) }
+
+        assertNull(Point3DEnvelope.load(file, Point3DEnvelope.Type.ACCELERATIONS.parse, COLUMNS))
+    }
+
+    /**
+     * Creates a batch, offset/diff-encoded like the persistence layer does.
+     *
+     * @param x The absolute x values in thousandths.
+     * @param y The absolute y values in thousandths, `0` if not set.
+     * @return The batch.
+     */
+    private fun batch(x: IntArray, y: IntArray = IntArray(x.size)): Accelerations {
+        fun diffs(values: IntArray) = values.indices.map { values[it] - (values.getOrNull(it - 1) ?: 0) }
+        return Accelerations.newBuilder()
+            .addAllTimestamp(x.indices.map { if (it == 0) START_MILLIS else 10L })
+            .addAllX(diffs(x))
+            .addAllY(diffs(y))
+            .addAllZ(List(x.size) { 0 })
+            .build()
+    }
+
+    /**
+     * Writes batches as length-delimited field `1`, like the persistence layer does.
+     *
+     * @param batches The batches to write.
+     * @return The file.
+     */
+    private fun write(vararg batches: Accelerations): File {
+        val file = folder.newFile()
+        file.outputStream().use { stream ->
+            val output = CodedOutputStream.newInstance(stream)
+            batches.forEach { output.writeByteArray(1, it.toByteArray()) }
+            output.flush()
+        }
+        return file
+    }
+
+    companion object {
+        private const val COLUMNS = 10
+        private const val BATCH_SIZE = 100
+        private const val PEAK_INDEX = 537
+        private const val PEAK = 5_000
+        private const val START_MILLIS = 1_700_000_000_000L
+    }
+}
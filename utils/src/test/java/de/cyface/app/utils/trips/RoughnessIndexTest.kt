@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Cyface GmbH
+ *
+ * This file is part of the Cyface App for Android.
+ *
+ * The Cyface App for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface App for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface App for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.app.utils.trips
+
+import android.app.Application
+import de.cyface.persistence.model.GeoLocation
+import de.cyface.persistence.model.ParcelableGeoLocation
+import de.cyface.persistence.model.Track
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Tests the segmentation of the tracks and the percentiles of the [RoughnessIndex].
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 4.3.0
+ */
+@RunWith(RobolectricTestRunner::class) // For `Location.distanceBetween`
+@Config(application = Application::class)
+class RoughnessIndexTest {
+
+    /**
+     * Tests that a track is split into segments of about 50 m and the last segment ends with it.
+     */
+    @Test
+    fun testSegmentBounds() {
+        // 20 steps of about 11 m, so each segment spans 5 steps
+        val track = track(0, 21)
+
+        val oocut = RoughnessIndex.segmentBounds(listOf(track))
+
+        assertEquals(4, oocut.size)
+        oocut.forEachIndexed { index, segment ->
+            assertEquals(START_MILLIS + index * 5 * STEP_MILLIS, segment.startTime)
+            assertEquals(START_MILLIS + (index + 1) * 5 * STEP_MILLIS, segment.endTime)
+            assertTrue(segment.roughness.isNaN())
+        }
+        assertEquals(oocut.last().endLat, track.geoLocations.last()!!.lat, 0.0)
+    }
+
+    /**
+     * Tests that segments end with their track, so they don't span pauses.
+     */
+    @Test
+    fun testSegmentBoundsAcrossPause() {
+        val first = track(0, 8)
+        val second = track(100, 3)
+        // Too short for a segment
+        val single = track(200, 1)
+
+        val oocut = RoughnessIndex.segmentBounds(listOf(first, second, single))
+
+        // 7 steps: one full segment and the rest, then one short segment for the second track
+        assertEquals(3, oocut.size)
+        assertEquals(first.geoLocations.last()!!.timestamp, oocut[1].endTime)
+        assertEquals(second.geoLocations.first()!!.timestamp, oocut[2].startTime)
+        assertEquals(second.geoLocations.last()!!.timestamp, oocut[2].endTime)
+    }
+
+    /**
+     * Tests the median and 90th percentile which are shown in the trip details.
+     */
+    @Test
+    fun testPercentile() {
+        val values = (1..10).map { it.toFloat() }
+
+        assertEquals(6f, RoughnessIndex.percentile(values, 50), 0f)
+        assertEquals(10f, RoughnessIndex.percentile(values, 90), 0f)
+        assertEquals(1f, RoughnessIndex.percentile(values, 0), 0f)
+        assertEquals(10f, RoughnessIndex.percentile(values, 100), 0f)
+        assertEquals(3f, RoughnessIndex.percentile(listOf(3f), 50), 0f)
+        assertEquals(3f, RoughnessIndex.percentile(listOf(1f, 3f), 50), 0f)
+    }
+
+    /**
+     * Creates a track northwards with a location every [STEP_DEGREES].
+     *
+     * @param firstStep The index of the first location, which defines its position and time.
+     * @param count The number of locations.
+     * @return The track.
+     */
+    private fun track(firstStep: Int, count: Int): Track {
+        val track = Track()
+        (firstStep until firstStep + count).forEach {
+            val location = ParcelableGeoLocation(
+                START_MILLIS + it * STEP_MILLIS, 51.0 + it * STEP_DEGREES, 13.7, 120.0, 5.0, 4.0, 8.0
+            )
+            track.addLocation(GeoLocation(location, MEASUREMENT_ID))
+        }
+        return track
+    }
+
+    companion object {
+        private const val MEASUREMENT_ID = 1L
+        private const val START_MILLIS = 1_700_000_000_000L
+        private const val STEP_MILLIS = 1_000L
+
+        /**
+         * About 11 m along a meridian.
+         */
+        private const val STEP_DEGREES = 0.0001
+    }
+}